@@ -1,5 +1,7 @@
 package com.example.interfaz.app;
 
+import com.example.interfaz.factory.ServiceFactory;
+import com.example.interfaz.service.DownloadExecutor;
 import com.example.interfaz.service.LogService;
 import javafx.application.Application;
 import javafx.fxml.FXMLLoader;
@@ -7,6 +9,7 @@ import javafx.scene.Scene;
 import javafx.stage.Stage;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Clase principal de la aplicación - Punto de entrada
@@ -17,6 +20,7 @@ public class Main extends Application {
     private static final String APP_TITLE = "YouTube Downloader - Descargador de Música";
     private static final int WINDOW_WIDTH = 800;
     private static final int WINDOW_HEIGHT = 600;
+    private static final long SHUTDOWN_TIMEOUT_SECONDS = 5;
     
     @Override
     public void start(Stage stage) throws IOException {
@@ -40,6 +44,8 @@ public class Main extends Application {
             
             stage.setOnCloseRequest(event -> {
                 LogService.log("Aplicación cerrada por el usuario");
+                ServiceFactory.getInstance().getDownloadService().cancelAllDownloads();
+                DownloadExecutor.getInstance().shutdown(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
                 LogService.getInstance().stopCapturing();
                 System.exit(0);
             });
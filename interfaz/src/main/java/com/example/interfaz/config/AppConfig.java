@@ -18,6 +18,31 @@ public class AppConfig {
     private static final String DEFAULT_DOWNLOAD_PATH = "./downloads";
     private static final int DEFAULT_MAX_CONCURRENT_DOWNLOADS = 3;
     private static final int DEFAULT_TIMEOUT_SECONDS = 30;
+    private static final int DEFAULT_DOWNLOAD_EXECUTOR_MAX_THREADS = 32;
+    private static final int DEFAULT_WORKER_BATCH_SIZE = 1;
+    private static final long DEFAULT_WORKER_LINGER_MS = 200;
+    private static final boolean DEFAULT_TRANSCODE_SPLIT = true;
+    private static final int DEFAULT_TRANSCODE_THREADS = 0;
+    private static final int DEFAULT_TRANSCODE_QUEUE_CAPACITY = 4;
+    private static final boolean DEFAULT_ADAPTIVE_CONCURRENCY = true;
+    private static final int DEFAULT_CONCURRENCY_MIN = 1;
+    private static final int DEFAULT_CONCURRENCY_MAX = 8;
+    private static final long DEFAULT_CONCURRENCY_SAMPLE_MS = 2000;
+    private static final long DEFAULT_BANDWIDTH_LIMIT_KBPS = 0;
+    private static final int DEFAULT_RETRY_ATTEMPTS = 3;
+    private static final long DEFAULT_RETRY_DELAY_MS = 1000;
+    private static final long DEFAULT_MIN_SPEED_KBPS = 64;
+    private static final int DEFAULT_SLOW_WINDOW_SECONDS = 120;
+    private static final int DEFAULT_PLAYLIST_SHARDS = 0;
+    private static final boolean DEFAULT_PLAYLIST_EXPAND = true;
+    private static final int DEFAULT_INTERACTIVE_SLOTS = 1;
+    private static final int DEFAULT_INFLIGHT_LEASE_SECONDS = 120;
+    private static final boolean DEFAULT_QUEUE_PERSISTENT = true;
+    private static final int DEFAULT_QUEUE_MEMORY_WINDOW = 500;
+    private static final int DEFAULT_QUEUE_COMPACT_THRESHOLD = 10000;
+    private static final String DEFAULT_QUEUE_ORDER = "fifo";
+    private static final double DEFAULT_QUEUE_SJF_AGING = 2.0;
+    private static final int DEFAULT_QUEUE_SJF_DEFAULT_DURATION_SECONDS = 240;
     private static final double DEFAULT_SIMILARITY_THRESHOLD = 0.70;
     
     private AppConfig() {
@@ -56,10 +81,113 @@ public class AppConfig {
         return Integer.parseInt(properties.getProperty("download.max.concurrent", String.valueOf(DEFAULT_MAX_CONCURRENT_DOWNLOADS)));
     }
     
+    public int getDownloadExecutorMaxThreads() {
+        return Integer.parseInt(properties.getProperty("download.executor.max.threads", String.valueOf(DEFAULT_DOWNLOAD_EXECUTOR_MAX_THREADS)));
+    }
+    
+    public int getWorkerBatchSize() {
+        return Integer.parseInt(properties.getProperty("download.worker.batch.size", String.valueOf(DEFAULT_WORKER_BATCH_SIZE)));
+    }
+    
+    public long getWorkerLingerMs() {
+        return Long.parseLong(properties.getProperty("download.worker.linger.ms", String.valueOf(DEFAULT_WORKER_LINGER_MS)));
+    }
+    
+    public boolean isTranscodeSplitEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("download.transcode.split", String.valueOf(DEFAULT_TRANSCODE_SPLIT)));
+    }
+    
+    public int getTranscodeThreads() {
+        return Integer.parseInt(properties.getProperty("download.transcode.threads", String.valueOf(DEFAULT_TRANSCODE_THREADS)));
+    }
+    
+    public int getTranscodeQueueCapacity() {
+        return Integer.parseInt(properties.getProperty("download.transcode.queue.capacity", String.valueOf(DEFAULT_TRANSCODE_QUEUE_CAPACITY)));
+    }
+    
+    public boolean isAdaptiveConcurrencyEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("download.concurrency.adaptive", String.valueOf(DEFAULT_ADAPTIVE_CONCURRENCY)));
+    }
+    
+    public int getConcurrencyMin() {
+        return Integer.parseInt(properties.getProperty("download.concurrency.min", String.valueOf(DEFAULT_CONCURRENCY_MIN)));
+    }
+    
+    public int getConcurrencyMax() {
+        return Integer.parseInt(properties.getProperty("download.concurrency.max", String.valueOf(DEFAULT_CONCURRENCY_MAX)));
+    }
+    
+    public long getConcurrencySampleMs() {
+        return Long.parseLong(properties.getProperty("download.concurrency.sample.ms", String.valueOf(DEFAULT_CONCURRENCY_SAMPLE_MS)));
+    }
+    
+    public long getBandwidthLimitKbps() {
+        return Long.parseLong(properties.getProperty("download.bandwidth.limit.kbps", String.valueOf(DEFAULT_BANDWIDTH_LIMIT_KBPS)));
+    }
+    
+    public int getRetryAttempts() {
+        return Integer.parseInt(properties.getProperty("network.retry.attempts", String.valueOf(DEFAULT_RETRY_ATTEMPTS)));
+    }
+    
+    public long getRetryDelayMs() {
+        return Long.parseLong(properties.getProperty("network.retry.delay.ms", String.valueOf(DEFAULT_RETRY_DELAY_MS)));
+    }
+    
     public int getTimeoutSeconds() {
         return Integer.parseInt(properties.getProperty("download.timeout.seconds", String.valueOf(DEFAULT_TIMEOUT_SECONDS)));
     }
     
+    public long getMinSpeedKbps() {
+        return Long.parseLong(properties.getProperty("download.min.speed.kbps", String.valueOf(DEFAULT_MIN_SPEED_KBPS)));
+    }
+    
+    public int getSlowWindowSeconds() {
+        return Integer.parseInt(properties.getProperty("download.slow.window.seconds", String.valueOf(DEFAULT_SLOW_WINDOW_SECONDS)));
+    }
+    
+    public int getPlaylistShards() {
+        return Integer.parseInt(properties.getProperty("download.playlist.shards", String.valueOf(DEFAULT_PLAYLIST_SHARDS)));
+    }
+    
+    public boolean isPlaylistExpandEnabled() {
+        return Boolean.parseBoolean(properties.getProperty("download.playlist.expand", String.valueOf(DEFAULT_PLAYLIST_EXPAND)));
+    }
+    
+    public int getInteractiveSlots() {
+        return Integer.parseInt(properties.getProperty("download.interactive.slots", String.valueOf(DEFAULT_INTERACTIVE_SLOTS)));
+    }
+    
+    public int getInFlightLeaseSeconds() {
+        return Integer.parseInt(properties.getProperty("download.inflight.lease.seconds", String.valueOf(DEFAULT_INFLIGHT_LEASE_SECONDS)));
+    }
+    
+    public boolean isQueuePersistent() {
+        return Boolean.parseBoolean(properties.getProperty("queue.persistent", String.valueOf(DEFAULT_QUEUE_PERSISTENT)));
+    }
+    
+    public int getQueueMemoryWindow() {
+        return Integer.parseInt(properties.getProperty("queue.memory.window", String.valueOf(DEFAULT_QUEUE_MEMORY_WINDOW)));
+    }
+    
+    public int getQueueCompactThreshold() {
+        return Integer.parseInt(properties.getProperty("queue.compact.threshold", String.valueOf(DEFAULT_QUEUE_COMPACT_THRESHOLD)));
+    }
+    
+    /**
+     * Indica si la cola despacha primero las URLs más cortas (queue.order=sjf)
+     */
+    public boolean isQueueShortestFirst() {
+        return "sjf".equalsIgnoreCase(properties.getProperty("queue.order", DEFAULT_QUEUE_ORDER).trim());
+    }
+    
+    public double getQueueSjfAging() {
+        return Double.parseDouble(properties.getProperty("queue.sjf.aging", String.valueOf(DEFAULT_QUEUE_SJF_AGING)));
+    }
+    
+    public int getQueueSjfDefaultDurationSeconds() {
+        return Integer.parseInt(properties.getProperty("queue.sjf.default.duration.seconds", String.valueOf(DEFAULT_QUEUE_SJF_DEFAULT_DURATION_SECONDS)));
+    }
+    
     public double getSimilarityThreshold() {
         return Double.parseDouble(properties.getProperty("filter.similarity.threshold", String.valueOf(DEFAULT_SIMILARITY_THRESHOLD)));
     }
@@ -90,6 +218,10 @@ public class AppConfig {
         properties.setProperty("download.max.concurrent", String.valueOf(max));
     }
     
+    public void setBandwidthLimitKbps(long limitKbps) {
+        properties.setProperty("download.bandwidth.limit.kbps", String.valueOf(limitKbps));
+    }
+    
     public void setSimilarityThreshold(double threshold) {
         properties.setProperty("filter.similarity.threshold", String.valueOf(threshold));
     }
@@ -1,7 +1,10 @@
 package com.example.interfaz.controller;
 
 import com.example.interfaz.service.DownloadService;
+import com.example.interfaz.download.ConcurrencyController;
+import com.example.interfaz.download.DownloadScheduler;
 import com.example.interfaz.download.QueueManager;
+import com.example.interfaz.factory.ServiceFactory;
 import com.example.interfaz.event.EventPublisher;
 import com.example.interfaz.event.DownloadEvent;
 import javafx.application.Platform;
@@ -23,6 +26,8 @@ public class EventHandler {
     private final ProgressManager progressManager;
     private final QueueManager queueManager;
     private final EventPublisher eventPublisher;
+    private final DownloadScheduler downloadScheduler;
+    private final ConcurrencyController concurrencyController;
     
     // Referencias a componentes UI
     private final TextField inputField;
@@ -39,8 +44,13 @@ public class EventHandler {
         this.eventPublisher = eventPublisher;
         this.inputField = inputField;
         this.queueListView = queueListView;
+        this.downloadScheduler = queueManager != null
+            ? ServiceFactory.getInstance().createDownloadScheduler(queueManager, downloadService)
+            : null;
+        this.concurrencyController = ServiceFactory.getInstance().createConcurrencyController(downloadScheduler);
         
         setupEventListeners();
+        setupScheduler();
     }
     
     private void setupEventListeners() {
@@ -49,6 +59,13 @@ public class EventHandler {
         eventPublisher.subscribe(DownloadEvent.DownloadFailed.class, this::onDownloadFailed);
     }
     
+    private void setupScheduler() {
+        if (downloadScheduler != null) {
+            downloadScheduler.setItemStartedCallback(url ->
+                Platform.runLater(() -> progressManager.updateCurrentSong("Descargando: " + url)));
+        }
+    }
+    
     private void onDownloadStarted(DownloadEvent.DownloadStarted event) {
         LOGGER.info("Descarga iniciada: {}", event.getSong().getTitle());
     }
@@ -99,28 +116,22 @@ public class EventHandler {
                 try {
                     uiStateManager.setDownloadingState(true);
                     
-                    while (!queueManager.isEmpty() && !isCancelled()) {
-                        String url = queueManager.getNextUrl();
-                        if (url != null) {
-                            Platform.runLater(() -> progressManager.updateCurrentSong("Descargando: " + url));
-                            
-                            Task<Void> songTask = downloadService.downloadSong(url, "");
-                            Thread songThread = new Thread(songTask);
-                            songThread.start();
-                            songThread.join();
-                            
-                            if (!isCancelled()) {
-                                queueManager.markAsCompleted(url);
-                            }
-                        }
+                    LOGGER.info("Iniciando planificador con {} descargas simultáneas", downloadScheduler.getMaxConcurrent());
+                    if (concurrencyController != null) {
+                        concurrencyController.start();
                     }
+                    downloadScheduler.runUntilDrained();
                 } catch (InterruptedException e) {
+                    downloadScheduler.cancel();
                     LOGGER.info("Descarga interrumpida por cancelación del usuario");
                 } catch (Exception e) {
                     String errorMessage = e.getMessage() != null ? e.getMessage() : "Error desconocido";
                     LOGGER.error("Error durante la descarga: {}", errorMessage, e);
                     Platform.runLater(() -> showAlert("Error", "Error durante la descarga: " + errorMessage));
                 } finally {
+                    if (concurrencyController != null) {
+                        concurrencyController.stop();
+                    }
                     Platform.runLater(() -> {
                         uiStateManager.setDownloadingState(false);
                         progressManager.resetProgress();
@@ -137,10 +148,31 @@ public class EventHandler {
     
     public void handlePauseDownload() {
         LOGGER.info("Pausando descarga...");
+        if (downloadScheduler != null) {
+            downloadScheduler.pause();
+        }
+    }
+    
+    public void handleResumeDownload() {
+        LOGGER.info("Reanudando descarga...");
+        if (downloadScheduler != null) {
+            downloadScheduler.resume();
+        }
     }
     
     public void handleCancelDownload() {
         LOGGER.info("Cancelando descarga...");
+        if (downloadScheduler != null) {
+            downloadScheduler.cancel();
+        }
+    }
+    
+    public DownloadScheduler getDownloadScheduler() {
+        return downloadScheduler;
+    }
+    
+    public ConcurrencyController getConcurrencyController() {
+        return concurrencyController;
     }
     
     private void showAlert(String title, String message) {
@@ -43,6 +43,8 @@ public class MainController {
     @FXML private Label queueCountLabel;
     @FXML private Button clearQueueButton;
     @FXML private Button removeSelectedButton;
+    @FXML private Button importFileButton;
+    @FXML private Button pasteButton;
     @FXML private ListView<String> queueListView;
     
     // Control buttons
@@ -111,6 +113,7 @@ public class MainController {
         
         queueController.setComponents(inputField, queueListView, queueCountLabel, 
                                     addButton, clearQueueButton, removeSelectedButton);
+        queueController.setImportButtons(importFileButton, pasteButton);
         progressController.setComponents(progressSection, currentSongLabel, 
                                        overallProgressLabel, overallPercentageLabel, overallProgressBar,
                                        currentProgressLabel, currentPercentageLabel, currentProgressBar);
@@ -182,6 +185,16 @@ public class MainController {
         queueController.handleRemoveSelected();
     }
     
+    @FXML
+    private void onImportFile() {
+        queueController.handleImportFile(primaryStage);
+    }
+    
+    @FXML
+    private void onImportClipboard() {
+        queueController.handleImportClipboard();
+    }
+    
     @FXML
     private void onStartDownload() {
         if (queueController.isQueueEmpty()) {
@@ -218,6 +231,7 @@ public class MainController {
     
     private void pauseDownload() {
         uiStateManager.setPausedState(true);
+        eventHandler.handlePauseDownload();
         downloadService.pauseDownload();
         progressController.markDownloadPaused();
         LOGGER.info("Descarga pausada por el usuario");
@@ -225,6 +239,7 @@ public class MainController {
     
     private void resumeDownload() {
         uiStateManager.setPausedState(false);
+        eventHandler.handleResumeDownload();
         downloadService.resumeDownload();
         progressController.updateStatus("▶️ Descarga reanudada");
         LOGGER.info("Descarga reanudada por el usuario");
@@ -241,6 +256,7 @@ public class MainController {
         uiStateManager.setShouldStop(true);
         uiStateManager.setPausedState(false);
         
+        eventHandler.handleCancelDownload();
         downloadService.stopDownload();
         
         if (downloadTask != null) {
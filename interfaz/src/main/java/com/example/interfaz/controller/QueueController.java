@@ -1,14 +1,27 @@
 package com.example.interfaz.controller;
 
 import com.example.interfaz.download.QueueManager;
+import com.example.interfaz.download.QueueSource;
 import com.example.interfaz.service.FilterService;
 import com.example.interfaz.factory.ServiceFactory;
 import javafx.application.Platform;
+import javafx.concurrent.Task;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
+import javafx.scene.input.Clipboard;
+import javafx.stage.FileChooser;
+import javafx.stage.Window;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Controlador especializado para la gestión de la cola de descargas
  * Maneja toda la lógica relacionada con agregar, remover y validar elementos en la cola
@@ -29,10 +42,18 @@ public class QueueController {
     private Button clearQueueButton;
     @FXML
     private Button removeSelectedButton;
+    @FXML
+    private Button importFileButton;
+    @FXML
+    private Button pasteButton;
     
     private QueueManager queueManager;
     private FilterService filterService;
     
+    // Evita encolar varias actualizaciones del contador por un mismo lote de cambios
+    private final AtomicBoolean countUpdatePending = new AtomicBoolean(false);
+    private volatile boolean importing;
+    
     /**
      * Inyecta los componentes FXML manualmente
      */
@@ -47,6 +68,14 @@ public class QueueController {
         this.removeSelectedButton = removeSelectedButton;
     }
     
+    /**
+     * Inyecta los botones de importación
+     */
+    public void setImportButtons(Button importFileButton, Button pasteButton) {
+        this.importFileButton = importFileButton;
+        this.pasteButton = pasteButton;
+    }
+    
     /**
      * Inicializa el controlador de cola
      */
@@ -107,6 +136,120 @@ public class QueueController {
         showSuccessMessage("URL agregada correctamente a la cola");
     }
     
+    /**
+     * Importa URLs desde un archivo de texto (una por línea)
+     * @param owner ventana dueña del diálogo
+     */
+    public void handleImportFile(Window owner) {
+        FileChooser chooser = new FileChooser();
+        chooser.setTitle("Importar URLs");
+        chooser.getExtensionFilters().addAll(
+            new FileChooser.ExtensionFilter("Archivos de texto", "*.txt", "*.csv", "*.m3u"),
+            new FileChooser.ExtensionFilter("Todos los archivos", "*.*"));
+        File file = chooser.showOpenDialog(owner);
+        if (file == null) {
+            return;
+        }
+        
+        importUrls(file.getName(), () -> Files.readString(file.toPath(), StandardCharsets.UTF_8));
+    }
+    
+    /**
+     * Importa las URLs que haya en el portapapeles
+     */
+    public void handleImportClipboard() {
+        Clipboard clipboard = Clipboard.getSystemClipboard();
+        String text = clipboard.hasString() ? clipboard.getString() : null;
+        if (text == null || text.isBlank()) {
+            showValidationError("Portapapeles vacío", "No hay texto en el portapapeles para importar.");
+            return;
+        }
+        importUrls("portapapeles", () -> text);
+    }
+    
+    /**
+     * Fuente de texto a importar; se lee fuera del hilo de la interfaz
+     */
+    @FunctionalInterface
+    private interface TextSource {
+        String read() throws IOException;
+    }
+    
+    /**
+     * Valida, deduplica y agrega un lote de URLs en segundo plano.
+     * La lista de la cola recibe un único cambio y el resultado se informa al final.
+     * @param sourceName nombre de la fuente para los mensajes
+     * @param source texto con las URLs separadas por espacios o saltos de línea
+     */
+    private void importUrls(String sourceName, TextSource source) {
+        if (importing) {
+            showValidationError("Importación en curso", "Espera a que termine la importación anterior.");
+            return;
+        }
+        importing = true;
+        setImportEnabled(false);
+        
+        Task<int[]> importTask = new Task<>() {
+            @Override
+            protected int[] call() throws Exception {
+                List<String> valid = new ArrayList<>();
+                int invalid = 0;
+                for (String token : source.read().split("\\s+")) {
+                    if (token.isEmpty() || token.startsWith("#")) {
+                        continue;
+                    }
+                    if (isValidUrl(token)) {
+                        valid.add(token);
+                    } else {
+                        invalid++;
+                    }
+                }
+                int added = queueManager.addAll(valid, QueueSource.bulk(sourceName, 1));
+                return new int[] {added, valid.size() - added, invalid};
+            }
+        };
+        
+        importTask.setOnSucceeded(e -> {
+            int[] result = importTask.getValue();
+            finishImport();
+            LOGGER.info("Importadas {} URLs desde {} ({} duplicadas, {} inválidas)",
+                result[0], sourceName, result[1], result[2]);
+            if (result[0] == 0) {
+                showValidationError("Nada que importar",
+                    "No se encontraron URLs nuevas en " + sourceName + " (" + result[1]
+                        + " duplicadas, " + result[2] + " inválidas).");
+            } else {
+                showSuccessMessage(result[0] + " URLs importadas desde " + sourceName);
+            }
+        });
+        importTask.setOnFailed(e -> {
+            finishImport();
+            Throwable error = importTask.getException();
+            LOGGER.error("Error importando URLs desde {}", sourceName, error);
+            showValidationError("Error de importación", error.getMessage());
+        });
+        
+        Thread importThread = new Thread(importTask, "queue-import");
+        importThread.setDaemon(true);
+        importThread.start();
+    }
+    
+    private void finishImport() {
+        importing = false;
+        setImportEnabled(addButton == null || !addButton.isDisabled());
+        // Las URLs que fueron directo a disco no cambian la lista visible
+        updateQueueCount();
+    }
+    
+    private void setImportEnabled(boolean enabled) {
+        if (importFileButton != null) {
+            importFileButton.setDisable(!enabled);
+        }
+        if (pasteButton != null) {
+            pasteButton.setDisable(!enabled);
+        }
+    }
+    
     /**
      * Limpia toda la cola de descargas
      */
@@ -165,7 +308,11 @@ public class QueueController {
      * Actualiza el contador de elementos en la cola
      */
     public void updateQueueCount() {
+        if (!countUpdatePending.compareAndSet(false, true)) {
+            return;
+        }
         Platform.runLater(() -> {
+            countUpdatePending.set(false);
             int count = queueManager.size();
             queueCountLabel.setText("Elementos en cola: " + count);
             
@@ -215,6 +362,7 @@ public class QueueController {
     public void setControlsEnabled(boolean enabled) {
         Platform.runLater(() -> {
             addButton.setDisable(!enabled);
+            setImportEnabled(enabled && !importing);
             clearQueueButton.setDisable(!enabled || queueManager.isEmpty());
             removeSelectedButton.setDisable(!enabled || queueListView.getSelectionModel().getSelectedItem() == null);
             inputField.setDisable(!enabled);
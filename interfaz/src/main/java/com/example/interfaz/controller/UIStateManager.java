@@ -56,7 +56,8 @@ public class UIStateManager {
     public void updateDownloadState(boolean downloading) {
         isDownloading.set(downloading);
         
-        addButton.setDisable(downloading && !isPaused.get());
+        // Se pueden agregar canciones mientras se descarga: van al carril interactivo
+        addButton.setDisable(false);
         startButton.setDisable(downloading);
         clearQueueButton.setDisable(downloading);
         removeSelectedButton.setDisable(downloading);
@@ -66,7 +67,7 @@ public class UIStateManager {
         cancelButton.setVisible(downloading);
         cancelButton.setDisable(!downloading);
         
-        inputField.setDisable(downloading && !isPaused.get());
+        inputField.setDisable(false);
         queueListView.setDisable(false);
         
         if (!downloading) {
@@ -83,15 +84,7 @@ public class UIStateManager {
         isPaused.set(paused);
         
         if (isDownloading.get()) {
-            if (paused) {
-                pauseButton.setText("▶️ Reanudar");
-                inputField.setDisable(false);
-                addButton.setDisable(false);
-            } else {
-                pauseButton.setText("⏸ Pausar");
-                inputField.setDisable(true);
-                addButton.setDisable(true);
-            }
+            pauseButton.setText(paused ? "▶️ Reanudar" : "⏸ Pausar");
         }
     }
     
@@ -0,0 +1,256 @@
+package com.example.interfaz.download;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Controlador adaptativo del número de descargas simultáneas (AIMD)
+ *
+ * Muestrea periódicamente el caudal total del planificador y, al cerrar cada
+ * ventana de muestras, suma un worker si el caudal sigue creciendo con todos
+ * los cupos ocupados, deshace el último aumento si el caudal se estanca y
+ * reduce el límite a la mitad si aparecen errores o el caudal cae bruscamente.
+ */
+public class ConcurrencyController {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ConcurrencyController.class);
+
+    private static final int SAMPLES_PER_WINDOW = 5;
+    private static final int HISTORY_SIZE = 150;
+    private static final double GROWTH_THRESHOLD = 0.05;
+    private static final double DROP_THRESHOLD = 0.30;
+
+    /**
+     * Decisión tomada al cerrar una ventana
+     */
+    public enum Action {
+        INCREASE,
+        DECREASE,
+        BACK_OFF,
+        HOLD
+    }
+
+    /**
+     * Muestra de caudal del planificador
+     */
+    public static class ThroughputSample {
+        private final long timestamp;
+        private final long bytesPerSecond;
+        private final int activeWorkers;
+        private final int limit;
+
+        public ThroughputSample(long timestamp, long bytesPerSecond, int activeWorkers, int limit) {
+            this.timestamp = timestamp;
+            this.bytesPerSecond = bytesPerSecond;
+            this.activeWorkers = activeWorkers;
+            this.limit = limit;
+        }
+
+        public long getTimestamp() { return timestamp; }
+        public long getBytesPerSecond() { return bytesPerSecond; }
+        public int getActiveWorkers() { return activeWorkers; }
+        public int getLimit() { return limit; }
+    }
+
+    private final DownloadScheduler scheduler;
+    private final int minConcurrent;
+    private final int maxConcurrent;
+    private final long sampleIntervalMs;
+
+    private final Deque<ThroughputSample> history = new ArrayDeque<>();
+    private final List<Long> window = new ArrayList<>(SAMPLES_PER_WINDOW);
+
+    private ScheduledExecutorService timer;
+    private ScheduledFuture<?> samplingTask;
+
+    private double lastWindowAverage = -1;
+    private long lastFailedDownloads;
+    private boolean saturatedInWindow = true;
+    private Action lastAction = Action.HOLD;
+
+    /**
+     * Constructor del controlador
+     * @param scheduler planificador cuyo límite se ajusta
+     * @param minConcurrent límite inferior de descargas simultáneas
+     * @param maxConcurrent límite superior de descargas simultáneas
+     * @param sampleIntervalMs intervalo entre muestras de caudal
+     */
+    public ConcurrencyController(DownloadScheduler scheduler, int minConcurrent, int maxConcurrent, long sampleIntervalMs) {
+        this.scheduler = scheduler;
+        this.minConcurrent = Math.max(1, minConcurrent);
+        this.maxConcurrent = Math.max(this.minConcurrent, maxConcurrent);
+        this.sampleIntervalMs = Math.max(100, sampleIntervalMs);
+    }
+
+    /**
+     * Empieza a muestrear el caudal del planificador
+     */
+    public synchronized void start() {
+        if (samplingTask != null) {
+            return;
+        }
+        if (timer == null) {
+            timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "concurrency-controller");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+
+        resetWindow();
+        lastWindowAverage = -1;
+        lastFailedDownloads = scheduler.getFailedDownloads();
+        lastAction = Action.HOLD;
+        samplingTask = timer.scheduleAtFixedRate(this::sample, sampleIntervalMs, sampleIntervalMs, TimeUnit.MILLISECONDS);
+        LOGGER.info("Control adaptativo de concurrencia iniciado ({}-{} descargas)", minConcurrent, maxConcurrent);
+    }
+
+    /**
+     * Deja de muestrear; el límite actual se conserva
+     */
+    public synchronized void stop() {
+        if (samplingTask != null) {
+            samplingTask.cancel(false);
+            samplingTask = null;
+        }
+    }
+
+    /**
+     * Libera el hilo de muestreo
+     */
+    public synchronized void shutdown() {
+        stop();
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    private synchronized void sample() {
+        try {
+            int activeWorkers = scheduler.getActiveWorkers();
+            int limit = scheduler.getMaxConcurrent();
+            long bytesPerSecond = scheduler.getAggregateBytesPerSecond();
+
+            recordSample(new ThroughputSample(System.currentTimeMillis(), bytesPerSecond, activeWorkers, limit));
+
+            // Sin descargas o en pausa el caudal no dice nada sobre la red
+            if (scheduler.isPaused() || activeWorkers == 0) {
+                resetWindow();
+                return;
+            }
+
+            window.add(bytesPerSecond);
+            saturatedInWindow &= activeWorkers >= limit;
+
+            if (window.size() >= SAMPLES_PER_WINDOW) {
+                decide(limit);
+                resetWindow();
+            }
+        } catch (RuntimeException e) {
+            LOGGER.warn("Error muestreando el caudal de descargas", e);
+        }
+    }
+
+    /**
+     * Ajusta el límite del planificador al cerrar una ventana de muestras
+     * @param limit límite vigente
+     */
+    private void decide(int limit) {
+        double average = window.stream().mapToLong(Long::longValue).average().orElse(0);
+        long failed = scheduler.getFailedDownloads();
+        boolean errors = failed > lastFailedDownloads;
+        lastFailedDownloads = failed;
+
+        Action action;
+        int newLimit = limit;
+
+        if (errors || (lastWindowAverage > 0 && average < lastWindowAverage * (1 - DROP_THRESHOLD))) {
+            action = Action.BACK_OFF;
+            newLimit = Math.max(minConcurrent, limit / 2);
+        } else if (lastWindowAverage < 0 || average > lastWindowAverage * (1 + GROWTH_THRESHOLD)) {
+            action = saturatedInWindow && limit < maxConcurrent ? Action.INCREASE : Action.HOLD;
+            if (action == Action.INCREASE) {
+                newLimit = limit + 1;
+            }
+        } else if (lastAction == Action.INCREASE) {
+            // El último worker no aportó caudal: se deshace el aumento
+            action = Action.DECREASE;
+            newLimit = Math.max(minConcurrent, limit - 1);
+        } else {
+            action = Action.HOLD;
+        }
+
+        lastWindowAverage = average;
+        lastAction = action;
+
+        if (newLimit != limit) {
+            scheduler.setMaxConcurrent(newLimit);
+            LOGGER.info("Concurrencia {} -> {} ({}, {} KB/s)", limit, newLimit, action, Math.round(average / 1024));
+        }
+    }
+
+    private void resetWindow() {
+        window.clear();
+        saturatedInWindow = true;
+    }
+
+    private void recordSample(ThroughputSample sample) {
+        history.addLast(sample);
+        while (history.size() > HISTORY_SIZE) {
+            history.removeFirst();
+        }
+    }
+
+    /**
+     * Obtiene el límite actual de descargas simultáneas
+     * @return límite del planificador
+     */
+    public int getCurrentLimit() {
+        return scheduler.getMaxConcurrent();
+    }
+
+    /**
+     * Obtiene el historial reciente de caudal, de la muestra más antigua a la más nueva
+     * @return copia del historial
+     */
+    public synchronized List<ThroughputSample> getThroughputHistory() {
+        return new ArrayList<>(history);
+    }
+
+    public synchronized Action getLastAction() {
+        return lastAction;
+    }
+
+    public synchronized boolean isRunning() {
+        return samplingTask != null;
+    }
+
+    /**
+     * Obtiene métricas del controlador
+     * @return mapa con estadísticas
+     */
+    public synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("currentLimit", scheduler.getMaxConcurrent());
+        stats.put("activeWorkers", scheduler.getActiveWorkers());
+        stats.put("minConcurrent", minConcurrent);
+        stats.put("maxConcurrent", maxConcurrent);
+        stats.put("lastAction", lastAction);
+        stats.put("lastWindowBytesPerSecond", Math.round(Math.max(0, lastWindowAverage)));
+        stats.put("currentBytesPerSecond", history.isEmpty() ? 0 : history.peekLast().getBytesPerSecond());
+        stats.put("samples", history.size());
+        return stats;
+    }
+}
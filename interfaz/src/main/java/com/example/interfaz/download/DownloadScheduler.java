@@ -0,0 +1,590 @@
+package com.example.interfaz.download;
+
+import com.example.interfaz.service.DownloadHandle;
+import com.example.interfaz.service.DownloadService;
+import com.example.interfaz.service.InFlightRegistry;
+import com.example.interfaz.util.UrlCanonicalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Planificador de descargas concurrentes
+ * Drena el QueueManager con N workers de yt-dlp en paralelo (download.max.concurrent)
+ * 
+ * No crea hilos propios: cada descarga corre en el DownloadExecutor del servicio
+ * y el cupo se libera cuando su manejador se completa.
+ *
+ * Las descargas fallidas se reintentan según la RetryPolicy. Mientras esperan
+ * su turno quedan fuera de la cola, así que no bloquean al resto: el despachador
+ * las relanza cuando vence su espera y hay un cupo libre.
+ *
+ * Además de los maxConcurrent cupos generales hay cupos reservados para el
+ * carril interactivo: las playlists y las importaciones nunca los ocupan, así
+ * que una canción agregada a mano empieza enseguida aunque haya miles de
+ * URLs masivas por delante.
+ *
+ * Con un InFlightRegistry, cada worker reserva su canción antes de lanzar
+ * yt-dlp. Si otra descarga (una playlist, otra forma de la misma URL) ya la
+ * tiene, la URL libera su cupo y espera a que esa descarga termine: si la
+ * completó, se da por descargada; si no, vuelve a despacharse.
+ *
+ * Una playlist no se descarga como un único elemento: al despacharla se analiza
+ * (ocupando su cupo mientras tanto) y sus canciones entran en la cola como
+ * URLs propias de la fuente de la playlist, así que reparten cupos, reintentos
+ * y turnos igual que cualquier otra canción. Si el análisis falla, la playlist
+ * se descarga entera como antes.
+ */
+public class DownloadScheduler {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadScheduler.class);
+
+    private final QueueManager queueManager;
+    private final DownloadService downloadService;
+    private final RetryPolicy retryPolicy;
+    private final PriorityQueue<PendingRetry> pendingRetries = new PriorityQueue<>();
+    private final Map<String, DownloadHandle> activeHandles = new ConcurrentHashMap<>();
+    private final Map<String, Boolean> waitingForHolder = new ConcurrentHashMap<>();
+    private final AtomicLong failedDownloads = new AtomicLong(0);
+    private final int interactiveSlots;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition stateChanged = lock.newCondition();
+
+    private volatile int maxConcurrent;
+    private volatile boolean cancelled;
+    private volatile boolean paused;
+    private volatile boolean playlistExpansion = true;
+    private int activeWorkers;
+    private int activeBulkWorkers;
+    private int pendingOutcomes;
+
+    private Consumer<String> itemStartedCallback;
+    private volatile InFlightRegistry inFlightRegistry;
+
+    /**
+     * Constructor del planificador
+     * @param queueManager cola de la que se obtienen las URLs
+     * @param downloadService servicio que ejecuta cada descarga
+     * @param maxConcurrent número máximo de descargas simultáneas
+     */
+    public DownloadScheduler(QueueManager queueManager, DownloadService downloadService, int maxConcurrent) {
+        this(queueManager, downloadService, maxConcurrent, RetryPolicy.none());
+    }
+
+    /**
+     * Constructor del planificador con política de reintentos
+     * @param queueManager cola de la que se obtienen las URLs
+     * @param downloadService servicio que ejecuta cada descarga
+     * @param maxConcurrent número máximo de descargas simultáneas
+     * @param retryPolicy política para reintentar las descargas fallidas
+     */
+    public DownloadScheduler(QueueManager queueManager, DownloadService downloadService, int maxConcurrent,
+                             RetryPolicy retryPolicy) {
+        this(queueManager, downloadService, maxConcurrent, retryPolicy, 0);
+    }
+
+    /**
+     * Constructor del planificador con cupos reservados para el carril interactivo
+     * @param queueManager cola de la que se obtienen las URLs
+     * @param downloadService servicio que ejecuta cada descarga
+     * @param maxConcurrent número máximo de descargas simultáneas
+     * @param retryPolicy política para reintentar las descargas fallidas
+     * @param interactiveSlots descargas extra que solo pueden usar las canciones interactivas
+     */
+    public DownloadScheduler(QueueManager queueManager, DownloadService downloadService, int maxConcurrent,
+                             RetryPolicy retryPolicy, int interactiveSlots) {
+        this.queueManager = queueManager;
+        this.downloadService = downloadService;
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        this.retryPolicy = retryPolicy;
+        this.interactiveSlots = Math.max(0, interactiveSlots);
+
+        // Las URLs agregadas durante la descarga despiertan al despachador
+        queueManager.addItemsAddedListener(this::signalStateChanged);
+    }
+
+    /**
+     * URL a la espera de reintento
+     */
+    private static class PendingRetry implements Comparable<PendingRetry> {
+        private final String url;
+        private final long dueAtNanos;
+        private final boolean interactive;
+
+        PendingRetry(String url, long dueAtNanos, boolean interactive) {
+            this.url = url;
+            this.dueAtNanos = dueAtNanos;
+            this.interactive = interactive;
+        }
+
+        @Override
+        public int compareTo(PendingRetry other) {
+            return Long.compare(dueAtNanos, other.dueAtNanos);
+        }
+    }
+
+    /**
+     * Despacha elementos de la cola hasta vaciarla respetando el límite de concurrencia.
+     * Bloquea el hilo llamador hasta que la cola esté vacía y no queden workers activos.
+     * @throws InterruptedException si el hilo es interrumpido mientras espera
+     */
+    public void runUntilDrained() throws InterruptedException {
+        cancelled = false;
+
+        lock.lock();
+        try {
+            while (!cancelled) {
+                dispatchAvailable();
+
+                if (pendingOutcomes == 0 && pendingRetries.isEmpty() && (queueManager.isEmpty() || cancelled)) {
+                    break;
+                }
+
+                PendingRetry nextRetry = pendingRetries.peek();
+                if (nextRetry != null && !paused) {
+                    stateChanged.awaitNanos(Math.max(1, nextRetry.dueAtNanos - System.nanoTime()));
+                } else {
+                    stateChanged.await();
+                }
+            }
+
+            requeuePendingRetries();
+
+            // Esperar a que los workers terminen tras una cancelación
+            while (pendingOutcomes > 0) {
+                stateChanged.await();
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        LOGGER.info("Planificador finalizado: {}", queueManager.getQueueStatus());
+    }
+
+    /**
+     * Lanza workers mientras haya cupo y elementos en la cola. Las URLs masivas
+     * solo ocupan los cupos generales; las interactivas pueden usar cualquiera.
+     * Debe llamarse con el lock adquirido.
+     */
+    private void dispatchAvailable() {
+        while (!cancelled && !paused && activeWorkers < maxConcurrent + interactiveSlots) {
+            boolean bulkAllowed = activeBulkWorkers < maxConcurrent;
+            PendingRetry retry = pollDueRetry(bulkAllowed);
+            String url;
+            boolean interactive;
+            if (retry != null) {
+                url = retry.url;
+                interactive = retry.interactive;
+            } else {
+                url = queueManager.claimNext(bulkAllowed);
+                interactive = url != null && queueManager.isInteractive(url);
+            }
+            if (url == null) {
+                return;
+            }
+
+            activeWorkers++;
+            if (!interactive) {
+                activeBulkWorkers++;
+            }
+            pendingOutcomes++;
+            if (retry == null && playlistExpansion && UrlCanonicalizer.isPlaylist(url)) {
+                expand(url, interactive);
+            } else {
+                launch(url, interactive);
+            }
+        }
+    }
+
+    /**
+     * Obtiene el siguiente reintento ya vencido que pueda ocupar un cupo.
+     * Debe llamarse con el lock adquirido.
+     * @param bulkAllowed si hay cupo para una URL masiva
+     * @return reintento o null si ninguno está listo
+     */
+    private PendingRetry pollDueRetry(boolean bulkAllowed) {
+        PendingRetry next = pendingRetries.peek();
+        if (next == null || next.dueAtNanos - System.nanoTime() > 0 || (!next.interactive && !bulkAllowed)) {
+            return null;
+        }
+        pendingRetries.poll();
+        LOGGER.info("Reintentando ({}/{}): {}", retryPolicy.getFailureCount(next.url),
+                    retryPolicy.getMaxRetries(), next.url);
+        return next;
+    }
+
+    /**
+     * Devuelve a la cola las URLs que esperaban reintento al detenerse el planificador.
+     * Debe llamarse con el lock adquirido.
+     */
+    private void requeuePendingRetries() {
+        PendingRetry retry;
+        while ((retry = pendingRetries.poll()) != null) {
+            queueManager.returnToQueue(retry.url);
+        }
+    }
+
+    /**
+     * Inicia la descarga de una URL. El cupo se libera cuando la descarga deja de
+     * usar la red y el resultado se registra en la cola cuando termina del todo.
+     * Debe llamarse con el lock adquirido y el cupo ya reservado.
+     * @param url URL a descargar
+     * @param interactive si la URL viene del carril interactivo
+     */
+    private void launch(String url, boolean interactive) {
+        InFlightRegistry registry = inFlightRegistry;
+        InFlightRegistry.Claim claim = null;
+        while (registry != null && claim == null) {
+            claim = registry.tryClaim(url, null);
+            InFlightRegistry.Claim holder = claim == null ? registry.findHolder(url, null) : null;
+            if (holder != null) {
+                waitForHolder(url, interactive, holder);
+                return;
+            }
+        }
+
+        if (itemStartedCallback != null) {
+            itemStartedCallback.accept(url);
+        }
+
+        DownloadHandle handle;
+        try {
+            handle = downloadService.startDownload(url, "");
+        } catch (RuntimeException e) {
+            LOGGER.error("No se pudo iniciar la descarga de {}", url, e);
+            if (claim != null) {
+                claim.release(false);
+            }
+            releaseSlot(interactive);
+            recordOutcome(url, DownloadHandle.State.FAILED, interactive);
+            return;
+        }
+
+        if (claim != null) {
+            InFlightRegistry.Claim owned = claim;
+            owned.bindActivity(handle::getLastActivityNanos);
+            handle.completion().whenComplete((state, error) -> owned.release(state == DownloadHandle.State.COMPLETED));
+        }
+        activeHandles.put(url, handle);
+        if (paused) {
+            handle.pause();
+        }
+
+        handle.networkCompletion().whenComplete((result, error) -> releaseSlot(interactive));
+        handle.completion().whenComplete((state, error) -> {
+            activeHandles.remove(url);
+            if (state == DownloadHandle.State.FAILED) {
+                failedDownloads.incrementAndGet();
+            }
+            if (state != DownloadHandle.State.COMPLETED) {
+                LOGGER.warn("Descarga terminada con estado {} (código {}): {}", state, handle.getExitCode(), url);
+            }
+            recordOutcome(url, state, interactive);
+        });
+    }
+
+    /**
+     * Analiza una playlist reclamada y pone sus canciones en la cola.
+     * Debe llamarse con el lock adquirido y el cupo ya reservado.
+     * @param url URL de la playlist
+     * @param interactive si la URL viene del carril interactivo
+     */
+    private void expand(String url, boolean interactive) {
+        if (itemStartedCallback != null) {
+            itemStartedCallback.accept(url);
+        }
+        
+        CompletableFuture<Map<String, Integer>> scan;
+        try {
+            scan = downloadService.expandPlaylist(url);
+        } catch (RuntimeException e) {
+            LOGGER.error("No se pudo analizar la playlist {}", url, e);
+            scan = CompletableFuture.completedFuture(null);
+        }
+        scan.whenComplete((entries, error) -> onExpanded(url, interactive, entries));
+    }
+
+    /**
+     * Termina la expansión de una playlist: encola sus canciones en la fuente de
+     * la playlist y la da por procesada, o la descarga entera si no se pudo analizar
+     * @param url URL de la playlist
+     * @param interactive si la URL viene del carril interactivo
+     * @param entries URL y duración de cada canción, o null si el análisis falló
+     */
+    private void onExpanded(String url, boolean interactive, Map<String, Integer> entries) {
+        if (entries == null && !cancelled) {
+            LOGGER.warn("No se pudo analizar la playlist {}, se descarga completa", url);
+            lock.lock();
+            try {
+                launch(url, interactive);
+            } finally {
+                lock.unlock();
+            }
+            return;
+        }
+
+        if (entries != null && !cancelled) {
+            int added = queueManager.addAll(entries.keySet(), queueManager.sourceForEntries(url), entries);
+            LOGGER.info("Playlist {}: {} canciones nuevas en la cola de {}", url, added, entries.size());
+        }
+        releaseSlot(interactive);
+        recordOutcome(url, cancelled ? DownloadHandle.State.CANCELLED : DownloadHandle.State.COMPLETED, interactive);
+    }
+
+    /**
+     * Deja una URL a la espera de la descarga que ya tiene su canción, sin ocupar cupo.
+     * Debe llamarse con el lock adquirido y el cupo ya reservado.
+     * @param url URL a descargar
+     * @param interactive si la URL viene del carril interactivo
+     * @param holder reserva de la otra descarga
+     */
+    private void waitForHolder(String url, boolean interactive, InFlightRegistry.Claim holder) {
+        LOGGER.info("{} ya se está descargando en otra tarea, se espera a que termine", url);
+        waitingForHolder.put(url, interactive);
+        releaseSlot(interactive);
+        holder.released().thenAccept(completed -> onHolderReleased(url, completed));
+    }
+
+    /**
+     * Retoma una URL en espera cuando la otra descarga libera la canción
+     * @param url URL en espera
+     * @param completed true si la otra descarga la completó
+     */
+    private void onHolderReleased(String url, boolean completed) {
+        Boolean interactive = waitingForHolder.remove(url);
+        if (interactive == null) {
+            return;
+        }
+        if (completed || cancelled) {
+            if (completed) {
+                LOGGER.info("Descargada por otra tarea: {}", url);
+            }
+            recordOutcome(url, completed ? DownloadHandle.State.COMPLETED : DownloadHandle.State.CANCELLED, interactive);
+            return;
+        }
+
+        lock.lock();
+        try {
+            pendingRetries.add(new PendingRetry(url, System.nanoTime(), interactive));
+            pendingOutcomes--;
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Libera el cupo de red de un worker
+     * @param interactive si ocupaba el cupo una URL interactiva
+     */
+    private void releaseSlot(boolean interactive) {
+        lock.lock();
+        try {
+            activeWorkers--;
+            if (!interactive) {
+                activeBulkWorkers--;
+            }
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Registra el resultado de una descarga: la completa, la devuelve a la cola
+     * si se canceló, la programa para reintento o la marca como fallida
+     * @param url URL procesada
+     * @param state estado final de la descarga
+     * @param interactive si la URL viene del carril interactivo
+     */
+    private void recordOutcome(String url, DownloadHandle.State state, boolean interactive) {
+        long retryDelayMs = -1;
+
+        if (cancelled || state == DownloadHandle.State.CANCELLED) {
+            queueManager.returnToQueue(url);
+        } else if (state == DownloadHandle.State.COMPLETED) {
+            retryPolicy.reset(url);
+            queueManager.markAsCompleted(url);
+        } else {
+            retryDelayMs = retryPolicy.onFailure(url);
+            if (retryDelayMs < 0) {
+                LOGGER.warn("Descarga fallida tras agotar los reintentos: {}", url);
+                queueManager.markAsFailed(url);
+            } else {
+                LOGGER.info("Reintento de {} en {} ms", url, retryDelayMs);
+            }
+        }
+
+        lock.lock();
+        try {
+            if (retryDelayMs >= 0) {
+                pendingRetries.add(new PendingRetry(url,
+                    System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(retryDelayMs), interactive));
+            }
+            pendingOutcomes--;
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Pausa el despacho de nuevos elementos
+     */
+    public void pause() {
+        paused = true;
+        activeHandles.values().forEach(DownloadHandle::pause);
+        LOGGER.info("Planificador pausado");
+    }
+
+    /**
+     * Reanuda el despacho de elementos
+     */
+    public void resume() {
+        paused = false;
+        activeHandles.values().forEach(DownloadHandle::resume);
+        signalStateChanged();
+        LOGGER.info("Planificador reanudado");
+    }
+
+    /**
+     * Cancela el despacho y detiene las descargas lanzadas por este planificador.
+     * Los elementos en curso se devuelven a la cola.
+     */
+    public void cancel() {
+        cancelled = true;
+        paused = false;
+        activeHandles.values().forEach(DownloadHandle::cancel);
+        for (String url : waitingForHolder.keySet()) {
+            Boolean interactive = waitingForHolder.remove(url);
+            if (interactive != null) {
+                recordOutcome(url, DownloadHandle.State.CANCELLED, interactive);
+            }
+        }
+        signalStateChanged();
+        LOGGER.info("Planificador cancelado");
+    }
+
+    private void signalStateChanged() {
+        lock.lock();
+        try {
+            stateChanged.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Cambia el número máximo de descargas simultáneas
+     * @param maxConcurrent nuevo límite (mínimo 1)
+     */
+    public void setMaxConcurrent(int maxConcurrent) {
+        this.maxConcurrent = Math.max(1, maxConcurrent);
+        signalStateChanged();
+    }
+
+    public int getMaxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int getInteractiveSlots() {
+        return interactiveSlots;
+    }
+
+    /**
+     * Establece el registro de canciones en curso que se consulta antes de lanzar cada descarga
+     * @param inFlightRegistry registro compartido, o null para no consultarlo
+     */
+    public void setInFlightRegistry(InFlightRegistry inFlightRegistry) {
+        this.inFlightRegistry = inFlightRegistry;
+    }
+
+    /**
+     * Indica si las playlists reclamadas se expanden en sus canciones o se
+     * descargan completas como un solo elemento
+     * @param playlistExpansion true para encolar cada canción por separado
+     */
+    public void setPlaylistExpansion(boolean playlistExpansion) {
+        this.playlistExpansion = playlistExpansion;
+    }
+
+    /**
+     * Obtiene el número de URLs que esperan a que otra descarga libere su canción
+     * @return URLs en espera
+     */
+    public int getWaitingForHolderCount() {
+        return waitingForHolder.size();
+    }
+
+    /**
+     * Obtiene el número de workers activos
+     * @return workers descargando en este momento
+     */
+    public int getActiveWorkers() {
+        lock.lock();
+        try {
+            return activeWorkers;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isPaused() {
+        return paused;
+    }
+
+    /**
+     * Obtiene el número de URLs a la espera de reintento
+     * @return reintentos pendientes
+     */
+    public int getPendingRetryCount() {
+        lock.lock();
+        try {
+            return pendingRetries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public RetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Obtiene el caudal total de las descargas en curso
+     * @return suma de las velocidades informadas por yt-dlp en bytes por segundo
+     */
+    public long getAggregateBytesPerSecond() {
+        long total = 0;
+        for (DownloadHandle handle : activeHandles.values()) {
+            total += handle.getBytesPerSecond();
+        }
+        return total;
+    }
+
+    /**
+     * Obtiene el número de descargas que terminaron con error desde que se creó el planificador
+     * @return descargas fallidas
+     */
+    public long getFailedDownloads() {
+        return failedDownloads.get();
+    }
+
+    /**
+     * Establece el callback invocado cuando un worker empieza una URL
+     * @param callback función que recibe la URL
+     */
+    public void setItemStartedCallback(Consumer<String> callback) {
+        this.itemStartedCallback = callback;
+    }
+}
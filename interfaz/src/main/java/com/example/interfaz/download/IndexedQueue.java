@@ -0,0 +1,216 @@
+package com.example.interfaz.download;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+
+/**
+ * Cola ordenada con índice hash por clave
+ *
+ * Lista doblemente enlazada más un mapa de clave a nodo: agregar al principio
+ * o al final, tomar el primero, comprobar pertenencia, quitar por clave y
+ * mover un elemento al frente son O(1). La comprobación y la inserción se
+ * hacen en el mismo paso, así que dos hilos no pueden agregar la misma clave.
+ *
+ * @param <V> tipo de los elementos
+ */
+public class IndexedQueue<V> {
+
+    private static final class Node<V> {
+        private final String key;
+        private final V value;
+        private Node<V> previous;
+        private Node<V> next;
+
+        private Node(String key, V value) {
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private final Map<String, Node<V>> index = new HashMap<>();
+    private Node<V> head;
+    private Node<V> tail;
+
+    /**
+     * Agrega un elemento al final si su clave no está en la cola
+     * @param key clave canónica
+     * @param value elemento
+     * @return true si se agregó, false si la clave ya estaba
+     */
+    public synchronized boolean offerLast(String key, V value) {
+        if (index.containsKey(key)) {
+            return false;
+        }
+        Node<V> node = new Node<>(key, value);
+        index.put(key, node);
+        linkLast(node);
+        return true;
+    }
+
+    /**
+     * Agrega un elemento al frente si su clave no está en la cola
+     * @param key clave canónica
+     * @param value elemento
+     * @return true si se agregó, false si la clave ya estaba
+     */
+    public synchronized boolean offerFirst(String key, V value) {
+        if (index.containsKey(key)) {
+            return false;
+        }
+        Node<V> node = new Node<>(key, value);
+        index.put(key, node);
+        linkFirst(node);
+        return true;
+    }
+
+    /**
+     * Toma y quita el primer elemento
+     * @return elemento o null si la cola está vacía
+     */
+    public synchronized V pollFirst() {
+        Node<V> node = head;
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        index.remove(node.key);
+        return node.value;
+    }
+
+    public synchronized V peekFirst() {
+        return head != null ? head.value : null;
+    }
+
+    /**
+     * Quita el elemento con la clave indicada
+     * @param key clave canónica
+     * @return elemento quitado o null si no estaba
+     */
+    public synchronized V remove(String key) {
+        Node<V> node = index.remove(key);
+        if (node == null) {
+            return null;
+        }
+        unlink(node);
+        return node.value;
+    }
+
+    /**
+     * Mueve al frente el elemento con la clave indicada
+     * @param key clave canónica
+     * @return true si el elemento estaba en la cola
+     */
+    public synchronized boolean moveToFront(String key) {
+        Node<V> node = index.get(key);
+        if (node == null) {
+            return false;
+        }
+        if (node != head) {
+            unlink(node);
+            linkFirst(node);
+        }
+        return true;
+    }
+
+    /**
+     * Mueve al final el elemento con la clave indicada
+     * @param key clave canónica
+     * @return true si el elemento estaba en la cola
+     */
+    public synchronized boolean moveToBack(String key) {
+        Node<V> node = index.get(key);
+        if (node == null) {
+            return false;
+        }
+        if (node != tail) {
+            unlink(node);
+            linkLast(node);
+        }
+        return true;
+    }
+
+    public synchronized boolean containsKey(String key) {
+        return index.containsKey(key);
+    }
+
+    public synchronized V get(String key) {
+        Node<V> node = index.get(key);
+        return node != null ? node.value : null;
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized boolean isEmpty() {
+        return head == null;
+    }
+
+    public synchronized void clear() {
+        index.clear();
+        head = null;
+        tail = null;
+    }
+
+    /**
+     * Obtiene una copia de los elementos en orden
+     * @return lista del primero al último
+     */
+    public synchronized List<V> values() {
+        List<V> values = new ArrayList<>(index.size());
+        for (Node<V> node = head; node != null; node = node.next) {
+            values.add(node.value);
+        }
+        return values;
+    }
+
+    /**
+     * Recorre los elementos en orden sin copiarlos
+     * @param action acción que recibe la clave y el elemento
+     */
+    public synchronized void forEach(BiConsumer<String, V> action) {
+        for (Node<V> node = head; node != null; node = node.next) {
+            action.accept(node.key, node.value);
+        }
+    }
+
+    private void linkFirst(Node<V> node) {
+        node.previous = null;
+        node.next = head;
+        if (head != null) {
+            head.previous = node;
+        } else {
+            tail = node;
+        }
+        head = node;
+    }
+
+    private void linkLast(Node<V> node) {
+        node.next = null;
+        node.previous = tail;
+        if (tail != null) {
+            tail.next = node;
+        } else {
+            head = node;
+        }
+        tail = node;
+    }
+
+    private void unlink(Node<V> node) {
+        if (node.previous != null) {
+            node.previous.next = node.next;
+        } else {
+            head = node.next;
+        }
+        if (node.next != null) {
+            node.next.previous = node.previous;
+        } else {
+            tail = node.previous;
+        }
+        node.previous = null;
+        node.next = null;
+    }
+}
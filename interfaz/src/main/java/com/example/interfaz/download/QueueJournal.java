@@ -0,0 +1,396 @@
+package com.example.interfaz.download;
+
+import com.example.interfaz.util.UrlCanonicalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.LongConsumer;
+
+/**
+ * Registro persistente de la cola de descargas
+ *
+ * Cada operación se añade como una línea "<tipo> <url>" a queue.log:
+ * A agregada, C reclamada, D completada, F fallida, R devuelta a la cola,
+ * X quitada y Z cola vaciada. Un registro "S <origen>" fija el carril y la
+ * fuente (ver {@link QueueSource}) de las altas y devoluciones que le siguen.
+ * Cada cierto número de registros el estado vivo se compacta en
+ * queue.snapshot (con el mismo formato) y el log se vacía.
+ * Al arrancar se repite snapshot + log: las URLs reclamadas que no llegaron a
+ * terminar vuelven al frente de su carril.
+ */
+public class QueueJournal implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(QueueJournal.class);
+
+    static final char ADD = 'A';
+    static final char CLAIM = 'C';
+    static final char DONE = 'D';
+    static final char FAIL = 'F';
+    static final char RETURN = 'R';
+    static final char REMOVE = 'X';
+    static final char CLEAR = 'Z';
+    static final char SOURCE = 'S';
+
+    private static final String LOG_FILE = "queue.log";
+    private static final String SNAPSHOT_FILE = "queue.snapshot";
+
+    private final Path logFile;
+    private final Path snapshotFile;
+    private final int compactThreshold;
+
+    private BufferedWriter writer;
+    private QueueSource writerSource;
+    private long recordsSinceCompaction;
+
+    /**
+     * Receptor de las URLs pendientes recuperadas
+     */
+    @FunctionalInterface
+    public interface PendingSink {
+        void accept(String url, QueueSource source);
+    }
+
+    /**
+     * Resultado de la recuperación
+     */
+    public static class Recovery {
+        private final List<String> failed;
+        private final int pending;
+
+        Recovery(List<String> failed, int pending) {
+            this.failed = failed;
+            this.pending = pending;
+        }
+
+        public List<String> getFailed() { return failed; }
+        public int getPending() { return pending; }
+    }
+
+    /**
+     * Constructor del registro
+     * @param directory directorio del log y el snapshot
+     * @param compactThreshold registros a partir de los cuales se compacta
+     */
+    public QueueJournal(Path directory, int compactThreshold) throws IOException {
+        Files.createDirectories(directory);
+        this.logFile = directory.resolve(LOG_FILE);
+        this.snapshotFile = directory.resolve(SNAPSHOT_FILE);
+        this.compactThreshold = Math.max(100, compactThreshold);
+    }
+
+    /**
+     * Reconstruye la cola a partir del snapshot y el log, y abre el log para escribir.
+     * Las URLs pendientes se entregan con su origen, en el orden de cada carril,
+     * sin cargarlas todas en memoria.
+     * @param pending receptor de las URLs pendientes, de la primera a la última
+     * @return URLs fallidas y número de pendientes
+     * @throws IOException si no se pueden leer los archivos
+     */
+    public synchronized Recovery recover(PendingSink pending) throws IOException {
+        // Primera pasada: estado final de cada URL (por huella) y posición de su último alta
+        Map<Long, Character> states = new HashMap<>();
+        Map<Long, Long> lastAdd = new HashMap<>();
+        Map<Long, QueueSource> origins = new HashMap<>();
+        Map<Long, String> front = new LinkedHashMap<>();
+        Map<Long, String> failed = new LinkedHashMap<>();
+        LongConsumer forget = key -> {
+            states.remove(key);
+            lastAdd.remove(key);
+            origins.remove(key);
+            front.remove(key);
+        };
+
+        long[] position = {0};
+        replay((record, source) -> {
+            long key = fingerprint(record.url);
+            long current = position[0]++;
+            switch (record.type) {
+                case CLEAR:
+                    states.clear();
+                    lastAdd.clear();
+                    origins.clear();
+                    front.clear();
+                    failed.clear();
+                    break;
+                case ADD:
+                    states.put(key, ADD);
+                    lastAdd.put(key, current);
+                    origins.put(key, source);
+                    front.remove(key);
+                    failed.remove(key);
+                    break;
+                case CLAIM:
+                    if (states.containsKey(key)) {
+                        states.put(key, CLAIM);
+                        front.remove(key);
+                        front.put(key, record.url);
+                    }
+                    break;
+                case RETURN:
+                    states.put(key, RETURN);
+                    lastAdd.remove(key);
+                    origins.put(key, source);
+                    front.remove(key);
+                    front.put(key, record.url);
+                    failed.remove(key);
+                    break;
+                case FAIL:
+                    failed.put(key, record.url);
+                    forget.accept(key);
+                    break;
+                case DONE:
+                case REMOVE:
+                    forget.accept(key);
+                    break;
+                default:
+                    break;
+            }
+        });
+
+        // Reclamadas sin terminar y devueltas: al frente de su carril, la más reciente primero
+        int count = 0;
+        List<Map.Entry<Long, String>> frontUrls = new ArrayList<>(front.entrySet());
+        for (int i = frontUrls.size() - 1; i >= 0; i--) {
+            Map.Entry<Long, String> entry = frontUrls.get(i);
+            pending.accept(entry.getValue(), origins.getOrDefault(entry.getKey(), QueueSource.DEFAULT_BULK));
+            count++;
+        }
+
+        // Segunda pasada: el resto en el orden de su último alta
+        int[] rest = {0};
+        position[0] = 0;
+        replay((record, source) -> {
+            long current = position[0]++;
+            if (record.type == ADD) {
+                long key = fingerprint(record.url);
+                Long added = lastAdd.get(key);
+                if (added != null && added == current && states.get(key) == ADD) {
+                    pending.accept(record.url, source);
+                    rest[0]++;
+                }
+            }
+        });
+        count += rest[0];
+
+        recordsSinceCompaction = position[0];
+        writerSource = null;
+        writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+            StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+
+        if (count > 0 || !failed.isEmpty()) {
+            LOGGER.info("Cola recuperada: {} pendientes, {} fallidas", count, failed.size());
+        }
+        return new Recovery(new ArrayList<>(failed.values()), count);
+    }
+
+    /**
+     * Recorre snapshot y log entregando cada registro con el origen vigente.
+     * Los registros de origen no se entregan; cada archivo empieza en DEFAULT_BULK.
+     */
+    private void replay(BiConsumer<Record, QueueSource> consumer) throws IOException {
+        for (Path file : new Path[] {snapshotFile, logFile}) {
+            if (!Files.exists(file)) {
+                continue;
+            }
+            QueueSource source = QueueSource.DEFAULT_BULK;
+            try (BufferedReader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    Record record = Record.parse(line);
+                    if (record == null) {
+                        continue;
+                    }
+                    if (record.type == SOURCE) {
+                        source = QueueSource.fromRecord(record.url);
+                    } else {
+                        consumer.accept(record, source);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Añade un registro al log
+     * @param type tipo de operación
+     * @param url URL afectada (vacía para CLEAR)
+     */
+    public synchronized void append(char type, String url) {
+        appendAll(type, List.of(url), null);
+    }
+
+    /**
+     * Añade un registro de alta o devolución con su origen
+     * @param type tipo de operación
+     * @param url URL afectada
+     * @param source origen de la URL
+     */
+    public synchronized void append(char type, String url, QueueSource source) {
+        appendAll(type, List.of(url), source);
+    }
+
+    /**
+     * Añade varios registros del mismo tipo con una sola escritura
+     * @param type tipo de operación
+     * @param urls URLs afectadas
+     * @param source origen de las URLs, o null si el registro no lo necesita
+     */
+    public synchronized void appendAll(char type, Collection<String> urls, QueueSource source) {
+        if (writer == null) {
+            return;
+        }
+        try {
+            if (source != null && !source.equals(writerSource)) {
+                writeRecord(writer, SOURCE, source.toRecord());
+                writerSource = source;
+                recordsSinceCompaction++;
+            }
+            for (String url : urls) {
+                writer.write(type);
+                writer.write(' ');
+                writer.write(url);
+                writer.newLine();
+            }
+            writer.flush();
+            recordsSinceCompaction += urls.size();
+        } catch (IOException e) {
+            LOGGER.warn("No se pudo escribir en el registro de la cola: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Indica si el log creció lo suficiente como para compactarlo
+     * @param liveItems elementos vivos (pendientes, reclamados y fallidos)
+     * @return true si conviene compactar
+     */
+    public synchronized boolean needsCompaction(long liveItems) {
+        return recordsSinceCompaction > Math.max(compactThreshold, 2 * liveItems);
+    }
+
+    /**
+     * Escribe el estado vivo en un snapshot nuevo y vacía el log
+     * @param pending URLs pendientes de cada origen, en orden de cola
+     * @param claimed URLs reclamadas por workers con su origen
+     * @param failed URLs fallidas
+     */
+    public synchronized void compact(Map<QueueSource, Iterator<String>> pending, Map<String, QueueSource> claimed,
+                                     Collection<String> failed) {
+        Path temp = snapshotFile.resolveSibling(SNAPSHOT_FILE + ".tmp");
+        long written = 0;
+        try {
+            try (BufferedWriter snapshot = Files.newBufferedWriter(temp, StandardCharsets.UTF_8)) {
+                for (Map.Entry<QueueSource, Iterator<String>> group : pending.entrySet()) {
+                    Iterator<String> urls = group.getValue();
+                    if (!urls.hasNext()) {
+                        continue;
+                    }
+                    writeRecord(snapshot, SOURCE, group.getKey().toRecord());
+                    written++;
+                    while (urls.hasNext()) {
+                        writeRecord(snapshot, ADD, urls.next());
+                        written++;
+                    }
+                }
+                for (Map.Entry<String, QueueSource> entry : claimed.entrySet()) {
+                    writeRecord(snapshot, SOURCE, entry.getValue().toRecord());
+                    writeRecord(snapshot, ADD, entry.getKey());
+                    writeRecord(snapshot, CLAIM, entry.getKey());
+                    written += 3;
+                }
+                for (String url : failed) {
+                    writeRecord(snapshot, FAIL, url);
+                    written++;
+                }
+            }
+            Files.move(temp, snapshotFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            if (writer != null) {
+                writer.close();
+            }
+            writer = Files.newBufferedWriter(logFile, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE);
+            writerSource = null;
+            recordsSinceCompaction = written;
+            LOGGER.debug("Registro de la cola compactado: {} registros", written);
+        } catch (IOException e) {
+            LOGGER.warn("No se pudo compactar el registro de la cola: {}", e.getMessage());
+        }
+    }
+
+    private static void writeRecord(BufferedWriter out, char type, String url) throws IOException {
+        out.write(type);
+        out.write(' ');
+        out.write(url);
+        out.newLine();
+    }
+
+    /**
+     * Calcula la huella de una URL a partir de su clave canónica, de modo que
+     * las variantes de una misma canción comparten huella
+     * @param url URL
+     * @return huella de 64 bits
+     */
+    static long fingerprint(String url) {
+        return hash(UrlCanonicalizer.canonicalKey(url));
+    }
+
+    /**
+     * Calcula una huella de 64 bits (FNV-1a) de una clave
+     * @param key clave canónica
+     * @return huella
+     */
+    static long hash(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash ^= key.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    /**
+     * Registro del log ya interpretado
+     */
+    private static final class Record {
+        private final char type;
+        private final String url;
+
+        private Record(char type, String url) {
+            this.type = type;
+            this.url = url;
+        }
+
+        private static Record parse(String line) {
+            // Una línea truncada por un cierre abrupto se ignora
+            if (line.length() < 2 || line.charAt(1) != ' ') {
+                return null;
+            }
+            return new Record(line.charAt(0), line.substring(2));
+        }
+    }
+}
@@ -7,32 +7,58 @@ import javafx.scene.control.ListView;
 import javafx.scene.control.SelectionMode;
 
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
 
 /**
  * Gestor de la cola de descargas
- * Responsable de manejar la cola de URLs y la interfaz de lista
+ * Responsable de manejar la cola de URLs y la interfaz de lista.
+ * La lista muestra solo la ventana en memoria de la cola; el resto puede
+ * estar en disco (ver {@link SpillingQueue}).
+ *
+ * Las canciones sueltas agregadas a mano van al carril interactivo y se
+ * descargan antes que las playlists y las URLs importadas en bloque.
  */
 public class QueueManager {
     
-    private final ConcurrentLinkedQueue<String> downloadQueue;
+    private final SpillingQueue downloadQueue;
     private final ObservableList<String> queueItems;
     private final ListView<String> queueListView;
     private final AtomicInteger totalItems;
     private final AtomicInteger processedItems;
+    private final List<Runnable> itemsAddedListeners = new CopyOnWriteArrayList<>();
+    private volatile Function<String, CompletableFuture<Integer>> durationProbe;
     
     /**
-     * Constructor que inicializa el gestor de cola
+     * Constructor que inicializa el gestor de cola en memoria
      */
     public QueueManager(ListView<String> queueListView) {
-        this.downloadQueue = new ConcurrentLinkedQueue<>();
-        this.queueItems = FXCollections.observableArrayList();
+        this(queueListView, SpillingQueue.inMemory());
+    }
+    
+    /**
+     * Constructor que inicializa el gestor sobre una cola ya recuperada
+     * @param queueListView lista donde se muestra la cola
+     * @param downloadQueue cola de URLs (persistente o en memoria)
+     */
+    public QueueManager(ListView<String> queueListView, SpillingQueue downloadQueue) {
+        this.downloadQueue = downloadQueue;
+        this.queueItems = FXCollections.observableArrayList(downloadQueue.windowSnapshot());
         this.queueListView = queueListView;
-        this.totalItems = new AtomicInteger(0);
+        this.totalItems = new AtomicInteger(downloadQueue.size());
         this.processedItems = new AtomicInteger(0);
         
+        downloadQueue.setWindowListener(loaded -> {
+            requestDurations(loaded);
+            Platform.runLater(() -> queueItems.addAll(loaded));
+        });
         initializeQueue();
     }
     
@@ -45,7 +71,47 @@ public class QueueManager {
     }
     
     /**
-     * Agrega una URL a la cola
+     * Establece cómo obtener la duración de las URLs cuando la cola ordena por
+     * duración; se consulta para cada URL que entra en la ventana en memoria
+     * @param probe función que devuelve la duración en segundos (-1 si es desconocida)
+     */
+    public void setDurationProbe(Function<String, CompletableFuture<Integer>> probe) {
+        this.durationProbe = probe;
+        if (probe != null) {
+            requestDurations(downloadQueue.windowSnapshot());
+        }
+    }
+    
+    private void requestDurations(List<String> urls) {
+        Function<String, CompletableFuture<Integer>> probe = durationProbe;
+        if (probe == null || downloadQueue.getOrder() != SpillingQueue.Order.SHORTEST_FIRST) {
+            return;
+        }
+        for (String url : urls) {
+            if (!downloadQueue.hasDuration(url)) {
+                probe.apply(url).thenAccept(seconds -> downloadQueue.setDuration(url, seconds));
+            }
+        }
+    }
+    
+    /**
+     * Registra una acción a ejecutar cuando se agregan URLs a la cola
+     * (por ejemplo, despertar al planificador mientras descarga)
+     * @param listener acción a ejecutar; se llama desde el hilo que agrega
+     */
+    public void addItemsAddedListener(Runnable listener) {
+        itemsAddedListeners.add(listener);
+    }
+    
+    private void notifyItemsAdded() {
+        itemsAddedListeners.forEach(Runnable::run);
+    }
+    
+    /**
+     * Agrega una URL a la cola. Las variantes de una URL que ya está en la cola
+     * (youtu.be, watch?v=...&list=..., parámetros de rastreo) se rechazan.
+     * Una canción suelta entra en el carril interactivo y una playlist es una
+     * fuente propia del carril masivo.
      * @param url URL a agregar
      * @return true si se agregó exitosamente
      */
@@ -55,28 +121,100 @@ public class QueueManager {
         }
         
         String trimmedUrl = url.trim();
+        QueueSource source = QueueSource.forUrl(trimmedUrl);
         
-        if (downloadQueue.contains(trimmedUrl)) {
+        SpillingQueue.Placement placement = downloadQueue.offer(trimmedUrl, source);
+        if (placement == SpillingQueue.Placement.DUPLICATE) {
             return false;
         }
-        
-        downloadQueue.offer(trimmedUrl);
         totalItems.incrementAndGet();
         
-        Platform.runLater(() -> {
-            queueItems.add(trimmedUrl);
-        });
+        if (placement == SpillingQueue.Placement.WINDOW && !source.isInteractive()) {
+            requestDurations(List.of(trimmedUrl));
+        }
+        if (placement == SpillingQueue.Placement.WINDOW) {
+            // Las interactivas se muestran tras las interactivas anteriores, delante del resto
+            int position = source.isInteractive() ? downloadQueue.getInteractiveCount() - 1 : -1;
+            Platform.runLater(() -> {
+                if (position >= 0) {
+                    queueItems.add(Math.min(position, queueItems.size()), trimmedUrl);
+                } else {
+                    queueItems.add(trimmedUrl);
+                }
+            });
+        }
         
+        notifyItemsAdded();
         return true;
     }
     
+    /**
+     * Agrega varias URLs al carril masivo con una sola actualización de la lista
+     * @param urls URLs a agregar (las ya presentes en la cola se descartan)
+     * @return número de URLs agregadas
+     */
+    public int addAll(Collection<String> urls) {
+        return addAll(urls, QueueSource.DEFAULT_BULK);
+    }
+    
+    /**
+     * Agrega varias URLs de un mismo origen con una sola actualización de la lista.
+     * Puede llamarse desde cualquier hilo: la deduplicación y la escritura en
+     * disco se hacen en el hilo que llama y solo se publica un cambio en la UI.
+     * @param urls URLs a agregar (las ya presentes en la cola se descartan)
+     * @param source origen de las URLs (normalmente una fuente del carril masivo)
+     * @return número de URLs agregadas
+     */
+    public int addAll(Collection<String> urls, QueueSource source) {
+        return addAll(urls, source, Map.of());
+    }
+    
+    /**
+     * Agrega varias URLs de un mismo origen cuya duración ya se conoce en parte
+     * (por ejemplo, las canciones de una playlist analizada); esas no se consultan
+     * @param urls URLs a agregar (las ya presentes en la cola se descartan)
+     * @param source origen de las URLs
+     * @param knownDurations duración en segundos por URL; las negativas se ignoran
+     * @return número de URLs agregadas
+     */
+    public int addAll(Collection<String> urls, QueueSource source, Map<String, Integer> knownDurations) {
+        List<String> trimmed = new ArrayList<>(urls.size());
+        for (String url : urls) {
+            if (url != null && !url.trim().isEmpty()) {
+                trimmed.add(url.trim());
+            }
+        }
+        if (trimmed.isEmpty()) {
+            return 0;
+        }
+        
+        SpillingQueue.BulkOffer offer = downloadQueue.offerAll(trimmed, source);
+        totalItems.addAndGet(offer.getAdded());
+        knownDurations.forEach(downloadQueue::setDuration);
+        
+        List<String> visible = offer.getVisible();
+        if (!source.isInteractive()) {
+            requestDurations(visible);
+        }
+        if (!visible.isEmpty()) {
+            Platform.runLater(() -> {
+                queueItems.addAll(visible);
+            });
+        }
+        if (offer.getAdded() > 0) {
+            notifyItemsAdded();
+        }
+        return offer.getAdded();
+    }
+    
     /**
      * Obtiene y remueve la siguiente URL de la cola
      * @return siguiente URL o null si la cola está vacía
      */
     public String pollNext() {
-        String url = downloadQueue.poll();
+        String url = downloadQueue.claim();
         if (url != null) {
+            downloadQueue.complete(url);
             processedItems.incrementAndGet();
             Platform.runLater(() -> {
                 queueItems.remove(url);
@@ -85,6 +223,85 @@ public class QueueManager {
         return url;
     }
     
+    /**
+     * Reclama la siguiente URL para un worker de descarga.
+     * A diferencia de pollNext no la cuenta como procesada hasta que se llame a markAsCompleted.
+     * @return siguiente URL o null si la cola está vacía
+     */
+    public String claimNext() {
+        return claimNext(true);
+    }
+    
+    /**
+     * Reclama la siguiente URL para un worker, opcionalmente solo del carril interactivo
+     * @param includeBulk false si el worker solo puede atender canciones interactivas
+     * @return siguiente URL o null si no hay ninguna disponible
+     */
+    public String claimNext(boolean includeBulk) {
+        String url = downloadQueue.claim(includeBulk);
+        if (url != null) {
+            Platform.runLater(() -> {
+                queueItems.remove(url);
+            });
+        }
+        return url;
+    }
+    
+    /**
+     * Obtiene la fuente en la que se encolan las canciones de una playlist
+     * reclamada. Cada playlist es una fuente propia del carril masivo, así que
+     * sus canciones se turnan con las de las demás playlists; si la playlist se
+     * reclamó de esa misma fuente, se conserva su peso.
+     * @param playlistUrl URL de la playlist reclamada con claimNext
+     * @return fuente para sus canciones
+     */
+    public QueueSource sourceForEntries(String playlistUrl) {
+        QueueSource own = QueueSource.forUrl(playlistUrl);
+        QueueSource claimedFrom = downloadQueue.claimedSource(playlistUrl);
+        return claimedFrom != null && claimedFrom.sameSource(own) ? claimedFrom : own;
+    }
+    
+    /**
+     * Indica si una URL reclamada viene del carril interactivo
+     * @param url URL reclamada con claimNext
+     * @return true si es interactiva
+     */
+    public boolean isInteractive(String url) {
+        return url != null && downloadQueue.isInteractiveClaim(url);
+    }
+    
+    /**
+     * Devuelve al frente de su carril una URL reclamada que no llegó a completarse
+     * @param url URL a devolver
+     */
+    public void returnToQueue(String url) {
+        if (url == null || !downloadQueue.returnFirst(url)) {
+            return;
+        }
+        
+        Platform.runLater(() -> {
+            queueItems.add(0, url);
+        });
+    }
+    
+    /**
+     * Adelanta una URL al frente del carril interactivo
+     * @param url URL a adelantar
+     * @return true si estaba en la parte de la cola en memoria
+     */
+    public boolean moveToFront(String url) {
+        String stored = url != null ? downloadQueue.moveToFront(url) : null;
+        if (stored == null) {
+            return false;
+        }
+        Platform.runLater(() -> {
+            if (queueItems.remove(stored)) {
+                queueItems.add(0, stored);
+            }
+        });
+        return true;
+    }
+    
     /**
      * Obtiene la siguiente URL para descargar sin removerla
      * @return siguiente URL o null si la cola está vacía
@@ -103,14 +320,15 @@ public class QueueManager {
             return false;
         }
         
-        boolean removed = downloadQueue.remove(url);
-        if (removed) {
-            Platform.runLater(() -> {
-                queueItems.remove(url);
-            });
-            totalItems.decrementAndGet();
+        String removed = downloadQueue.remove(url);
+        if (removed == null) {
+            return false;
         }
-        return removed;
+        Platform.runLater(() -> {
+            queueItems.remove(removed);
+        });
+        totalItems.decrementAndGet();
+        return true;
     }
     
     /**
@@ -119,10 +337,39 @@ public class QueueManager {
      */
     public void markAsCompleted(String url) {
         if (url != null) {
-            removeFromQueue(url);
+            if (downloadQueue.contains(url)) {
+                removeFromQueue(url);
+            }
+            downloadQueue.complete(url);
             processedItems.incrementAndGet();
         }
     }
+    
+    /**
+     * Marca una URL como fallida definitivamente (sin más reintentos)
+     * @param url URL fallida
+     */
+    public void markAsFailed(String url) {
+        if (url != null) {
+            if (downloadQueue.contains(url)) {
+                removeFromQueue(url);
+            }
+            downloadQueue.fail(url);
+            processedItems.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Obtiene las URLs que fallaron definitivamente
+     * @return lista de URLs fallidas
+     */
+    public List<String> getFailedItems() {
+        return downloadQueue.getFailed();
+    }
+    
+    public int getFailedCount() {
+        return downloadQueue.getFailed().size();
+    }
      
      /**
       * Verifica si la cola está vacía
@@ -167,17 +414,21 @@ public class QueueManager {
     public int removeSelectedItems() {
         List<String> selectedItems = new ArrayList<>(queueListView.getSelectionModel().getSelectedItems());
         
-        int removedCount = selectedItems.size();
+        Set<String> removed = new HashSet<>();
         for (String item : selectedItems) {
-            downloadQueue.remove(item);
-            totalItems.decrementAndGet();
+            String stored = downloadQueue.remove(item);
+            if (stored != null) {
+                removed.add(stored);
+                totalItems.decrementAndGet();
+            }
         }
         
+        // removeAll con un HashSet recorre la lista una sola vez
         Platform.runLater(() -> {
-            queueItems.removeAll(selectedItems);
+            queueItems.removeAll(removed);
         });
         
-        return removedCount;
+        return removed.size();
     }
     
     /**
@@ -217,11 +468,11 @@ public class QueueManager {
     }
     
     /**
-     * Obtiene una copia de todos los elementos en la cola
-     * @return lista con todos los elementos
+     * Obtiene una copia de los elementos de la cola que están en memoria
+     * @return lista con los elementos de la ventana
      */
     public List<String> getAllItems() {
-        return new ArrayList<>(downloadQueue);
+        return downloadQueue.windowSnapshot();
     }
     
     /**
@@ -229,12 +480,12 @@ public class QueueManager {
      * @return string con información de estado
      */
     public String getQueueStatus() {
-        return String.format("Cola: %d elementos, %d procesados", 
-                           size(), getProcessedCount());
+        return String.format("Cola: %d elementos, %d procesados, %d fallidos", 
+                           size(), getProcessedCount(), getFailedCount());
     }
     
     /**
-     * Verifica si la cola contiene una URL específica
+     * Verifica si la cola contiene una URL específica, pendiente o en descarga
      * @param url URL a verificar
      * @return true si la URL está en la cola
      */
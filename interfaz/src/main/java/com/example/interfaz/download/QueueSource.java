@@ -0,0 +1,137 @@
+package com.example.interfaz.download;
+
+import com.example.interfaz.util.UrlCanonicalizer;
+
+import java.util.Objects;
+
+/**
+ * Origen de las URLs de la cola: carril y fuente
+ *
+ * El carril interactivo recibe las canciones sueltas que agrega el usuario y
+ * tiene prioridad y cupos reservados en el planificador. El carril masivo se
+ * reparte por fuente (una playlist, un archivo importado) con round-robin
+ * ponderado, así que una fuente grande no acapara a las demás. Al reclamarse,
+ * una playlist se expande en sus canciones dentro de su propia fuente, de modo
+ * que el turno se reparte canción a canción y no playlist a playlist.
+ */
+public final class QueueSource {
+
+    /**
+     * Carril de la cola
+     */
+    public enum Lane {
+        INTERACTIVE,
+        BULK
+    }
+
+    /** Canciones sueltas agregadas por el usuario */
+    public static final QueueSource INTERACTIVE = new QueueSource(Lane.INTERACTIVE, "", 1);
+
+    /** Fuente masiva por defecto */
+    public static final QueueSource DEFAULT_BULK = new QueueSource(Lane.BULK, "", 1);
+
+    private final Lane lane;
+    private final String name;
+    private final int weight;
+
+    private QueueSource(Lane lane, String name, int weight) {
+        this.lane = lane;
+        this.name = name;
+        this.weight = weight;
+    }
+
+    /**
+     * Crea una fuente del carril masivo
+     * @param name nombre de la fuente (playlist, archivo...)
+     * @param weight peso en el round-robin (mínimo 1)
+     * @return fuente
+     */
+    public static QueueSource bulk(String name, int weight) {
+        String trimmed = name == null ? "" : name.trim();
+        return new QueueSource(Lane.BULK, trimmed, Math.max(1, weight));
+    }
+
+    /**
+     * Elige el origen de una URL agregada a mano: las playlists van al carril
+     * masivo como fuente propia y el resto al interactivo
+     * @param url URL agregada
+     * @return origen de la URL
+     */
+    public static QueueSource forUrl(String url) {
+        String key = UrlCanonicalizer.canonicalKey(url);
+        return key.startsWith("ytpl:") ? bulk(key, 1) : INTERACTIVE;
+    }
+
+    public Lane getLane() {
+        return lane;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getWeight() {
+        return weight;
+    }
+
+    public boolean isInteractive() {
+        return lane == Lane.INTERACTIVE;
+    }
+
+    /**
+     * Representación en el registro de la cola: "I" o "B <peso> <nombre>"
+     */
+    String toRecord() {
+        return isInteractive() ? "I" : "B " + weight + " " + name;
+    }
+
+    /**
+     * Interpreta la representación del registro
+     * @param record texto tras el tipo de registro
+     * @return fuente, o DEFAULT_BULK si no se puede interpretar
+     */
+    static QueueSource fromRecord(String record) {
+        if (record.equals("I")) {
+            return INTERACTIVE;
+        }
+        if (record.startsWith("B ")) {
+            int space = record.indexOf(' ', 2);
+            try {
+                int weight = Integer.parseInt(space > 0 ? record.substring(2, space) : record.substring(2));
+                return bulk(space > 0 ? record.substring(space + 1) : "", weight);
+            } catch (NumberFormatException e) {
+                return DEFAULT_BULK;
+            }
+        }
+        return DEFAULT_BULK;
+    }
+
+    /**
+     * Dos orígenes son la misma fuente si coinciden carril y nombre (el peso puede cambiar)
+     */
+    boolean sameSource(QueueSource other) {
+        return other != null && lane == other.lane && name.equals(other.name);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof QueueSource)) {
+            return false;
+        }
+        QueueSource other = (QueueSource) o;
+        return lane == other.lane && weight == other.weight && name.equals(other.name);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(lane, name, weight);
+    }
+
+    @Override
+    public String toString() {
+        return isInteractive() ? "interactiva" : (name.isEmpty() ? "masiva" : name);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.interfaz.download;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Política de reintentos para descargas fallidas (network.retry.*)
+ *
+ * Lleva la cuenta de fallos por URL y calcula la espera del siguiente intento
+ * con backoff exponencial y jitter: la mitad del retardo es fija y la otra
+ * mitad aleatoria, para que varias descargas que fallan juntas (caída de red)
+ * no vuelvan a intentarlo todas en el mismo instante.
+ */
+public class RetryPolicy {
+
+    private static final long MAX_DELAY_MS = 5 * 60 * 1000;
+
+    private final int maxRetries;
+    private final long baseDelayMs;
+    private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor de la política
+     * @param maxRetries número máximo de reintentos por URL (0 = sin reintentos)
+     * @param baseDelayMs espera antes del primer reintento
+     */
+    public RetryPolicy(int maxRetries, long baseDelayMs) {
+        this.maxRetries = Math.max(0, maxRetries);
+        this.baseDelayMs = Math.max(0, baseDelayMs);
+    }
+
+    /**
+     * Crea una política que nunca reintenta
+     * @return política sin reintentos
+     */
+    public static RetryPolicy none() {
+        return new RetryPolicy(0, 0);
+    }
+
+    /**
+     * Registra un fallo y calcula cuándo reintentar
+     * @param url URL que falló
+     * @return espera en milisegundos antes del reintento, o -1 si se agotaron los intentos
+     */
+    public long onFailure(String url) {
+        int failureCount = failures.merge(url, 1, Integer::sum);
+        if (failureCount > maxRetries) {
+            failures.remove(url);
+            return -1;
+        }
+
+        long exponential = baseDelayMs << Math.min(failureCount - 1, 20);
+        long delay = Math.min(MAX_DELAY_MS, exponential);
+        long half = delay / 2;
+        return half + (half > 0 ? ThreadLocalRandom.current().nextLong(half + 1) : 0);
+    }
+
+    /**
+     * Olvida los fallos de una URL que terminó bien o se quitó de la cola
+     * @param url URL a olvidar
+     */
+    public void reset(String url) {
+        failures.remove(url);
+    }
+
+    /**
+     * Obtiene el número de fallos registrados para una URL
+     * @param url URL a consultar
+     * @return fallos desde el último éxito
+     */
+    public int getFailureCount(String url) {
+        return failures.getOrDefault(url, 0);
+    }
+
+    public int getMaxRetries() {
+        return maxRetries;
+    }
+
+    /**
+     * Obtiene una copia de los fallos por URL
+     * @return mapa de URL a número de fallos
+     */
+    public Map<String, Integer> getFailureCounts() {
+        return new HashMap<>(failures);
+    }
+}
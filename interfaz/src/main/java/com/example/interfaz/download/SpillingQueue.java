@@ -0,0 +1,843 @@
+package com.example.interfaz.download;
+
+import com.example.interfaz.util.UrlCanonicalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Cola de URLs por carriles con una ventana acotada en memoria y el resto en disco
+ *
+ * Las URLs se agrupan por origen ({@link QueueSource}): el carril interactivo
+ * se atiende siempre primero y las fuentes del carril masivo se turnan con
+ * round-robin ponderado. Dentro de cada fuente el orden es FIFO o, con
+ * {@link Order#SHORTEST_FIRST}, la más corta de la ventana primero.
+ *
+ * Las primeras URLs viven en una ventana en memoria; cuando se llena, las
+ * siguientes de cada fuente se escriben en segmentos de disco propios que se
+ * cargan de nuevo cuando la ventana de esa fuente baja de la mitad. La
+ * pertenencia se comprueba con huellas de 64 bits, así que una cola de decenas
+ * de miles de URLs solo mantiene en memoria la ventana y una entrada por URL.
+ * Una URL reclamada sigue contando como parte de la cola hasta que se completa
+ * o falla, para que no se vuelva a agregar mientras se descarga.
+ * Si tiene un {@link QueueJournal}, cada operación queda registrada y la cola
+ * sobrevive a un cierre abrupto.
+ */
+public class SpillingQueue {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(SpillingQueue.class);
+
+    private static final String SEGMENT_PREFIX = "segment-";
+
+    private final int windowCapacity;
+    private final Path spillDirectory;
+    private QueueJournal journal;
+
+    private final Lane interactive = new Lane(QueueSource.INTERACTIVE);
+    private final Map<String, Lane> bulkLanes = new LinkedHashMap<>();
+    private final Map<Long, Lane> members = new HashMap<>();
+    private final Map<Long, ClaimedUrl> claimed = new LinkedHashMap<>();
+    private final Map<Long, String> failed = new LinkedHashMap<>();
+
+    private long segmentSequence;
+    private Consumer<List<String>> windowListener = loaded -> { };
+
+    private Order order = Order.FIFO;
+    private double agingFactor;
+    private int defaultDurationSeconds;
+    private final long createdAtMillis = System.currentTimeMillis();
+    private final Map<Long, Integer> durations = new HashMap<>();
+    private final Map<Long, Long> windowEntries = new HashMap<>();
+    private final Set<Long> pinned = new HashSet<>();
+
+    /**
+     * Orden de despacho dentro de cada fuente masiva
+     */
+    public enum Order {
+        /** Por orden de llegada */
+        FIFO,
+        /**
+         * La de menor duración + envejecimiento × llegada a la ventana primero:
+         * una URL que lleva esperando t segundos más compite como si durara
+         * aging × t segundos menos, así que las largas no esperan para siempre
+         */
+        SHORTEST_FIRST
+    }
+
+    /**
+     * URLs pendientes de un origen: ventana en memoria y segmentos en disco
+     */
+    private static final class Lane {
+        private QueueSource source;
+        private final IndexedQueue<String> window = new IndexedQueue<>();
+        private final Deque<Path> segments = new ArrayDeque<>();
+        private final Set<Long> tombstones = new HashSet<>();
+        private BufferedWriter tailWriter;
+        private int tailCount;
+        private int spilledCount;
+        // Crédito del round-robin ponderado suave
+        private int credit;
+
+        private Lane(QueueSource source) {
+            this.source = source;
+        }
+
+        private int size() {
+            return window.size() + spilledCount;
+        }
+    }
+
+    /**
+     * URL reclamada por un worker y su origen
+     */
+    private static final class ClaimedUrl {
+        private final String url;
+        private final QueueSource source;
+
+        private ClaimedUrl(String url, QueueSource source) {
+            this.url = url;
+            this.source = source;
+        }
+    }
+
+    /**
+     * Crea una cola solo en memoria, sin límite de ventana ni registro
+     * @return cola en memoria
+     */
+    public static SpillingQueue inMemory() {
+        return new SpillingQueue(Integer.MAX_VALUE, null);
+    }
+
+    /**
+     * Abre una cola persistente y recupera su contenido del registro
+     * @param directory directorio del registro y de los segmentos
+     * @param windowCapacity URLs que se mantienen en memoria
+     * @param compactThreshold registros a partir de los cuales se compacta el log
+     * @return cola recuperada
+     * @throws IOException si no se puede leer el registro
+     */
+    public static SpillingQueue open(Path directory, int windowCapacity, int compactThreshold) throws IOException {
+        Path spill = directory.resolve("spill");
+        Files.createDirectories(spill);
+        // Los segmentos se derivan del registro: se regeneran al recuperar
+        try (Stream<Path> stale = Files.list(spill)) {
+            for (Path file : (Iterable<Path>) stale::iterator) {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        QueueJournal journal = new QueueJournal(directory, compactThreshold);
+        SpillingQueue queue = new SpillingQueue(Math.max(16, windowCapacity), spill);
+        QueueJournal.Recovery recovery = journal.recover(queue::enqueue);
+        for (String url : recovery.getFailed()) {
+            queue.failed.put(QueueJournal.fingerprint(url), url);
+        }
+        // Hasta aquí la recuperación no escribe en el registro que está leyendo
+        queue.journal = journal;
+        return queue;
+    }
+
+    private SpillingQueue(int windowCapacity, Path spillDirectory) {
+        this.windowCapacity = windowCapacity;
+        this.spillDirectory = spillDirectory;
+    }
+
+    /**
+     * Establece el receptor de las URLs que pasan del disco a la ventana
+     * @param listener función que recibe las URLs cargadas, en orden
+     */
+    public synchronized void setWindowListener(Consumer<List<String>> listener) {
+        this.windowListener = listener != null ? listener : loaded -> { };
+    }
+
+    /**
+     * Cambia el orden de despacho de las fuentes masivas
+     * @param order orden de despacho
+     * @param agingFactor segundos de duración que se descuentan por segundo de espera
+     * @param defaultDurationSeconds duración supuesta mientras no se conoce la real
+     */
+    public synchronized void setOrder(Order order, double agingFactor, int defaultDurationSeconds) {
+        this.order = order;
+        this.agingFactor = Math.max(0, agingFactor);
+        this.defaultDurationSeconds = Math.max(0, defaultDurationSeconds);
+    }
+
+    public synchronized Order getOrder() {
+        return order;
+    }
+
+    /**
+     * Registra la duración de una URL pendiente para el orden por duración
+     * @param url URL de la cola
+     * @param seconds duración en segundos
+     * @return true si la URL sigue en la cola
+     */
+    public synchronized boolean setDuration(String url, int seconds) {
+        long fingerprint = QueueJournal.fingerprint(url);
+        if (seconds < 0 || !members.containsKey(fingerprint)) {
+            return false;
+        }
+        durations.put(fingerprint, seconds);
+        return true;
+    }
+
+    /**
+     * Indica si ya se conoce la duración de una URL pendiente
+     * @param url URL de la cola
+     * @return true si tiene duración registrada
+     */
+    public synchronized boolean hasDuration(String url) {
+        return durations.containsKey(QueueJournal.fingerprint(url));
+    }
+
+    /**
+     * Dónde quedó una URL agregada
+     */
+    public enum Placement {
+        /** Ya había una URL con la misma clave canónica */
+        DUPLICATE,
+        /** En la ventana en memoria */
+        WINDOW,
+        /** En un segmento de disco */
+        DISK
+    }
+
+    /**
+     * Agrega una URL al final de su carril si no está ya (por clave canónica).
+     * La comprobación y la inserción son atómicas.
+     * @param url URL a agregar
+     * @param source origen de la URL
+     * @return dónde quedó la URL, o DUPLICATE si no se agregó
+     */
+    public synchronized Placement offer(String url, QueueSource source) {
+        Placement placement = enqueue(url, source);
+        if (placement != Placement.DUPLICATE) {
+            record(QueueJournal.ADD, url, source);
+        }
+        return placement;
+    }
+
+    /**
+     * Resultado de agregar varias URLs
+     */
+    public static final class BulkOffer {
+        private final int added;
+        private final List<String> visible;
+
+        BulkOffer(int added, List<String> visible) {
+            this.added = added;
+            this.visible = visible;
+        }
+
+        /** @return URLs agregadas (sin contar duplicados) */
+        public int getAdded() { return added; }
+
+        /** @return URLs agregadas que quedaron en la ventana en memoria, en orden */
+        public List<String> getVisible() { return visible; }
+    }
+
+    /**
+     * Agrega varias URLs del mismo origen con una sola escritura en el registro;
+     * las que ya están (por clave canónica) se descartan
+     * @param urls URLs a agregar
+     * @param source origen de las URLs
+     * @return URLs agregadas y las que quedaron en la ventana en memoria
+     */
+    public synchronized BulkOffer offerAll(Collection<String> urls, QueueSource source) {
+        List<String> added = new ArrayList<>(urls.size());
+        List<String> visible = new ArrayList<>();
+        for (String url : urls) {
+            Placement placement = enqueue(url, source);
+            if (placement != Placement.DUPLICATE) {
+                added.add(url);
+            }
+            if (placement == Placement.WINDOW) {
+                visible.add(url);
+            }
+        }
+        if (journal != null && !added.isEmpty()) {
+            journal.appendAll(QueueJournal.ADD, added, source);
+            compactIfNeeded();
+        }
+        return new BulkOffer(added.size(), visible);
+    }
+
+    /**
+     * Agrega una URL si su clave canónica no está pendiente ni reclamada. Las
+     * interactivas se quedan siempre en memoria; las masivas van a disco si la
+     * ventana está llena.
+     * @return posición en la que quedó
+     */
+    private Placement enqueue(String url, QueueSource source) {
+        String key = UrlCanonicalizer.canonicalKey(url);
+        long fingerprint = QueueJournal.hash(key);
+        if (members.containsKey(fingerprint) || claimed.containsKey(fingerprint)) {
+            return Placement.DUPLICATE;
+        }
+        failed.remove(fingerprint);
+        Lane lane = laneFor(source);
+        members.put(fingerprint, lane);
+        if (lane == interactive
+                || (lane.segments.isEmpty() && windowSize() < windowCapacity)
+                || !spill(lane, url)) {
+            lane.window.offerLast(key, url);
+            enteredWindow(fingerprint);
+            return Placement.WINDOW;
+        }
+        return Placement.DISK;
+    }
+
+    private Lane laneFor(QueueSource source) {
+        if (source == null || source.isInteractive()) {
+            return interactive;
+        }
+        Lane lane = bulkLanes.computeIfAbsent(source.getName(), name -> new Lane(source));
+        // Un alta posterior puede cambiar el peso de la fuente
+        lane.source = source;
+        return lane;
+    }
+
+    /**
+     * Toma la primera URL de la cola (interactivas primero) y la registra como reclamada
+     * @return URL o null si la cola está vacía
+     */
+    public synchronized String claim() {
+        return claim(true);
+    }
+
+    /**
+     * Toma la siguiente URL y la registra como reclamada por un worker.
+     * El carril interactivo va primero; entre las fuentes masivas se turna
+     * con round-robin ponderado.
+     * @param includeBulk false para tomar solo del carril interactivo
+     * @return URL o null si no hay ninguna disponible
+     */
+    public synchronized String claim(boolean includeBulk) {
+        Lane lane = interactive.size() > 0 ? interactive : (includeBulk ? nextBulkLane() : null);
+        if (lane == null) {
+            return null;
+        }
+        refillIfLow(lane);
+        String url = order == Order.SHORTEST_FIRST && lane != interactive
+            ? pollShortest(lane)
+            : lane.window.pollFirst();
+        if (url == null) {
+            return null;
+        }
+        long key = QueueJournal.fingerprint(url);
+        members.remove(key);
+        forgetOrdering(key);
+        claimed.put(key, new ClaimedUrl(url, lane.source));
+        record(QueueJournal.CLAIM, url, null);
+        refillIfLow(lane);
+        dropIfDrained(lane);
+        return url;
+    }
+
+    /**
+     * Toma de la ventana de una fuente la URL con menor clave
+     * duración + envejecimiento × llegada; una URL devuelta al frente va primero
+     */
+    private String pollShortest(Lane lane) {
+        String head = lane.window.peekFirst();
+        if (head == null || pinned.contains(QueueJournal.fingerprint(head))) {
+            return lane.window.pollFirst();
+        }
+
+        String[] best = {null};
+        double[] bestKey = {Double.MAX_VALUE};
+        lane.window.forEach((key, url) -> {
+            long fingerprint = QueueJournal.hash(key);
+            double arrival = (windowEntries.getOrDefault(fingerprint, createdAtMillis) - createdAtMillis) / 1000.0;
+            double score = durations.getOrDefault(fingerprint, defaultDurationSeconds) + agingFactor * arrival;
+            if (score < bestKey[0]) {
+                bestKey[0] = score;
+                best[0] = key;
+            }
+        });
+        return lane.window.remove(best[0]);
+    }
+
+    private void enteredWindow(long fingerprint) {
+        if (order == Order.SHORTEST_FIRST) {
+            windowEntries.put(fingerprint, System.currentTimeMillis());
+        }
+    }
+
+    private void forgetOrdering(long fingerprint) {
+        durations.remove(fingerprint);
+        windowEntries.remove(fingerprint);
+        pinned.remove(fingerprint);
+    }
+
+    /**
+     * Elige la fuente masiva siguiente con round-robin ponderado suave: cada
+     * fuente con URLs suma su peso al crédito y la de más crédito paga el total
+     * @return fuente elegida o null si no hay URLs masivas
+     */
+    private Lane nextBulkLane() {
+        Lane best = null;
+        int totalWeight = 0;
+        for (Lane lane : bulkLanes.values()) {
+            if (lane.size() == 0) {
+                continue;
+            }
+            lane.credit += lane.source.getWeight();
+            totalWeight += lane.source.getWeight();
+            if (best == null || lane.credit > best.credit) {
+                best = lane;
+            }
+        }
+        if (best != null) {
+            best.credit -= totalWeight;
+        }
+        return best;
+    }
+
+    /**
+     * Devuelve al frente de su carril una URL reclamada que no llegó a terminar
+     * @param url URL a devolver
+     * @return true si se devolvió
+     */
+    public synchronized boolean returnFirst(String url) {
+        String key = UrlCanonicalizer.canonicalKey(url);
+        long fingerprint = QueueJournal.hash(key);
+        if (members.containsKey(fingerprint)) {
+            return false;
+        }
+        ClaimedUrl previous = claimed.remove(fingerprint);
+        Lane lane = laneFor(previous != null ? previous.source : QueueSource.DEFAULT_BULK);
+        members.put(fingerprint, lane);
+        lane.window.offerFirst(key, url);
+        pinned.add(fingerprint);
+        record(QueueJournal.RETURN, url, lane.source);
+        return true;
+    }
+
+    /**
+     * Mueve una URL de la ventana en memoria al frente del carril interactivo
+     * @param url URL a adelantar (o una variante con la misma clave canónica)
+     * @return URL tal como estaba en la cola, o null si no estaba en la ventana
+     */
+    public synchronized String moveToFront(String url) {
+        String key = UrlCanonicalizer.canonicalKey(url);
+        long fingerprint = QueueJournal.hash(key);
+        Lane lane = members.get(fingerprint);
+        String stored = lane != null ? lane.window.get(key) : null;
+        if (stored == null) {
+            return null;
+        }
+        if (lane == interactive) {
+            interactive.window.moveToFront(key);
+        } else {
+            lane.window.remove(key);
+            interactive.window.offerFirst(key, stored);
+            members.put(fingerprint, interactive);
+            dropIfDrained(lane);
+        }
+        // Al recuperar, una URL devuelta vuelve al frente de su carril: el mismo registro sirve
+        record(QueueJournal.RETURN, stored, QueueSource.INTERACTIVE);
+        return stored;
+    }
+
+    /**
+     * Registra una URL reclamada como completada
+     * @param url URL completada
+     */
+    public synchronized void complete(String url) {
+        finishClaim(url, QueueJournal.DONE);
+    }
+
+    /**
+     * Registra una URL reclamada como fallida definitivamente
+     * @param url URL fallida
+     */
+    public synchronized void fail(String url) {
+        finishClaim(url, QueueJournal.FAIL);
+    }
+
+    private void finishClaim(String url, char type) {
+        remove(url);
+        long key = QueueJournal.fingerprint(url);
+        claimed.remove(key);
+        if (type == QueueJournal.FAIL) {
+            failed.put(key, url);
+        }
+        record(type, url, null);
+    }
+
+    /**
+     * Indica si una URL reclamada pertenece al carril interactivo
+     * @param url URL reclamada
+     * @return true si es interactiva
+     */
+    public synchronized boolean isInteractiveClaim(String url) {
+        ClaimedUrl entry = claimed.get(QueueJournal.fingerprint(url));
+        return entry != null && entry.source.isInteractive();
+    }
+
+    /**
+     * Obtiene la fuente de la que se reclamó una URL
+     * @param url URL reclamada
+     * @return fuente, o null si la URL no está reclamada
+     */
+    public synchronized QueueSource claimedSource(String url) {
+        ClaimedUrl entry = claimed.get(QueueJournal.fingerprint(url));
+        return entry != null ? entry.source : null;
+    }
+
+    /**
+     * Quita una URL pendiente de la cola (o cualquier variante con la misma clave canónica)
+     * @param url URL a quitar
+     * @return URL tal como estaba en la cola, o null si no estaba
+     */
+    public synchronized String remove(String url) {
+        String key = UrlCanonicalizer.canonicalKey(url);
+        long fingerprint = QueueJournal.hash(key);
+        Lane lane = members.remove(fingerprint);
+        if (lane == null) {
+            return null;
+        }
+        forgetOrdering(fingerprint);
+        String stored = lane.window.remove(key);
+        if (stored == null) {
+            // Está en un segmento de disco: se descarta al cargarlo
+            lane.tombstones.add(fingerprint);
+            lane.spilledCount--;
+            stored = url;
+        }
+        record(QueueJournal.REMOVE, stored, null);
+        dropIfDrained(lane);
+        return stored;
+    }
+
+    /**
+     * Verifica si una URL está pendiente o reclamada por un worker sin terminar
+     * @param url URL a verificar (o una variante con la misma clave canónica)
+     * @return true si la URL pertenece a la cola
+     */
+    public synchronized boolean contains(String url) {
+        long fingerprint = QueueJournal.fingerprint(url);
+        return members.containsKey(fingerprint) || claimed.containsKey(fingerprint);
+    }
+
+    public synchronized int size() {
+        int size = interactive.size();
+        for (Lane lane : bulkLanes.values()) {
+            size += lane.size();
+        }
+        return size;
+    }
+
+    public synchronized boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Obtiene la URL que más probablemente se reclame a continuación
+     * @return primera URL interactiva o de la primera fuente masiva, o null
+     */
+    public synchronized String peek() {
+        String next = interactive.window.peekFirst();
+        if (next != null) {
+            return next;
+        }
+        for (Lane lane : bulkLanes.values()) {
+            next = lane.window.peekFirst();
+            if (next != null) {
+                return next;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Obtiene las URLs de la ventana en memoria
+     * @return copia de la ventana: interactivas y luego cada fuente masiva
+     */
+    public synchronized List<String> windowSnapshot() {
+        List<String> snapshot = new ArrayList<>(interactive.window.values());
+        for (Lane lane : bulkLanes.values()) {
+            snapshot.addAll(lane.window.values());
+        }
+        return snapshot;
+    }
+
+    public synchronized int getSpilledCount() {
+        int spilled = 0;
+        for (Lane lane : bulkLanes.values()) {
+            spilled += lane.spilledCount;
+        }
+        return spilled;
+    }
+
+    public synchronized int getInteractiveCount() {
+        return interactive.size();
+    }
+
+    public synchronized int getBulkSourceCount() {
+        return bulkLanes.size();
+    }
+
+    /**
+     * Obtiene las URLs que fallaron definitivamente, incluidas las recuperadas del registro
+     * @return lista de URLs fallidas
+     */
+    public synchronized List<String> getFailed() {
+        return new ArrayList<>(failed.values());
+    }
+
+    /**
+     * Vacía la cola, incluidos los segmentos en disco
+     */
+    public synchronized void clear() {
+        discard(interactive);
+        for (Lane lane : bulkLanes.values()) {
+            discard(lane);
+        }
+        bulkLanes.clear();
+        members.clear();
+        failed.clear();
+        durations.clear();
+        windowEntries.clear();
+        pinned.clear();
+        record(QueueJournal.CLEAR, "", null);
+    }
+
+    private void discard(Lane lane) {
+        lane.window.clear();
+        lane.tombstones.clear();
+        closeTail(lane);
+        for (Path segment : lane.segments) {
+            deleteQuietly(segment);
+        }
+        lane.segments.clear();
+        lane.spilledCount = 0;
+        lane.credit = 0;
+    }
+
+    /**
+     * Elimina una fuente masiva que ya no tiene URLs pendientes
+     */
+    private void dropIfDrained(Lane lane) {
+        if (lane != interactive && lane.size() == 0) {
+            discard(lane);
+            bulkLanes.remove(lane.source.getName());
+        }
+    }
+
+    private int windowSize() {
+        int size = interactive.window.size();
+        for (Lane lane : bulkLanes.values()) {
+            size += lane.window.size();
+        }
+        return size;
+    }
+
+    /**
+     * Escribe una URL en el segmento de cola de su fuente, abriendo uno nuevo si hace falta
+     * @return false si no se pudo escribir (la URL se queda en memoria)
+     */
+    private boolean spill(Lane lane, String url) {
+        try {
+            if (lane.tailWriter == null || lane.tailCount >= windowCapacity) {
+                closeTail(lane);
+                Path segment = spillDirectory.resolve(SEGMENT_PREFIX + (segmentSequence++));
+                lane.tailWriter = Files.newBufferedWriter(segment, StandardCharsets.UTF_8);
+                lane.tailCount = 0;
+                lane.segments.addLast(segment);
+            }
+            lane.tailWriter.write(url);
+            lane.tailWriter.newLine();
+            lane.tailCount++;
+            lane.spilledCount++;
+            return true;
+        } catch (IOException e) {
+            LOGGER.error("No se pudo escribir el segmento de la cola, se mantiene en memoria", e);
+            return false;
+        }
+    }
+
+    /**
+     * Carga el siguiente segmento de una fuente cuando su ventana se vacía, o
+     * cuando baja de la mitad y la ventana total tiene sitio
+     */
+    private void refillIfLow(Lane lane) {
+        while (!lane.segments.isEmpty()
+                && (lane.window.isEmpty()
+                    || (lane.window.size() < windowCapacity / 2 && windowSize() < windowCapacity))) {
+            Path segment = lane.segments.pollFirst();
+            if (lane.segments.isEmpty()) {
+                closeTail(lane);
+            }
+
+            List<String> loaded = new ArrayList<>();
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    // Las quitadas mientras estaban en disco ya se descontaron
+                    if (!lane.tombstones.remove(QueueJournal.fingerprint(line))) {
+                        lane.spilledCount--;
+                        loaded.add(line);
+                    }
+                }
+            } catch (IOException e) {
+                LOGGER.error("No se pudo leer el segmento {} de la cola", segment, e);
+            }
+            deleteQuietly(segment);
+
+            for (String url : loaded) {
+                String key = UrlCanonicalizer.canonicalKey(url);
+                lane.window.offerLast(key, url);
+                enteredWindow(QueueJournal.hash(key));
+            }
+            windowListener.accept(loaded);
+        }
+    }
+
+    private void closeTail(Lane lane) {
+        if (lane.tailWriter != null) {
+            try {
+                lane.tailWriter.close();
+            } catch (IOException e) {
+                LOGGER.warn("No se pudo cerrar el segmento de la cola: {}", e.getMessage());
+            }
+            lane.tailWriter = null;
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            LOGGER.warn("No se pudo borrar {}: {}", file, e.getMessage());
+        }
+    }
+
+    private void record(char type, String url, QueueSource source) {
+        if (journal != null) {
+            journal.append(type, url, source);
+            compactIfNeeded();
+        }
+    }
+
+    /**
+     * Compacta el registro recorriendo las ventanas y los segmentos en disco de cada fuente
+     */
+    private void compactIfNeeded() {
+        if (!journal.needsCompaction(size() + claimed.size() + failed.size())) {
+            return;
+        }
+
+        List<Lane> lanes = new ArrayList<>();
+        lanes.add(interactive);
+        lanes.addAll(bulkLanes.values());
+        Map<QueueSource, Iterator<String>> pending = new LinkedHashMap<>();
+        for (Lane lane : lanes) {
+            if (lane.tailWriter != null) {
+                try {
+                    lane.tailWriter.flush();
+                } catch (IOException e) {
+                    LOGGER.warn("No se pudo volcar el segmento de la cola: {}", e.getMessage());
+                    return;
+                }
+            }
+            pending.put(lane.source, pendingIterator(lane));
+        }
+
+        Map<String, QueueSource> inFlight = new LinkedHashMap<>();
+        for (ClaimedUrl entry : claimed.values()) {
+            inFlight.put(entry.url, entry.source);
+        }
+        try {
+            journal.compact(pending, inFlight, failed.values());
+        } catch (UncheckedIOException e) {
+            LOGGER.warn("No se pudo leer la cola para compactar el registro: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Recorre las URLs pendientes de una fuente en orden: primero la ventana y luego los segmentos.
+     * No lee nada hasta que se usa, así que pueden crearse todos antes de compactar.
+     */
+    private static Iterator<String> pendingIterator(Lane lane) {
+        Iterator<String> inWindow = lane.window.values().iterator();
+        Iterator<Path> onDisk = new ArrayList<>(lane.segments).iterator();
+        Set<Long> tombstones = new HashSet<>(lane.tombstones);
+
+        return new Iterator<>() {
+            private BufferedReader reader;
+            private String next;
+            private boolean started;
+
+            private String advance() {
+                if (inWindow.hasNext()) {
+                    return inWindow.next();
+                }
+                try {
+                    while (true) {
+                        if (reader != null) {
+                            String line = reader.readLine();
+                            if (line == null) {
+                                reader.close();
+                                reader = null;
+                                continue;
+                            }
+                            // Como al cargar: la lápida descarta solo la primera aparición
+                            if (tombstones.remove(QueueJournal.fingerprint(line))) {
+                                continue;
+                            }
+                            return line;
+                        }
+                        if (!onDisk.hasNext()) {
+                            return null;
+                        }
+                        reader = Files.newBufferedReader(onDisk.next(), StandardCharsets.UTF_8);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+
+            @Override
+            public boolean hasNext() {
+                if (!started) {
+                    next = advance();
+                    started = true;
+                }
+                return next != null;
+            }
+
+            @Override
+            public String next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                String current = next;
+                next = advance();
+                return current;
+            }
+        };
+    }
+}
@@ -1,12 +1,24 @@
 package com.example.interfaz.factory;
 
 import com.example.interfaz.service.*;
+import com.example.interfaz.config.AppConfig;
+import com.example.interfaz.download.ConcurrencyController;
+import com.example.interfaz.download.DownloadScheduler;
 import com.example.interfaz.download.QueueManager;
+import com.example.interfaz.download.RetryPolicy;
+import com.example.interfaz.download.SpillingQueue;
 import com.example.interfaz.controller.ProgressManager;
 import com.example.interfaz.controller.UIStateManager;
 import com.example.interfaz.event.EventPublisher;
 import com.example.interfaz.event.EventBus;
+import com.example.interfaz.util.FileUtils;
 import javafx.scene.control.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 /**
  * Factory para la creación e inyección de dependencias de servicios
@@ -14,6 +26,9 @@ import javafx.scene.control.*;
  */
 public class ServiceFactory {
     
+    private static final Logger LOGGER = LoggerFactory.getLogger(ServiceFactory.class);
+    private static final String QUEUE_DIR_NAME = ".queue";
+    
     private static ServiceFactory instance;
     
     private FilterService filterService;
@@ -73,7 +88,65 @@ public class ServiceFactory {
      * @return nueva instancia de QueueManager
      */
     public QueueManager createQueueManager(ListView<String> queueListView) {
-        return new QueueManager(queueListView);
+        AppConfig config = AppConfig.getInstance();
+        if (config.isQueuePersistent()) {
+            Path directory = Paths.get(FileUtils.getMusicDirectory(), QUEUE_DIR_NAME);
+            try {
+                SpillingQueue queue = SpillingQueue.open(directory, config.getQueueMemoryWindow(),
+                                                         config.getQueueCompactThreshold());
+                return configureOrder(new QueueManager(queueListView, queue), queue);
+            } catch (IOException e) {
+                LOGGER.warn("No se pudo abrir la cola persistente en {}, se usa una cola en memoria", directory, e);
+            }
+        }
+        SpillingQueue queue = SpillingQueue.inMemory();
+        return configureOrder(new QueueManager(queueListView, queue), queue);
+    }
+    
+    /**
+     * Aplica el orden de despacho configurado (queue.order) a la cola
+     */
+    private QueueManager configureOrder(QueueManager queueManager, SpillingQueue queue) {
+        AppConfig config = AppConfig.getInstance();
+        if (config.isQueueShortestFirst()) {
+            queue.setOrder(SpillingQueue.Order.SHORTEST_FIRST, config.getQueueSjfAging(),
+                           config.getQueueSjfDefaultDurationSeconds());
+            queueManager.setDurationProbe(getDownloadService()::probeDuration);
+            LOGGER.info("Cola ordenada por duración (envejecimiento {})", config.getQueueSjfAging());
+        }
+        return queueManager;
+    }
+    
+    /**
+     * Crea un planificador de descargas concurrentes para la cola indicada
+     * @param queueManager cola a drenar
+     * @param downloadService servicio que ejecuta cada descarga
+     * @return nueva instancia de DownloadScheduler
+     */
+    public DownloadScheduler createDownloadScheduler(QueueManager queueManager, DownloadService downloadService) {
+        AppConfig config = AppConfig.getInstance();
+        // Con el pool de yt-dlp cada worker necesita un lote completo de URLs en vuelo
+        int inFlight = config.getMaxConcurrentDownloads() * Math.max(1, config.getWorkerBatchSize());
+        RetryPolicy retryPolicy = new RetryPolicy(config.getRetryAttempts(), config.getRetryDelayMs());
+        DownloadScheduler scheduler = new DownloadScheduler(queueManager, downloadService, inFlight, retryPolicy,
+                                                             config.getInteractiveSlots());
+        scheduler.setInFlightRegistry(InFlightRegistry.getInstance());
+        scheduler.setPlaylistExpansion(config.isPlaylistExpandEnabled());
+        return scheduler;
+    }
+    
+    /**
+     * Crea el controlador adaptativo de concurrencia para un planificador
+     * @param scheduler planificador cuyo límite se ajusta
+     * @return controlador, o null si está desactivado o se usa el pool de yt-dlp por lotes
+     */
+    public ConcurrencyController createConcurrencyController(DownloadScheduler scheduler) {
+        AppConfig config = AppConfig.getInstance();
+        if (scheduler == null || !config.isAdaptiveConcurrencyEnabled() || config.getWorkerBatchSize() > 1) {
+            return null;
+        }
+        return new ConcurrencyController(scheduler, config.getConcurrencyMin(), config.getConcurrencyMax(),
+                                         config.getConcurrencySampleMs());
     }
     
     /**
@@ -0,0 +1,92 @@
+package com.example.interfaz.model;
+
+import java.util.Objects;
+
+/**
+ * Elemento de una playlist obtenido del análisis previo (--flat-playlist)
+ * Contiene solo metadatos: no implica que el audio se haya descargado
+ */
+public class PlaylistEntry {
+
+    private static final String WATCH_URL = "https://www.youtube.com/watch?v=";
+
+    private final int index;
+    private final String id;
+    private final String title;
+    private final int durationSeconds;
+
+    /**
+     * Constructor del elemento
+     * @param index posición (base 1) dentro de la playlist
+     * @param id identificador del video
+     * @param title título del video
+     * @param durationSeconds duración en segundos, o -1 si es desconocida
+     */
+    public PlaylistEntry(int index, String id, String title, int durationSeconds) {
+        this.index = index;
+        this.id = id;
+        this.title = title;
+        this.durationSeconds = durationSeconds;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public int getDurationSeconds() {
+        return durationSeconds;
+    }
+
+    public boolean hasDuration() {
+        return durationSeconds >= 0;
+    }
+
+    /**
+     * Obtiene la URL del video individual
+     * @return URL de YouTube del video
+     */
+    public String getUrl() {
+        return WATCH_URL + id;
+    }
+
+    /**
+     * Obtiene la URL del video dentro de su playlist. La clave canónica es la
+     * del video, pero la URL conserva la playlist y la posición.
+     * @param playlistId identificador de la playlist (parámetro list=)
+     * @return URL de YouTube del video con list= e index=
+     */
+    public String getUrl(String playlistId) {
+        return WATCH_URL + id + "&list=" + playlistId + "&index=" + index;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PlaylistEntry entry = (PlaylistEntry) o;
+        return index == entry.index && Objects.equals(id, entry.id);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(index, id);
+    }
+
+    @Override
+    public String toString() {
+        return "PlaylistEntry{" +
+                "index=" + index +
+                ", id='" + id + '\'' +
+                ", title='" + title + '\'' +
+                ", durationSeconds=" + durationSeconds +
+                '}';
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.interfaz.model;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Predicate;
+
+/**
+ * Inventario de una playlist: lista completa de elementos con sus metadatos
+ * Se obtiene antes de descargar para poder filtrar, priorizar y repartir el trabajo
+ */
+public class PlaylistInventory {
+
+    private final String playlistUrl;
+    private final List<PlaylistEntry> entries;
+    private final long scanTimeMs;
+
+    public PlaylistInventory(String playlistUrl, List<PlaylistEntry> entries, long scanTimeMs) {
+        this.playlistUrl = playlistUrl;
+        this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+        this.scanTimeMs = scanTimeMs;
+    }
+
+    /**
+     * Crea un inventario vacío, usado cuando el análisis falla
+     * @param playlistUrl URL de la playlist
+     * @return inventario sin elementos
+     */
+    public static PlaylistInventory empty(String playlistUrl) {
+        return new PlaylistInventory(playlistUrl, Collections.emptyList(), 0);
+    }
+
+    public String getPlaylistUrl() {
+        return playlistUrl;
+    }
+
+    public List<PlaylistEntry> getEntries() {
+        return entries;
+    }
+
+    public long getScanTimeMs() {
+        return scanTimeMs;
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    /**
+     * Obtiene la duración total conocida de la playlist
+     * @return suma de las duraciones conocidas en segundos
+     */
+    public long getTotalDurationSeconds() {
+        long total = 0;
+        for (PlaylistEntry entry : entries) {
+            if (entry.hasDuration()) {
+                total += entry.getDurationSeconds();
+            }
+        }
+        return total;
+    }
+
+    /**
+     * Selecciona los elementos que cumplen una condición
+     * @param filter condición a cumplir
+     * @return elementos seleccionados en orden de playlist
+     */
+    public List<PlaylistEntry> select(Predicate<PlaylistEntry> filter) {
+        List<PlaylistEntry> selected = new ArrayList<>();
+        for (PlaylistEntry entry : entries) {
+            if (filter.test(entry)) {
+                selected.add(entry);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * Convierte un conjunto de elementos al formato de --playlist-items,
+     * agrupando índices consecutivos en rangos (ej. "1-3,7,9-12")
+     * @param selected elementos a descargar
+     * @return especificación de índices, vacía si no hay elementos
+     */
+    public static String toPlaylistItems(Collection<PlaylistEntry> selected) {
+        int[] indices = selected.stream().mapToInt(PlaylistEntry::getIndex).sorted().distinct().toArray();
+        StringBuilder spec = new StringBuilder();
+
+        int i = 0;
+        while (i < indices.length) {
+            int start = indices[i];
+            int end = start;
+            while (i + 1 < indices.length && indices[i + 1] == end + 1) {
+                end = indices[++i];
+            }
+
+            if (spec.length() > 0) {
+                spec.append(',');
+            }
+            spec.append(start);
+            if (end > start) {
+                spec.append('-').append(end);
+            }
+            i++;
+        }
+
+        return spec.toString();
+    }
+}
@@ -0,0 +1,193 @@
+package com.example.interfaz.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Presupuesto global de ancho de banda repartido entre las descargas activas
+ *
+ * Cada sesión nueva recibe limit / activas como --limit-rate, así que la suma
+ * de las cuotas nunca pasa del límite. Relanzar un proceso para cambiar su
+ * cuota cuesta (yt-dlp continúa el archivo .part, pero vuelve a conectarse),
+ * así que cuando el reparto cambia solo se relanza una sesión si:
+ * - descarga más de un 25% por encima de la nueva cuota y su límite actual se
+ *   lo permite, o
+ * - está frenada por su límite actual y la nueva cuota es más de un 25% mayor.
+ * Una sesión con un límite holgado que no lo aprovecha se deja como está y se
+ * vuelve a mirar más tarde por si acelera. Ninguna sesión se relanza dos
+ * veces en menos de MIN_RELAUNCH_INTERVAL_MS.
+ */
+public class BandwidthBudget {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(BandwidthBudget.class);
+
+    private static final double HYSTERESIS = 0.25;
+    private static final long MIN_RELAUNCH_INTERVAL_MS = 10_000;
+
+    private final Set<DownloadSession> sessions = ConcurrentHashMap.newKeySet();
+    private final Map<DownloadSession, Long> lastRelaunch = new ConcurrentHashMap<>();
+    private final AtomicBoolean rebalanceScheduled = new AtomicBoolean(false);
+
+    private volatile long limitBytesPerSecond;
+
+    /**
+     * Constructor del presupuesto
+     * @param limitKbps límite total en kilobits por segundo (0 = sin límite)
+     */
+    public BandwidthBudget(long limitKbps) {
+        this.limitBytesPerSecond = kbpsToBytes(limitKbps);
+    }
+
+    private static long kbpsToBytes(long kbps) {
+        return Math.max(0, kbps) * 1000 / 8;
+    }
+
+    /**
+     * Cambia el límite total en tiempo de ejecución
+     * @param limitKbps nuevo límite en kilobits por segundo (0 = sin límite)
+     */
+    public void setLimitKbps(long limitKbps) {
+        long previous = limitBytesPerSecond;
+        limitBytesPerSecond = kbpsToBytes(limitKbps);
+        LOGGER.info("Límite de ancho de banda: {} kbps", limitKbps > 0 ? limitKbps : "sin límite");
+        if (previous != limitBytesPerSecond) {
+            lastRelaunch.clear();
+            rebalance();
+        }
+    }
+
+    public long getLimitKbps() {
+        return limitBytesPerSecond * 8 / 1000;
+    }
+
+    public boolean isLimited() {
+        return limitBytesPerSecond > 0;
+    }
+
+    /**
+     * Registra una sesión que empieza a descargar y le asigna su cuota
+     * @param session sesión en ejecución
+     */
+    void register(DownloadSession session) {
+        sessions.add(session);
+        session.setRateLimit(currentShare());
+        lastRelaunch.put(session, System.currentTimeMillis());
+        rebalance();
+    }
+
+    /**
+     * Quita una sesión terminada y reparte su cuota entre las demás
+     * @param session sesión terminada
+     */
+    void unregister(DownloadSession session) {
+        lastRelaunch.remove(session);
+        if (sessions.remove(session)) {
+            rebalance();
+        }
+    }
+
+    /**
+     * Obtiene la cuota por sesión con el número actual de descargas
+     * @return bytes por segundo por sesión, o 0 si no hay límite
+     */
+    public long currentShare() {
+        return shareFor(limitBytesPerSecond, sessions.size());
+    }
+
+    /**
+     * Reparte el límite entre las sesiones sin que la suma lo supere
+     * @param limit límite total en bytes por segundo (0 = sin límite)
+     * @param sessionCount sesiones activas
+     * @return cuota por sesión, o 0 si no hay límite
+     */
+    static long shareFor(long limit, int sessionCount) {
+        if (limit <= 0) {
+            return 0;
+        }
+        return Math.max(1, limit / Math.max(1, sessionCount));
+    }
+
+    /**
+     * Relanza las sesiones que lo necesitan con la cuota actual
+     */
+    private void rebalance() {
+        long share = currentShare();
+        long now = System.currentTimeMillis();
+        boolean recheck = false;
+
+        for (DownloadSession session : sessions) {
+            long limit = session.getRateLimit();
+            if (!needsRelaunch(limit, session.getBytesPerSecond(), share)) {
+                // Un límite por encima de la cuota se vuelve a mirar por si la sesión acelera
+                recheck |= exceedsShare(limit, share);
+                continue;
+            }
+            Long last = lastRelaunch.get(session);
+            if ((last != null && now - last < MIN_RELAUNCH_INTERVAL_MS) || session.isPostProcessing()) {
+                // Se reintenta más tarde; una sesión en ffmpeg se ajusta si vuelve a descargar
+                recheck = true;
+                continue;
+            }
+            if (session.applyRateLimit(share)) {
+                lastRelaunch.put(session, now);
+            }
+        }
+
+        if (recheck) {
+            scheduleRebalance();
+        }
+    }
+
+    /**
+     * Decide si una sesión debe relanzarse con la nueva cuota
+     * @param limit límite actual de la sesión (0 = sin límite)
+     * @param rate velocidad medida de la sesión
+     * @param share nueva cuota (0 = sin límite)
+     * @return true si la sesión se pasa de la cuota con margen, o si su límite
+     *         la frena y la cuota nueva es claramente mayor
+     */
+    static boolean needsRelaunch(long limit, long rate, long share) {
+        if (exceedsShare(limit, share) && rate > share * (1 + HYSTERESIS)) {
+            return true;
+        }
+        boolean throttled = limit > 0 && rate >= limit * (1 - HYSTERESIS);
+        boolean roomToGrow = share <= 0 || share > limit * (1 + HYSTERESIS);
+        return throttled && roomToGrow;
+    }
+
+    /**
+     * Indica si el límite de una sesión deja pasar claramente más que la cuota
+     */
+    private static boolean exceedsShare(long limit, long share) {
+        return share > 0 && (limit <= 0 || limit > share * (1 + HYSTERESIS));
+    }
+
+    private void scheduleRebalance() {
+        if (rebalanceScheduled.compareAndSet(false, true)) {
+            CompletableFuture.runAsync(() -> {
+                rebalanceScheduled.set(false);
+                rebalance();
+            }, CompletableFuture.delayedExecutor(MIN_RELAUNCH_INTERVAL_MS, TimeUnit.MILLISECONDS));
+        }
+    }
+
+    /**
+     * Obtiene métricas del presupuesto
+     * @return mapa con estadísticas
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("limitKbps", getLimitKbps());
+        stats.put("activeSessions", sessions.size());
+        stats.put("shareBytesPerSecond", currentShare());
+        return stats;
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.interfaz.service;
+
+import com.example.interfaz.config.AppConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Ejecutor dedicado para el trabajo bloqueante de las descargas
+ * (lectura de la salida de yt-dlp y espera de procesos).
+ *
+ * Evita bloquear el pool común de ForkJoin y los hilos sueltos por canción.
+ * En JDK 21+ usa un hilo virtual por tarea; en JDK 17 usa un pool acotado de
+ * hilos de plataforma con nombre. En ambos casos el número de tareas en
+ * ejecución está limitado por download.executor.max.threads.
+ */
+public class DownloadExecutor implements Executor {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadExecutor.class);
+
+    private static final String THREAD_PREFIX = "yt-dlp-worker-";
+
+    private static DownloadExecutor instance;
+
+    private final ExecutorService delegate;
+    private final Semaphore permits;
+    private final boolean virtualThreads;
+    private final int maxThreads;
+
+    private final AtomicLong submittedTasks = new AtomicLong(0);
+    private final AtomicLong completedTasks = new AtomicLong(0);
+    private final AtomicLong failedTasks = new AtomicLong(0);
+    private final AtomicInteger runningTasks = new AtomicInteger(0);
+    private final AtomicInteger peakRunningTasks = new AtomicInteger(0);
+
+    /**
+     * Constructor del ejecutor
+     * @param maxThreads número máximo de tareas ejecutándose a la vez
+     */
+    public DownloadExecutor(int maxThreads) {
+        this.maxThreads = Math.max(1, maxThreads);
+
+        ExecutorService virtualExecutor = createVirtualThreadExecutor();
+        this.virtualThreads = virtualExecutor != null;
+
+        if (virtualThreads) {
+            this.delegate = virtualExecutor;
+            this.permits = new Semaphore(this.maxThreads);
+        } else {
+            this.delegate = createPlatformThreadExecutor(this.maxThreads);
+            this.permits = null;
+        }
+
+        LOGGER.info("Ejecutor de descargas iniciado ({} hilos, máximo {})",
+                    virtualThreads ? "virtuales" : "de plataforma", this.maxThreads);
+    }
+
+    /**
+     * Obtiene la instancia compartida del ejecutor
+     * @return instancia del ejecutor
+     */
+    public static synchronized DownloadExecutor getInstance() {
+        if (instance == null) {
+            instance = new DownloadExecutor(AppConfig.getInstance().getDownloadExecutorMaxThreads());
+        }
+        return instance;
+    }
+
+    /**
+     * Intenta crear un ejecutor de hilos virtuales (JDK 21+) por reflexión,
+     * para que el proyecto siga compilando con release 17
+     * @return ejecutor de hilos virtuales o null si el JDK no los soporta
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, THREAD_PREFIX, 1L);
+            ThreadFactory factory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+
+            Method perTask = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+            return (ExecutorService) perTask.invoke(null, factory);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Crea un pool acotado de hilos de plataforma con nombre
+     * @param maxThreads número máximo de hilos
+     * @return ejecutor de hilos de plataforma
+     */
+    private static ExecutorService createPlatformThreadExecutor(int maxThreads) {
+        AtomicInteger threadCounter = new AtomicInteger(0);
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+            maxThreads, maxThreads, 60L, TimeUnit.SECONDS,
+            new LinkedBlockingQueue<>(),
+            runnable -> {
+                Thread thread = new Thread(runnable, THREAD_PREFIX + threadCounter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    /**
+     * Ejecuta una tarea bloqueante de descarga
+     * @param task tarea a ejecutar
+     * @throws RejectedExecutionException si el ejecutor ya fue detenido
+     */
+    @Override
+    public void execute(Runnable task) {
+        submittedTasks.incrementAndGet();
+        delegate.execute(() -> runTracked(task));
+    }
+
+    /**
+     * Ejecuta la tarea actualizando las métricas y respetando el límite de concurrencia
+     * @param task tarea a ejecutar
+     */
+    private void runTracked(Runnable task) {
+        boolean acquired = false;
+        try {
+            if (permits != null) {
+                permits.acquire();
+                acquired = true;
+            }
+
+            int running = runningTasks.incrementAndGet();
+            peakRunningTasks.accumulateAndGet(running, Math::max);
+
+            try {
+                task.run();
+                completedTasks.incrementAndGet();
+            } catch (RuntimeException | Error e) {
+                failedTasks.incrementAndGet();
+                LOGGER.error("Error no controlado en tarea de descarga", e);
+                throw e;
+            } finally {
+                runningTasks.decrementAndGet();
+            }
+        } catch (InterruptedException e) {
+            failedTasks.incrementAndGet();
+            Thread.currentThread().interrupt();
+        } finally {
+            if (acquired) {
+                permits.release();
+            }
+        }
+    }
+
+    /**
+     * Detiene el ejecutor esperando a que terminen las tareas en curso
+     * @param timeout tiempo máximo de espera
+     * @param unit unidad del tiempo de espera
+     * @return true si todas las tareas terminaron dentro del plazo
+     */
+    public boolean shutdown(long timeout, TimeUnit unit) {
+        delegate.shutdown();
+        try {
+            if (delegate.awaitTermination(timeout, unit)) {
+                LOGGER.info("Ejecutor de descargas detenido");
+                return true;
+            }
+            LOGGER.warn("Tareas de descarga sin terminar tras {} {}, forzando cierre", timeout, unit);
+            delegate.shutdownNow();
+        } catch (InterruptedException e) {
+            delegate.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+
+    public boolean isShutdown() {
+        return delegate.isShutdown();
+    }
+
+    public boolean isUsingVirtualThreads() {
+        return virtualThreads;
+    }
+
+    public int getRunningTasks() {
+        return runningTasks.get();
+    }
+
+    /**
+     * Obtiene métricas del ejecutor
+     * @return mapa con estadísticas
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("virtualThreads", virtualThreads);
+        stats.put("maxThreads", maxThreads);
+        stats.put("submittedTasks", submittedTasks.get());
+        stats.put("completedTasks", completedTasks.get());
+        stats.put("failedTasks", failedTasks.get());
+        stats.put("runningTasks", runningTasks.get());
+        stats.put("peakRunningTasks", peakRunningTasks.get());
+        stats.put("queuedTasks", submittedTasks.get() - completedTasks.get() - failedTasks.get() - runningTasks.get());
+        return stats;
+    }
+}
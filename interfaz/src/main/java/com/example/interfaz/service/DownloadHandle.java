@@ -0,0 +1,115 @@
+package com.example.interfaz.service;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manejador de una descarga individual.
+ * Cada descarga tiene su propio proceso, estado y controles de pausa/cancelación,
+ * de modo que varias descargas simultáneas no comparten estado mutable.
+ */
+public interface DownloadHandle {
+
+    /**
+     * Estados posibles de una descarga
+     */
+    enum State {
+        PENDING,
+        RUNNING,
+        PAUSED,
+        COMPLETED,
+        FAILED,
+        CANCELLED;
+
+        /**
+         * Indica si el estado es final
+         * @return true si la descarga ya no puede cambiar de estado
+         */
+        public boolean isTerminal() {
+            return this == COMPLETED || this == FAILED || this == CANCELLED;
+        }
+    }
+
+    /**
+     * Obtiene la URL que se está descargando
+     * @return URL de la descarga
+     */
+    String getUrl();
+
+    /**
+     * Obtiene el estado actual de la descarga
+     * @return estado actual
+     */
+    State getState();
+
+    /**
+     * Pausa esta descarga si está en curso
+     */
+    void pause();
+
+    /**
+     * Reanuda esta descarga si está pausada
+     */
+    void resume();
+
+    /**
+     * Cancela esta descarga y termina su proceso
+     */
+    void cancel();
+
+    /**
+     * Espera a que la descarga termine
+     * @return true si la descarga se completó correctamente
+     * @throws InterruptedException si el hilo es interrumpido mientras espera
+     */
+    boolean await() throws InterruptedException;
+
+    /**
+     * Espera a que la descarga termine como máximo el tiempo indicado
+     * @param timeout tiempo máximo de espera
+     * @param unit unidad del tiempo de espera
+     * @return true si la descarga alcanzó un estado final dentro del plazo
+     * @throws InterruptedException si el hilo es interrumpido mientras espera
+     */
+    boolean await(long timeout, TimeUnit unit) throws InterruptedException;
+
+    /**
+     * Obtiene un future que se completa con el estado final de la descarga
+     * @return future con el estado final
+     */
+    CompletableFuture<State> completion();
+
+    /**
+     * Obtiene un future que se completa cuando la descarga deja de usar la red.
+     * Las descargas con etapas posteriores (conversión) lo completan antes que
+     * completion(); por defecto coincide con él.
+     * @return future que se completa al liberar la red
+     */
+    default CompletableFuture<?> networkCompletion() {
+        return completion();
+    }
+
+    /**
+     * Obtiene la última velocidad de descarga informada por yt-dlp
+     * @return bytes por segundo, o 0 si la descarga no está transfiriendo datos
+     */
+    default long getBytesPerSecond() {
+        return 0;
+    }
+
+    /**
+     * Obtiene el instante de la última actividad de la descarga, con el que se
+     * renueva su reserva en InFlightRegistry. Por defecto la descarga se
+     * considera activa mientras no termine.
+     * @return marca de System.nanoTime()
+     */
+    default long getLastActivityNanos() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Obtiene el código de salida del proceso
+     * @return código de salida, o -1 si el proceso no ha terminado
+     */
+    int getExitCode();
+}
@@ -3,6 +3,9 @@ package com.example.interfaz.service;
 import com.example.interfaz.model.Song;
 import javafx.concurrent.Task;
 
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Interfaz para servicios de descarga que define el contrato
  * para diferentes implementaciones de descarga de música.
@@ -18,6 +21,27 @@ public interface DownloadService {
      */
     Task<Void> downloadSong(String url, String outputPath);
     
+    /**
+     * Inicia la descarga de una canción y devuelve un manejador propio.
+     * Cada manejador tiene su propio proceso y estado, por lo que varias
+     * descargas pueden ejecutarse y controlarse de forma independiente.
+     * 
+     * @param url URL de la canción a descargar
+     * @param outputPath Ruta donde guardar el archivo (vacía para el directorio de música)
+     * @return Manejador de la descarga iniciada
+     */
+    DownloadHandle startDownload(String url, String outputPath);
+    
+    /**
+     * Analiza una playlist sin descargar audio y obtiene las canciones que hay
+     * que encolar, cada una con su propia URL.
+     * 
+     * @param playlistUrl URL de la playlist
+     * @return CompletableFuture con la URL de cada canción y su duración en segundos
+     *         (-1 si es desconocida) en orden de playlist, o null si no se pudo analizar
+     */
+    CompletableFuture<Map<String, Integer>> expandPlaylist(String playlistUrl);
+    
     /**
      * Verifica si el servicio puede manejar la URL proporcionada.
      * 
@@ -26,6 +50,14 @@ public interface DownloadService {
      */
     boolean canHandle(String url);
     
+    /**
+     * Obtiene la duración de una URL sin descargarla.
+     * 
+     * @param url URL de una canción o playlist
+     * @return CompletableFuture con la duración total en segundos, o -1 si es desconocida
+     */
+    CompletableFuture<Integer> probeDuration(String url);
+    
     /**
      * Obtiene información de una canción desde su URL.
      * 
@@ -47,17 +79,17 @@ public interface DownloadService {
     boolean hasActiveDownloads();
     
     /**
-     * Pausa la descarga actual
+     * Pausa todas las descargas en curso
      */
     void pauseDownload();
     
     /**
-     * Reanuda la descarga pausada
+     * Reanuda todas las descargas pausadas
      */
     void resumeDownload();
     
     /**
-     * Detiene la descarga actual
+     * Detiene todas las descargas en curso
      */
     void stopDownload();
 }
\ No newline at end of file
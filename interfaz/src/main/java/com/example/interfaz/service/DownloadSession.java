@@ -0,0 +1,516 @@
+package com.example.interfaz.service;
+
+import com.example.interfaz.util.ProcessTreeSignals;
+import com.example.interfaz.util.ProgressParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * Sesión de descarga con su propio proceso de yt-dlp y máquina de estados
+ * Implementa DownloadHandle para controlar cada descarga por separado
+ * 
+ * La pausa suspende el árbol de procesos (yt-dlp y ffmpeg) con SIGSTOP para liberar
+ * red y CPU de inmediato. En Windows, donde no hay señales, el lector deja de
+ * consumir la salida y el proceso se bloquea al llenarse el pipe.
+ */
+public class DownloadSession implements DownloadHandle, Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DownloadSession.class);
+
+    private final String url;
+    private final List<String> command;
+    private final ProgressReporter progressReporter;
+    private final String successMessage;
+
+    private final AtomicReference<State> state = new AtomicReference<>(State.PENDING);
+    private final CompletableFuture<State> completion = new CompletableFuture<>();
+    private final ReentrantLock pauseLock = new ReentrantLock();
+    private final Condition resumed = pauseLock.newCondition();
+
+    private volatile Process process;
+    private volatile int exitCode = -1;
+    private volatile Exception failureCause;
+    private volatile boolean suspended;
+    private volatile Consumer<String> outputListener;
+    private volatile long bytesPerSecond;
+    private volatile long rateLimit;
+    private volatile BandwidthBudget bandwidthBudget;
+    private final AtomicBoolean relaunchRequested = new AtomicBoolean(false);
+    private volatile long lastOutputNanos = System.nanoTime();
+    private volatile boolean postProcessing;
+    private volatile String abortReason;
+    private volatile boolean stoppedEarly;
+    private volatile Process destroyedProcess;
+
+    /**
+     * Constructor de la sesión
+     * @param url URL a descargar
+     * @param command línea de comando completa de yt-dlp
+     * @param progressReporter receptor de las líneas de progreso
+     * @param successMessage mensaje a notificar si la descarga termina bien
+     */
+    public DownloadSession(String url, List<String> command, ProgressReporter progressReporter, String successMessage) {
+        this.url = url;
+        this.command = List.copyOf(command);
+        this.progressReporter = progressReporter;
+        this.successMessage = successMessage;
+    }
+
+    /**
+     * Ejecuta la descarga en el hilo actual hasta que termine
+     */
+    @Override
+    public void run() {
+        if (!state.compareAndSet(State.PENDING, State.RUNNING)) {
+            return;
+        }
+
+        BandwidthBudget budget = bandwidthBudget;
+        if (budget != null) {
+            budget.register(this);
+        }
+
+        try {
+            while (true) {
+                Process started = launchProcess();
+                readOutput(started);
+                exitCode = started.waitFor();
+
+                // Proceso detenido para aplicar un nuevo --limit-rate: yt-dlp continúa el .part
+                if (relaunchRequested.getAndSet(false) && exitCode != 0 && !state.get().isTerminal()) {
+                    LOGGER.info("Relanzando {} con límite de {} B/s", url, rateLimit);
+                    continue;
+                }
+                break;
+            }
+            finish(exitCode == 0 || stoppedEarly ? State.COMPLETED : State.FAILED);
+
+        } catch (IOException e) {
+            LOGGER.error("Error durante la descarga de {}", url, e);
+            failureCause = e;
+            progressReporter.notifyProgress("Error: " + e.getMessage());
+            finish(State.FAILED);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            failureCause = e;
+            cancel();
+            finish(State.CANCELLED);
+        } finally {
+            Process finished = process;
+            if (finished != null && finished.isAlive()) {
+                destroyProcess(finished);
+            }
+            if (budget != null) {
+                budget.unregister(this);
+            }
+        }
+    }
+
+    /**
+     * Inicia el proceso de yt-dlp con el límite de velocidad vigente
+     * @return proceso iniciado
+     * @throws IOException si no se puede iniciar el proceso
+     */
+    private Process launchProcess() throws IOException {
+        ProcessBuilder processBuilder = new ProcessBuilder(buildCommand());
+        processBuilder.redirectErrorStream(true);
+        Process started = processBuilder.start();
+        process = started;
+        markActivity();
+        postProcessing = false;
+
+        State current = state.get();
+        if (current == State.CANCELLED) {
+            destroyProcess(started);
+        } else if (current == State.PAUSED) {
+            suspendProcessTree();
+        }
+        return started;
+    }
+
+    /**
+     * Agrega --limit-rate después del ejecutable si hay una cuota asignada
+     * @return línea de comando a ejecutar
+     */
+    private List<String> buildCommand() {
+        long limit = rateLimit;
+        if (limit <= 0) {
+            return command;
+        }
+        List<String> limited = new ArrayList<>(command.size() + 2);
+        limited.add(command.get(0));
+        limited.add("--limit-rate");
+        limited.add(String.valueOf(limit));
+        limited.addAll(command.subList(1, command.size()));
+        return limited;
+    }
+
+    /**
+     * Consume la salida del proceso hasta que termine o se cancele la sesión
+     * @param started proceso en ejecución
+     * @throws IOException si falla la lectura
+     * @throws InterruptedException si el hilo es interrumpido durante una pausa
+     */
+    private void readOutput(Process started) throws IOException, InterruptedException {
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(started.getInputStream()))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                awaitIfPaused();
+
+                if (state.get() == State.CANCELLED) {
+                    break;
+                }
+
+                markActivity();
+                postProcessing = isPostProcessingLine(line);
+
+                LogService.log(line);
+                recordSpeed(line);
+                progressReporter.notifyProgress(line);
+                progressReporter.processDownloadLine(line);
+
+                Consumer<String> listener = outputListener;
+                if (listener != null) {
+                    listener.accept(line);
+                }
+            }
+        } catch (IOException e) {
+            // Al terminar el proceso a propósito se cierra su salida: equivale al final de la lectura
+            if (destroyedProcess != started) {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Registra el estado final y notifica el resultado.
+     * Una cancelación previa tiene prioridad sobre el resultado del proceso.
+     * @param result estado final calculado
+     */
+    private void finish(State result) {
+        bytesPerSecond = 0;
+        State finalState = state.updateAndGet(current -> current == State.CANCELLED ? current : result);
+
+        if (failureCause == null) {
+            if (finalState == State.FAILED && abortReason != null) {
+                progressReporter.notifyProgress("Descarga detenida: " + abortReason);
+            } else if (finalState == State.COMPLETED) {
+                progressReporter.notifyProgress(successMessage);
+            } else if (finalState == State.CANCELLED) {
+                progressReporter.notifyProgress("Descarga cancelada");
+            } else {
+                progressReporter.notifyProgress("Error en la descarga (código: " + exitCode + ")");
+            }
+        }
+
+        completion.complete(finalState);
+    }
+
+    private void markActivity() {
+        lastOutputNanos = System.nanoTime();
+    }
+
+    /**
+     * Indica si la línea anuncia un postprocesado (ffmpeg), durante el cual
+     * yt-dlp puede pasar un rato sin escribir nada
+     */
+    private static boolean isPostProcessingLine(String line) {
+        return line.startsWith("[ExtractAudio]") || line.startsWith("[ffmpeg]")
+            || line.startsWith("[Merger]") || line.startsWith("[FixupM4a]");
+    }
+
+    /**
+     * Guarda la velocidad de la última línea de progreso de yt-dlp
+     * @param line línea de salida
+     */
+    private void recordSpeed(String line) {
+        if (line.startsWith("[download]")) {
+            long speed = ProgressParser.speedToBytesPerSecond(ProgressParser.extractSpeed(line));
+            if (speed >= 0) {
+                bytesPerSecond = speed;
+            }
+        }
+    }
+
+    /**
+     * Bloquea el lector mientras la sesión esté pausada
+     * @throws InterruptedException si el hilo es interrumpido durante la pausa
+     */
+    private void awaitIfPaused() throws InterruptedException {
+        pauseLock.lock();
+        try {
+            while (state.get() == State.PAUSED) {
+                resumed.await();
+            }
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    private void signalResumed() {
+        pauseLock.lock();
+        try {
+            resumed.signalAll();
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    /**
+     * Suspende el árbol de procesos si el sistema lo permite
+     */
+    private void suspendProcessTree() {
+        Process current = process;
+        if (current != null && current.isAlive() && ProcessTreeSignals.isSupported()) {
+            suspended = ProcessTreeSignals.suspendTree(current.toHandle());
+        }
+    }
+
+    /**
+     * Reanuda el árbol de procesos si fue suspendido
+     */
+    private void resumeProcessTree() {
+        Process current = process;
+        if (suspended && current != null) {
+            ProcessTreeSignals.resumeTree(current.toHandle());
+        }
+        suspended = false;
+    }
+
+    private void destroyProcess(Process target) {
+        destroyedProcess = target;
+        target.descendants().forEach(ProcessHandle::destroyForcibly);
+        target.destroyForcibly();
+    }
+
+    @Override
+    public synchronized void pause() {
+        if (state.compareAndSet(State.RUNNING, State.PAUSED)) {
+            suspendProcessTree();
+            progressReporter.notifyProgress("Descarga pausada");
+            LOGGER.info("Descarga pausada: {}", url);
+        }
+    }
+
+    @Override
+    public synchronized void resume() {
+        if (state.compareAndSet(State.PAUSED, State.RUNNING)) {
+            markActivity();
+            resumeProcessTree();
+            signalResumed();
+            progressReporter.notifyProgress("Descarga reanudada");
+            LOGGER.info("Descarga reanudada: {}", url);
+        }
+    }
+
+    @Override
+    public void cancel() {
+        State previous = state.getAndUpdate(current -> current.isTerminal() ? current : State.CANCELLED);
+        if (previous.isTerminal()) {
+            return;
+        }
+
+        signalResumed();
+
+        Process current = process;
+        if (current != null && current.isAlive()) {
+            destroyProcess(current);
+            LOGGER.info("Proceso de descarga terminado forzosamente: {}", url);
+        }
+
+        if (previous == State.PENDING) {
+            completion.complete(State.CANCELLED);
+        }
+    }
+
+    @Override
+    public boolean await() throws InterruptedException {
+        try {
+            return completion.get() == State.COMPLETED;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            completion.get(timeout, unit);
+            return true;
+        } catch (ExecutionException e) {
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public CompletableFuture<State> completion() {
+        return completion;
+    }
+
+    @Override
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    public State getState() {
+        return state.get();
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode;
+    }
+
+    @Override
+    public long getBytesPerSecond() {
+        State current = state.get();
+        return current == State.RUNNING ? bytesPerSecond : 0;
+    }
+
+    /**
+     * Termina el proceso por inactividad o lentitud; la sesión acaba como
+     * fallida para que el planificador la reintente
+     * @param reason motivo a notificar
+     * @return true si había un proceso en ejecución que detener
+     */
+    synchronized boolean abort(String reason) {
+        Process current = process;
+        if (state.get() != State.RUNNING || current == null || !current.isAlive()) {
+            return false;
+        }
+
+        abortReason = reason;
+        destroyProcess(current);
+        LOGGER.warn("Descarga detenida ({}): {}", reason, url);
+        return true;
+    }
+
+    /**
+     * Termina el proceso porque el resto de su trabajo pasó a otra sesión
+     * (reparto de una playlist); la sesión acaba como completada
+     * @return true si había un proceso en ejecución que detener
+     */
+    synchronized boolean stopEarly() {
+        Process current = process;
+        if (state.get().isTerminal() || current == null || !current.isAlive()) {
+            return false;
+        }
+
+        stoppedEarly = true;
+        destroyProcess(current);
+        return true;
+    }
+
+    /**
+     * Obtiene el instante de la última línea de salida de yt-dlp
+     * @return marca de System.nanoTime()
+     */
+    public long getLastOutputNanos() {
+        return lastOutputNanos;
+    }
+
+    /**
+     * La sesión solo puede quedarse sin actividad mientras corre: pendiente o en
+     * pausa sigue viva aunque yt-dlp no escriba nada
+     */
+    @Override
+    public long getLastActivityNanos() {
+        return state.get() == State.RUNNING ? lastOutputNanos : System.nanoTime();
+    }
+
+    /**
+     * Indica si yt-dlp está postprocesando (conversión con ffmpeg)
+     * @return true si la última línea anunció un postprocesado
+     */
+    public boolean isPostProcessing() {
+        return postProcessing;
+    }
+
+    /**
+     * Asocia la sesión al presupuesto global de ancho de banda.
+     * Debe llamarse antes de ejecutar la sesión.
+     * @param budget presupuesto que asigna el --limit-rate
+     */
+    public void setBandwidthBudget(BandwidthBudget budget) {
+        this.bandwidthBudget = budget;
+    }
+
+    void setRateLimit(long bytesPerSecond) {
+        this.rateLimit = bytesPerSecond;
+    }
+
+    public long getRateLimit() {
+        return rateLimit;
+    }
+
+    /**
+     * Cambia el límite de velocidad relanzando el proceso en curso.
+     * Las sesiones en pausa conservan el límite anterior hasta el siguiente ajuste.
+     * Durante el postprocesado no se relanza: ffmpeg no usa la red y matarlo
+     * perdería la conversión hecha.
+     * @param bytesPerSecond nueva cuota en bytes por segundo (0 = sin límite)
+     * @return true si se aplicó el nuevo límite
+     */
+    synchronized boolean applyRateLimit(long bytesPerSecond) {
+        Process current = process;
+        if (state.get() != State.RUNNING || current == null || !current.isAlive() || postProcessing) {
+            return false;
+        }
+
+        rateLimit = bytesPerSecond;
+        relaunchRequested.set(true);
+        destroyProcess(current);
+        return true;
+    }
+
+    /**
+     * Establece un receptor adicional para cada línea de salida de yt-dlp
+     * @param listener función que recibe las líneas
+     */
+    public void setOutputListener(Consumer<String> listener) {
+        this.outputListener = listener;
+    }
+
+    /**
+     * Obtiene la excepción que hizo fallar la sesión, si la hubo
+     * @return excepción o null
+     */
+    public Exception getFailureCause() {
+        return failureCause;
+    }
+
+    /**
+     * Verifica si el proceso de la sesión sigue vivo
+     * @return true si hay un proceso en ejecución
+     */
+    public boolean isProcessAlive() {
+        Process current = process;
+        return current != null && current.isAlive();
+    }
+
+    /**
+     * Verifica si el árbol de procesos está suspendido con SIGSTOP
+     * @return true si el proceso está detenido por el sistema operativo
+     */
+    public boolean isSuspended() {
+        return suspended;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.interfaz.service;
+
+import com.example.interfaz.model.PlaylistInventory;
+import com.example.interfaz.util.UrlCanonicalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Obtiene la duración de las URLs de la cola sin descargar audio
+ *
+ * Usa el mismo análisis --flat-playlist que las playlists: para una canción
+ * devuelve su duración y para una playlist la suma de sus elementos. Corre en
+ * pocos hilos propios para no quitar cupos a las descargas y recuerda los
+ * resultados por clave canónica. Los fallos no se recuerdan, así que la URL
+ * se vuelve a medir la próxima vez; al llenarse la caché se descarta la
+ * duración usada hace más tiempo.
+ */
+public class DurationProbe {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(DurationProbe.class);
+
+    private static final String THREAD_PREFIX = "duration-probe-";
+    private static final int MAX_CACHED = 10000;
+
+    private final PlaylistScanner scanner;
+    private final ExecutorService executor;
+    // Orden de acceso: la primera entrada es la usada hace más tiempo. Protegida por su monitor.
+    private final Map<String, Integer> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Integer> eldest) {
+            return size() > MAX_CACHED;
+        }
+    };
+
+    /**
+     * Constructor de la sonda
+     * @param scanner analizador de yt-dlp
+     * @param threads análisis simultáneos
+     */
+    public DurationProbe(PlaylistScanner scanner, int threads) {
+        this.scanner = scanner;
+        AtomicInteger sequence = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(Math.max(1, threads), task -> {
+            Thread thread = new Thread(task, THREAD_PREFIX + sequence.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Obtiene la duración de una URL
+     * @param url canción o playlist
+     * @return CompletableFuture con la duración en segundos, o -1 si no se pudo obtener
+     */
+    public CompletableFuture<Integer> probe(String url) {
+        String key = UrlCanonicalizer.canonicalKey(url);
+        Integer cached;
+        synchronized (cache) {
+            cached = cache.get(key);
+        }
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            int seconds = measure(url);
+            if (seconds >= 0) {
+                synchronized (cache) {
+                    cache.put(key, seconds);
+                }
+            }
+            return seconds;
+        }, executor);
+    }
+
+    private int measure(String url) {
+        try {
+            PlaylistInventory inventory = scanner.scan(url);
+            if (inventory.isEmpty()) {
+                LOGGER.debug("Duración desconocida: {}", url);
+                return -1;
+            }
+            return (int) Math.min(Integer.MAX_VALUE, inventory.getTotalDurationSeconds());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return -1;
+        }
+    }
+}
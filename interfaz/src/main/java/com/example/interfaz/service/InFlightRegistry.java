@@ -0,0 +1,285 @@
+package com.example.interfaz.service;
+
+import com.example.interfaz.config.AppConfig;
+import com.example.interfaz.service.filter.TitleNormalizer;
+import com.example.interfaz.util.UrlCanonicalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Registro de las canciones que se están descargando en este momento
+ *
+ * Antes de lanzar yt-dlp, cada worker reserva la canción por su clave canónica
+ * (yt:ID) y, si se conoce, por su título normalizado. La reserva es atómica: si
+ * otro worker ya tiene la misma canción o un título equivalente, la segunda
+ * reserva falla y el worker puede esperar a que se libere en lugar de descargarla
+ * dos veces. SongFilterService solo se entera de la canción al terminar, así que
+ * sin este registro dos descargas paralelas no se ven entre sí.
+ *
+ * Cada reserva tiene una concesión (download.inflight.lease.seconds) que se
+ * renueva con la actividad de su descarga. Si el worker que la tiene muere sin
+ * liberarla, la concesión vence y un temporizador la libera como fallida.
+ */
+public class InFlightRegistry {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(InFlightRegistry.class);
+
+    private static final String TITLE_PREFIX = "title:";
+
+    private static InFlightRegistry instance;
+
+    private final long leaseNanos;
+    private final Map<String, Claim> claims = new HashMap<>();
+    private final AtomicLong conflicts = new AtomicLong(0);
+    private final AtomicLong expiredClaims = new AtomicLong(0);
+
+    private ScheduledExecutorService reaper;
+
+    /**
+     * Constructor del registro
+     * @param leaseSeconds segundos sin actividad antes de que venza una reserva
+     */
+    public InFlightRegistry(int leaseSeconds) {
+        this.leaseNanos = TimeUnit.SECONDS.toNanos(Math.max(1, leaseSeconds));
+    }
+
+    /**
+     * Obtiene la instancia singleton del registro
+     * @return instancia del registro
+     */
+    public static synchronized InFlightRegistry getInstance() {
+        if (instance == null) {
+            instance = new InFlightRegistry(AppConfig.getInstance().getInFlightLeaseSeconds());
+        }
+        return instance;
+    }
+
+    /**
+     * Reserva de una canción en curso
+     */
+    public final class Claim {
+        private final String videoKey;
+        private final String titleKey;
+        private final CompletableFuture<Boolean> released = new CompletableFuture<>();
+
+        private volatile long renewedNanos = System.nanoTime();
+        private volatile LongSupplier activity;
+
+        private Claim(String videoKey, String titleKey) {
+            this.videoKey = videoKey;
+            this.titleKey = titleKey;
+        }
+
+        /**
+         * Asocia la reserva a la actividad de una descarga: mientras la marca
+         * avance, la concesión se considera renovada
+         * @param lastActivityNanos marca System.nanoTime() de la última actividad
+         */
+        public void bindActivity(LongSupplier lastActivityNanos) {
+            this.activity = lastActivityNanos;
+            renew();
+        }
+
+        /**
+         * Renueva la concesión a mano
+         */
+        public void renew() {
+            renewedNanos = System.nanoTime();
+        }
+
+        /**
+         * Libera la reserva
+         * @param completed true si la canción quedó descargada
+         */
+        public void release(boolean completed) {
+            remove(this);
+            released.complete(completed);
+        }
+
+        /**
+         * Obtiene un future que se completa al liberarse la reserva
+         * @return future con true si la canción quedó descargada
+         */
+        public CompletableFuture<Boolean> released() {
+            return released;
+        }
+
+        public String getVideoKey() {
+            return videoKey;
+        }
+
+        private long lastActivityNanos() {
+            long last = renewedNanos;
+            LongSupplier source = activity;
+            if (source != null) {
+                long reported = source.getAsLong();
+                if (reported - last > 0) {
+                    last = reported;
+                }
+            }
+            return last;
+        }
+
+        private boolean isExpired(long now) {
+            return now - lastActivityNanos() > leaseNanos;
+        }
+    }
+
+    /**
+     * Intenta reservar una canción
+     * @param url URL de la canción
+     * @param title título de la canción, o null si aún no se conoce
+     * @return reserva obtenida, o null si otra descarga tiene la misma canción o un título equivalente
+     */
+    public Claim tryClaim(String url, String title) {
+        String videoKey = UrlCanonicalizer.canonicalKey(url);
+        String titleKey = titleKey(title);
+
+        Claim expiredHolder;
+        Claim claim;
+        synchronized (this) {
+            expiredHolder = evictIfExpired(videoKey);
+            Claim expiredTitleHolder = titleKey == null ? null : evictIfExpired(titleKey);
+            if (expiredHolder == null) {
+                expiredHolder = expiredTitleHolder;
+            }
+
+            if (claims.containsKey(videoKey) || (titleKey != null && claims.containsKey(titleKey))) {
+                conflicts.incrementAndGet();
+                claim = null;
+            } else {
+                claim = new Claim(videoKey, titleKey);
+                claims.put(videoKey, claim);
+                if (titleKey != null) {
+                    claims.put(titleKey, claim);
+                }
+                startReaper();
+            }
+        }
+
+        if (expiredHolder != null) {
+            expiredHolder.released.complete(false);
+        }
+        if (claim == null) {
+            LOGGER.debug("Canción ya en curso en otra descarga: {}", url);
+        }
+        return claim;
+    }
+
+    /**
+     * Obtiene la reserva que impide reservar una canción
+     * @param url URL de la canción
+     * @param title título de la canción, o null si no se conoce
+     * @return reserva vigente, o null si la canción está libre
+     */
+    public synchronized Claim findHolder(String url, String title) {
+        Claim holder = claims.get(UrlCanonicalizer.canonicalKey(url));
+        String titleKey = titleKey(title);
+        if (holder == null && titleKey != null) {
+            holder = claims.get(titleKey);
+        }
+        return holder;
+    }
+
+    /**
+     * Obtiene el número de canciones reservadas
+     * @return reservas vigentes
+     */
+    public synchronized int getActiveCount() {
+        return (int) claims.values().stream().distinct().count();
+    }
+
+    /**
+     * Obtiene estadísticas del registro
+     * @return mapa con estadísticas
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("activeClaims", getActiveCount());
+        stats.put("conflicts", conflicts.get());
+        stats.put("expiredClaims", expiredClaims.get());
+        stats.put("leaseSeconds", TimeUnit.NANOSECONDS.toSeconds(leaseNanos));
+        return stats;
+    }
+
+    private static String titleKey(String title) {
+        if (title == null) {
+            return null;
+        }
+        String normalized = TitleNormalizer.normalize(title);
+        return normalized.isEmpty() ? null : TITLE_PREFIX + normalized;
+    }
+
+    private synchronized void remove(Claim claim) {
+        claims.remove(claim.videoKey, claim);
+        if (claim.titleKey != null) {
+            claims.remove(claim.titleKey, claim);
+        }
+    }
+
+    /**
+     * Quita la reserva de una clave si su concesión venció.
+     * Debe llamarse con el monitor adquirido.
+     * @return reserva vencida, o null si no había o sigue vigente
+     */
+    private Claim evictIfExpired(String key) {
+        Claim holder = claims.get(key);
+        if (holder == null || !holder.isExpired(System.nanoTime())) {
+            return null;
+        }
+        remove(holder);
+        expiredClaims.incrementAndGet();
+        LOGGER.warn("Reserva vencida sin actividad, se libera: {}", holder.videoKey);
+        return holder;
+    }
+
+    /**
+     * Inicia el temporizador que libera las reservas vencidas.
+     * Debe llamarse con el monitor adquirido.
+     */
+    private void startReaper() {
+        if (reaper != null) {
+            return;
+        }
+        reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "inflight-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long periodMs = Math.max(1000, TimeUnit.NANOSECONDS.toMillis(leaseNanos) / 2);
+        reaper.scheduleWithFixedDelay(this::reapExpired, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    private void reapExpired() {
+        try {
+            Map<Claim, Boolean> expired = new HashMap<>();
+            synchronized (this) {
+                long now = System.nanoTime();
+                Iterator<Claim> iterator = claims.values().iterator();
+                while (iterator.hasNext()) {
+                    Claim claim = iterator.next();
+                    if (claim.isExpired(now)) {
+                        iterator.remove();
+                        if (expired.put(claim, Boolean.TRUE) == null) {
+                            expiredClaims.incrementAndGet();
+                            LOGGER.warn("Reserva vencida sin actividad, se libera: {}", claim.videoKey);
+                        }
+                    }
+                }
+            }
+            expired.keySet().forEach(claim -> claim.released.complete(false));
+        } catch (RuntimeException e) {
+            LOGGER.warn("Error al revisar las reservas en curso", e);
+        }
+    }
+}
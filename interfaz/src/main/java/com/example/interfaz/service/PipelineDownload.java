@@ -0,0 +1,351 @@
+package com.example.interfaz.service;
+
+import com.example.interfaz.util.ProcessTreeSignals;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Descarga en dos etapas: yt-dlp obtiene el mejor audio en un área temporal y
+ * TranscodePipeline lo convierte a mp3 con ffmpeg en el directorio de salida
+ *
+ * networkCompletion() se completa al entregar el audio a la etapa de conversión,
+ * lo que libera el cupo de red del planificador; completion() espera a la conversión.
+ */
+public class PipelineDownload implements DownloadHandle, Runnable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PipelineDownload.class);
+
+    private static final Pattern DESTINATION_PATTERN = Pattern.compile("^\\[download\\] Destination: (.+)$");
+    private static final Pattern ALREADY_DOWNLOADED_PATTERN = Pattern.compile("^\\[download\\] (.+) has already been downloaded");
+    private static final String OUTPUT_EXTENSION = ".mp3";
+    private static final String TEMP_SUFFIX = ".part";
+
+    private final DownloadSession fetchSession;
+    private final TranscodePipeline pipeline;
+    private final String ffmpegPath;
+    private final Path outputDir;
+    private final ProgressReporter progressReporter;
+
+    private final CompletableFuture<State> completion = new CompletableFuture<>();
+    private final CompletableFuture<Void> networkCompletion = new CompletableFuture<>();
+
+    private volatile Path stagedFile;
+    private volatile Process transcodeProcess;
+    private volatile boolean transcoding;
+    private volatile boolean paused;
+    private volatile boolean cancelled;
+    private volatile boolean suspended;
+    private volatile int exitCode = -1;
+
+    /**
+     * Constructor de la descarga
+     * @param fetchSession sesión de yt-dlp que descarga el audio sin convertir
+     * @param pipeline etapa de conversión
+     * @param ffmpegPath ruta del ejecutable de ffmpeg
+     * @param outputDir directorio donde se deja el mp3
+     * @param progressReporter receptor de las notificaciones de progreso
+     */
+    public PipelineDownload(DownloadSession fetchSession, TranscodePipeline pipeline, String ffmpegPath,
+                            String outputDir, ProgressReporter progressReporter) {
+        this.fetchSession = fetchSession;
+        this.pipeline = pipeline;
+        this.ffmpegPath = ffmpegPath;
+        this.outputDir = Paths.get(outputDir);
+        this.progressReporter = progressReporter;
+        fetchSession.setOutputListener(this::captureStagedFile);
+    }
+
+    /**
+     * Etapa de red: descarga el audio y lo entrega a la etapa de conversión
+     */
+    @Override
+    public void run() {
+        try {
+            fetchSession.run();
+
+            State fetchState = fetchSession.getState();
+            if (fetchState != State.COMPLETED) {
+                complete(fetchState);
+                return;
+            }
+            if (stagedFile == null || !Files.exists(stagedFile)) {
+                LOGGER.warn("yt-dlp no informó el archivo descargado de {}", getUrl());
+                complete(State.FAILED);
+                return;
+            }
+
+            pipeline.submit(this);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+        } finally {
+            networkCompletion.complete(null);
+        }
+    }
+
+    private void captureStagedFile(String line) {
+        Matcher matcher = DESTINATION_PATTERN.matcher(line);
+        if (!matcher.find()) {
+            matcher = ALREADY_DOWNLOADED_PATTERN.matcher(line);
+            if (!matcher.find()) {
+                return;
+            }
+        }
+        stagedFile = Paths.get(matcher.group(1).trim());
+    }
+
+    /**
+     * Etapa de CPU: convierte el audio a mp3 con ffmpeg. Se ejecuta en un hilo
+     * de TranscodePipeline.
+     * @return true si la conversión terminó correctamente
+     */
+    boolean transcode() {
+        if (cancelled) {
+            return false;
+        }
+
+        Path source = stagedFile;
+        String fileName = source.getFileName().toString();
+        int lastDot = fileName.lastIndexOf('.');
+        String baseName = lastDot > 0 ? fileName.substring(0, lastDot) : fileName;
+        Path target = outputDir.resolve(baseName + OUTPUT_EXTENSION);
+        Path temp = outputDir.resolve(baseName + OUTPUT_EXTENSION + TEMP_SUFFIX);
+
+        if (Files.exists(target)) {
+            progressReporter.notifyProgress("ALREADY_EXISTS:" + target.getFileName());
+            deleteStaged(source);
+            complete(State.COMPLETED);
+            return true;
+        }
+
+        progressReporter.notifyProgress("PROCESSING:" + target.getFileName());
+        transcoding = true;
+
+        try {
+            ProcessBuilder processBuilder = new ProcessBuilder(List.of(
+                ffmpegPath, "-hide_banner", "-nostdin", "-loglevel", "error", "-y",
+                "-i", source.toString(), "-vn", "-codec:a", "libmp3lame", "-q:a", "5",
+                "-f", "mp3", temp.toString()));
+            processBuilder.redirectErrorStream(true);
+            Process process = processBuilder.start();
+            transcodeProcess = process;
+
+            if (cancelled) {
+                destroy(process);
+            } else if (paused) {
+                suspendTranscode();
+            }
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    LOGGER.warn("ffmpeg ({}): {}", fileName, line);
+                }
+            }
+
+            exitCode = process.waitFor();
+            if (exitCode != 0 || cancelled) {
+                deleteQuietly(temp);
+                if (!cancelled) {
+                    progressReporter.notifyProgress("Error en la conversión (código: " + exitCode + ")");
+                }
+                complete(cancelled ? State.CANCELLED : State.FAILED);
+                return false;
+            }
+
+            moveIntoPlace(temp, target);
+            deleteStaged(source);
+            progressReporter.reportProcessed(target.getFileName().toString());
+            progressReporter.notifyProgress("Canción descargada exitosamente");
+            complete(State.COMPLETED);
+            return true;
+
+        } catch (IOException e) {
+            LOGGER.error("Error convirtiendo {}", source, e);
+            progressReporter.notifyProgress("Error: " + e.getMessage());
+            deleteQuietly(temp);
+            complete(State.FAILED);
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+            complete(State.CANCELLED);
+            return false;
+        } finally {
+            transcoding = false;
+            Process finished = transcodeProcess;
+            if (finished != null && finished.isAlive()) {
+                destroy(finished);
+            }
+        }
+    }
+
+    private static void moveIntoPlace(Path temp, Path target) throws IOException {
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /**
+     * Borra el audio temporal y su carpeta por video si quedó vacía.
+     * Si la conversión falla el audio se conserva para no volver a descargarlo.
+     */
+    private static void deleteStaged(Path source) {
+        deleteQuietly(source);
+        deleteQuietly(source.getParent());
+    }
+
+    private static void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            LOGGER.debug("No se pudo borrar {}: {}", path, e.getMessage());
+        }
+    }
+
+    private static void destroy(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    private void complete(State state) {
+        networkCompletion.complete(null);
+        completion.complete(cancelled ? State.CANCELLED : state);
+    }
+
+    private synchronized void suspendTranscode() {
+        Process process = transcodeProcess;
+        if (!suspended && process != null && process.isAlive() && ProcessTreeSignals.isSupported()) {
+            suspended = ProcessTreeSignals.suspendTree(process.toHandle());
+        }
+    }
+
+    private synchronized void resumeTranscode() {
+        Process process = transcodeProcess;
+        if (suspended && process != null) {
+            ProcessTreeSignals.resumeTree(process.toHandle());
+        }
+        suspended = false;
+    }
+
+    @Override
+    public String getUrl() {
+        return fetchSession.getUrl();
+    }
+
+    @Override
+    public State getState() {
+        if (completion.isDone()) {
+            return completion.join();
+        }
+        if (!networkCompletion.isDone()) {
+            return fetchSession.getState();
+        }
+        if (paused) {
+            return State.PAUSED;
+        }
+        return transcoding ? State.RUNNING : State.PENDING;
+    }
+
+    @Override
+    public void pause() {
+        paused = true;
+        fetchSession.pause();
+        if (transcoding) {
+            suspendTranscode();
+        }
+    }
+
+    @Override
+    public void resume() {
+        paused = false;
+        fetchSession.resume();
+        resumeTranscode();
+    }
+
+    @Override
+    public void cancel() {
+        if (completion.isDone()) {
+            return;
+        }
+        cancelled = true;
+        fetchSession.cancel();
+        pipeline.remove(this);
+        resumeTranscode();
+
+        Process process = transcodeProcess;
+        if (process != null && process.isAlive()) {
+            destroy(process);
+        }
+        if (!transcoding) {
+            complete(State.CANCELLED);
+        }
+    }
+
+    @Override
+    public boolean await() throws InterruptedException {
+        try {
+            return completion.get() == State.COMPLETED;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            completion.get(timeout, unit);
+            return true;
+        } catch (ExecutionException e) {
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public CompletableFuture<State> completion() {
+        return completion;
+    }
+
+    @Override
+    public CompletableFuture<?> networkCompletion() {
+        return networkCompletion;
+    }
+
+    @Override
+    public long getBytesPerSecond() {
+        return networkCompletion.isDone() ? 0 : fetchSession.getBytesPerSecond();
+    }
+
+    /**
+     * Tras entregar el audio, la conversión no escribe progreso: la descarga sigue viva hasta completarse
+     */
+    @Override
+    public long getLastActivityNanos() {
+        return networkCompletion.isDone() ? System.nanoTime() : fetchSession.getLastActivityNanos();
+    }
+
+    @Override
+    public int getExitCode() {
+        return exitCode != -1 ? exitCode : fetchSession.getExitCode();
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.interfaz.service;
+
+import com.example.interfaz.model.PlaylistEntry;
+import com.example.interfaz.util.PlaylistJournal;
+
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Traduce la salida de yt-dlp de una descarga de playlist a marcas en el diario
+ *
+ * Con --playlist-items yt-dlp numera los elementos seleccionados en orden
+ * ascendente ("Downloading item k of n"), así que el elemento k corresponde a la
+ * k-ésima entrada seleccionada. Un elemento se da por completado cuando empieza
+ * el siguiente (o la sesión termina bien) sin que haya aparecido un ERROR.
+ */
+class PlaylistCheckpoint implements Consumer<String> {
+
+    private static final Pattern ITEM_PATTERN = Pattern.compile("\\[download\\] Downloading (?:item|video) (\\d+) of (\\d+)");
+
+    /**
+     * Recibe el inicio y el final de cada elemento, por posición en la lista seleccionada
+     */
+    interface ItemObserver {
+        /**
+         * @param position posición del elemento que empieza
+         * @return false si el proceso debe detenerse antes de este elemento
+         */
+        boolean itemStarted(int position);
+
+        void itemFinished(int position, boolean completed);
+    }
+
+    private final PlaylistJournal journal;
+    private final List<PlaylistEntry> selected;
+    private final ItemObserver observer;
+
+    private int currentPosition = -1;
+    private boolean currentFailed;
+    private boolean stopped;
+    private int marked;
+
+    /**
+     * Constructor del punto de control
+     * @param journal diario de la playlist (puede ser null)
+     * @param selected entradas pasadas a --playlist-items, en orden de playlist
+     */
+    PlaylistCheckpoint(PlaylistJournal journal, List<PlaylistEntry> selected) {
+        this(journal, selected, null);
+    }
+
+    /**
+     * Constructor del punto de control con observador de elementos
+     * @param journal diario de la playlist (puede ser null)
+     * @param selected entradas pasadas a --playlist-items, en orden de playlist
+     * @param observer receptor del inicio y final de cada elemento (puede ser null)
+     */
+    PlaylistCheckpoint(PlaylistJournal journal, List<PlaylistEntry> selected, ItemObserver observer) {
+        this.journal = journal;
+        this.selected = selected;
+        this.observer = observer;
+    }
+
+    @Override
+    public synchronized void accept(String line) {
+        if (stopped) {
+            return;
+        }
+
+        Matcher matcher = ITEM_PATTERN.matcher(line);
+        if (matcher.find()) {
+            endCurrent(true);
+            int position = Integer.parseInt(matcher.group(1)) - 1;
+            if (position >= selected.size()) {
+                return;
+            }
+            if (observer != null && !observer.itemStarted(position)) {
+                stopped = true;
+                return;
+            }
+            currentPosition = position;
+            currentFailed = false;
+        } else if (line.startsWith("ERROR:")) {
+            currentFailed = true;
+        }
+    }
+
+    /**
+     * Cierra el último elemento al terminar la sesión
+     * @param sessionSucceeded true si yt-dlp terminó sin errores
+     */
+    synchronized void finish(boolean sessionSucceeded) {
+        endCurrent(sessionSucceeded);
+        stopped = true;
+    }
+
+    private void endCurrent(boolean finished) {
+        if (currentPosition < 0) {
+            return;
+        }
+        boolean completed = finished && !currentFailed;
+        if (completed && journal != null) {
+            journal.markCompleted(selected.get(currentPosition).getIndex());
+        }
+        if (completed) {
+            marked++;
+        }
+        if (observer != null) {
+            observer.itemFinished(currentPosition, completed);
+        }
+        currentPosition = -1;
+    }
+
+    /**
+     * Obtiene la posición del elemento en curso
+     * @return posición en la lista seleccionada, o -1 si no hay ninguno
+     */
+    synchronized int getCurrentPosition() {
+        return currentPosition;
+    }
+
+    public synchronized int getMarkedCount() {
+        return marked;
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.interfaz.service;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Descarga de una playlist completa como un solo elemento de la cola
+ *
+ * Agrupa las sesiones de yt-dlp que lanza la playlist (una, o una por tramo
+ * si se reparte) y el coordinador del reparto, de modo que pausar, reanudar
+ * o cancelar el manejador llega a todos. Se usa cuando la expansión de
+ * playlists en canciones está desactivada (download.playlist.expand).
+ */
+class PlaylistDownload implements DownloadHandle {
+
+    private final String url;
+    private final AtomicReference<State> state = new AtomicReference<>(State.PENDING);
+    private final CompletableFuture<State> completion = new CompletableFuture<>();
+    private final Set<DownloadSession> sessions = ConcurrentHashMap.newKeySet();
+    private volatile PlaylistShardCoordinator coordinator;
+
+    /**
+     * Constructor de la descarga
+     * @param url URL de la playlist
+     */
+    PlaylistDownload(String url) {
+        this.url = url;
+    }
+
+    /**
+     * Registra una sesión de la playlist, aplicándole el estado actual
+     * @param session sesión lanzada para la playlist o uno de sus tramos
+     */
+    void attach(DownloadSession session) {
+        sessions.add(session);
+        session.completion().whenComplete((result, error) -> sessions.remove(session));
+        State current = state.get();
+        if (current == State.CANCELLED) {
+            session.cancel();
+        } else if (current == State.PAUSED) {
+            session.pause();
+        }
+    }
+
+    /**
+     * Registra el coordinador del reparto en tramos, aplicándole el estado actual
+     * @param shardCoordinator coordinador de la playlist
+     */
+    void attach(PlaylistShardCoordinator shardCoordinator) {
+        this.coordinator = shardCoordinator;
+        State current = state.get();
+        if (current == State.CANCELLED) {
+            shardCoordinator.cancel();
+        } else if (current == State.PAUSED) {
+            shardCoordinator.pause();
+        }
+    }
+
+    /**
+     * Marca la descarga como iniciada
+     */
+    void markRunning() {
+        state.compareAndSet(State.PENDING, State.RUNNING);
+    }
+
+    /**
+     * Termina la descarga con su resultado; una cancelación previa prevalece
+     * @param completed true si todos los elementos se completaron
+     */
+    void finish(boolean completed) {
+        State finalState = completed ? State.COMPLETED : State.FAILED;
+        State current = state.get();
+        while (!current.isTerminal() && !state.compareAndSet(current, finalState)) {
+            current = state.get();
+        }
+        completion.complete(state.get());
+    }
+
+    @Override
+    public String getUrl() {
+        return url;
+    }
+
+    @Override
+    public State getState() {
+        return state.get();
+    }
+
+    @Override
+    public void pause() {
+        if (!state.compareAndSet(State.RUNNING, State.PAUSED) && !state.compareAndSet(State.PENDING, State.PAUSED)) {
+            return;
+        }
+        PlaylistShardCoordinator current = coordinator;
+        if (current != null) {
+            current.pause();
+        }
+        sessions.forEach(DownloadSession::pause);
+    }
+
+    @Override
+    public void resume() {
+        if (!state.compareAndSet(State.PAUSED, State.RUNNING)) {
+            return;
+        }
+        PlaylistShardCoordinator current = coordinator;
+        if (current != null) {
+            current.resume();
+        }
+        sessions.forEach(DownloadSession::resume);
+    }
+
+    @Override
+    public void cancel() {
+        State current = state.get();
+        while (!current.isTerminal() && !state.compareAndSet(current, State.CANCELLED)) {
+            current = state.get();
+        }
+        PlaylistShardCoordinator shardCoordinator = coordinator;
+        if (shardCoordinator != null) {
+            shardCoordinator.cancel();
+        }
+        sessions.forEach(DownloadSession::cancel);
+    }
+
+    @Override
+    public boolean await() throws InterruptedException {
+        try {
+            return completion.get() == State.COMPLETED;
+        } catch (ExecutionException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+        try {
+            completion.get(timeout, unit);
+            return true;
+        } catch (ExecutionException e) {
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public CompletableFuture<State> completion() {
+        return completion;
+    }
+
+    @Override
+    public long getBytesPerSecond() {
+        long total = 0;
+        for (DownloadSession session : sessions) {
+            total += session.getBytesPerSecond();
+        }
+        return total;
+    }
+
+    @Override
+    public long getLastActivityNanos() {
+        // Sin sesiones en curso la playlist está analizando o entre tramos: sigue viva
+        long latest = sessions.isEmpty() ? System.nanoTime() : Long.MIN_VALUE;
+        for (DownloadSession session : sessions) {
+            latest = Math.max(latest, session.getLastActivityNanos());
+        }
+        return latest;
+    }
+
+    @Override
+    public int getExitCode() {
+        State current = state.get();
+        if (!current.isTerminal()) {
+            return -1;
+        }
+        return current == State.COMPLETED ? 0 : 1;
+    }
+}
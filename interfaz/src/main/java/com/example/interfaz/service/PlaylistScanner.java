@@ -0,0 +1,131 @@
+package com.example.interfaz.service;
+
+import com.example.interfaz.model.PlaylistEntry;
+import com.example.interfaz.model.PlaylistInventory;
+import com.example.interfaz.util.UrlCanonicalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Analiza una playlist con yt-dlp --flat-playlist sin descargar audio
+ *
+ * Con --flat-playlist yt-dlp solo lee las páginas de la playlist, así que el
+ * inventario de miles de elementos tarda segundos. Se usa --print con campos
+ * separados por tabuladores en lugar de -J para no depender de un parser JSON.
+ */
+public class PlaylistScanner {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PlaylistScanner.class);
+
+    private static final String FIELD_SEPARATOR = "\t";
+    private static final String PRINT_TEMPLATE = String.join(FIELD_SEPARATOR,
+        "%(playlist_index)s", "%(id)s", "%(duration)s", "%(title)s");
+    private static final String UNKNOWN_VALUE = "NA";
+
+    private final String ytDlpPath;
+
+    public PlaylistScanner(String ytDlpPath) {
+        this.ytDlpPath = ytDlpPath;
+    }
+
+    /**
+     * Obtiene el inventario de la playlist
+     * @param playlistUrl URL de la playlist
+     * @return inventario, vacío si yt-dlp falla o la URL no es una playlist
+     * @throws InterruptedException si el hilo es interrumpido durante el análisis
+     */
+    public PlaylistInventory scan(String playlistUrl) throws InterruptedException {
+        YtDlpCommand builder = YtDlpCommand.forUrl(playlistUrl)
+            .flatPlaylist()
+            .option("--ignore-errors")
+            .print(PRINT_TEMPLATE);
+        // Un video dentro de una playlist (watch?v=...&list=...) es solo ese video
+        if (!UrlCanonicalizer.isPlaylist(playlistUrl)) {
+            builder.noPlaylist();
+        }
+        List<String> command = builder.build(ytDlpPath);
+
+        long start = System.currentTimeMillis();
+        List<PlaylistEntry> entries = new ArrayList<>();
+        Process process = null;
+
+        try {
+            ProcessBuilder processBuilder = new ProcessBuilder(command);
+            processBuilder.redirectErrorStream(true);
+            process = processBuilder.start();
+
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    PlaylistEntry entry = parseLine(line, entries.size() + 1);
+                    if (entry != null) {
+                        entries.add(entry);
+                    } else if (line.startsWith("ERROR:") || line.startsWith("WARNING:")) {
+                        LOGGER.warn("Análisis de playlist: {}", line);
+                    }
+                }
+            }
+
+            int exitCode = process.waitFor();
+            if (exitCode != 0 && entries.isEmpty()) {
+                LOGGER.warn("El análisis de {} terminó con código {}", playlistUrl, exitCode);
+            }
+        } catch (IOException e) {
+            LOGGER.error("Error analizando la playlist {}", playlistUrl, e);
+            return PlaylistInventory.empty(playlistUrl);
+        } finally {
+            if (process != null && process.isAlive()) {
+                process.destroyForcibly();
+            }
+        }
+
+        long elapsed = System.currentTimeMillis() - start;
+        LOGGER.info("Playlist analizada: {} elementos en {} ms", entries.size(), elapsed);
+        return new PlaylistInventory(playlistUrl, entries, elapsed);
+    }
+
+    /**
+     * Convierte una línea de --print en un elemento
+     * @param line línea de salida de yt-dlp
+     * @param fallbackIndex índice a usar si yt-dlp no informa playlist_index
+     * @return elemento o null si la línea no corresponde a la plantilla
+     */
+    static PlaylistEntry parseLine(String line, int fallbackIndex) {
+        String[] fields = line.split(FIELD_SEPARATOR, 4);
+        if (fields.length < 4 || fields[1].isEmpty() || UNKNOWN_VALUE.equals(fields[1])) {
+            return null;
+        }
+
+        int index = parseInt(fields[0], fallbackIndex);
+        if (index <= 0) {
+            return null;
+        }
+
+        String title = UNKNOWN_VALUE.equals(fields[3]) ? fields[1] : fields[3].trim();
+        return new PlaylistEntry(index, fields[1].trim(), title, parseDuration(fields[2]));
+    }
+
+    private static int parseInt(String value, int defaultValue) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    private static int parseDuration(String value) {
+        try {
+            return (int) Math.round(Double.parseDouble(value.trim()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,344 @@
+package com.example.interfaz.service;
+
+import com.example.interfaz.model.PlaylistEntry;
+import com.example.interfaz.util.PlaylistJournal;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reparte los elementos seleccionados de una playlist entre varios procesos de yt-dlp
+ *
+ * La lista se divide en tramos contiguos, uno por worker, y cada worker descarga
+ * su tramo con --playlist-items. Cuando un worker se queda sin trabajo roba la
+ * mitad final del tramo con más elementos pendientes; el dueño de ese tramo se
+ * detiene al llegar al primer elemento robado. El progreso de todos los tramos
+ * se publica como un único PLAYLIST_PROGRESS sobre el total de la selección.
+ * Los workers son tareas independientes del ejecutor: nadie espera a otro
+ * dentro del mismo pool, el resultado se obtiene del future de start().
+ */
+class PlaylistShardCoordinator {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PlaylistShardCoordinator.class);
+
+    private static final int MIN_STEAL = 2;
+
+    /**
+     * Tramo [cursor, end) de posiciones de la selección pendientes de empezar
+     */
+    private static final class Range {
+        private int cursor;
+        private int end;
+        private boolean owned;
+
+        private Range(int start, int end) {
+            this.cursor = start;
+            this.end = end;
+        }
+
+        private int remaining() {
+            return end - cursor;
+        }
+    }
+
+    private final List<PlaylistEntry> selected;
+    private final PlaylistJournal journal;
+    private final Function<List<PlaylistEntry>, DownloadSession> sessionFactory;
+    private final Consumer<String> progress;
+    private final List<Range> ranges = new ArrayList<>();
+    private final ReentrantLock pauseLock = new ReentrantLock();
+    private final Condition resumed = pauseLock.newCondition();
+
+    private int started;
+    private int processed;
+    private int failed;
+    private int steals;
+    private volatile boolean cancelled;
+    private boolean paused;
+
+    /**
+     * Constructor del coordinador
+     * @param selected elementos a descargar, en orden de playlist
+     * @param journal diario de la playlist (puede ser null)
+     * @param sessionFactory crea la sesión de yt-dlp para una sublista de elementos
+     * @param progress receptor de los mensajes de progreso combinados
+     */
+    PlaylistShardCoordinator(List<PlaylistEntry> selected, PlaylistJournal journal,
+                             Function<List<PlaylistEntry>, DownloadSession> sessionFactory,
+                             Consumer<String> progress) {
+        this.selected = List.copyOf(selected);
+        this.journal = journal;
+        this.sessionFactory = sessionFactory;
+        this.progress = progress;
+    }
+
+    /**
+     * Lanza los workers en el ejecutor sin esperar a que terminen
+     * @param executor ejecutor de los workers
+     * @param workers número de procesos simultáneos
+     * @return CompletableFuture con true si todos los elementos se completaron
+     */
+    CompletableFuture<Boolean> start(Executor executor, int workers) {
+        int total = selected.size();
+        int shardCount = Math.max(1, Math.min(workers, total));
+        synchronized (this) {
+            for (int i = 0; i < shardCount; i++) {
+                ranges.add(new Range(i * total / shardCount, (i + 1) * total / shardCount));
+            }
+        }
+        LOGGER.info("Playlist repartida en {} tramos ({} canciones)", shardCount, total);
+
+        List<CompletableFuture<Void>> running = new ArrayList<>(shardCount);
+        for (int i = 0; i < shardCount; i++) {
+            try {
+                running.add(CompletableFuture.runAsync(this::work, executor));
+            } catch (RejectedExecutionException e) {
+                LOGGER.warn("Ejecutor de descargas detenido, la playlist sigue con menos workers");
+                break;
+            }
+        }
+        if (running.isEmpty()) {
+            cancel();
+            return CompletableFuture.completedFuture(false);
+        }
+
+        return CompletableFuture.allOf(running.toArray(new CompletableFuture<?>[0]))
+            .handle((ignored, error) -> {
+                if (error != null) {
+                    LOGGER.error("Error en un tramo de la playlist", error);
+                }
+                synchronized (this) {
+                    LOGGER.info("Playlist repartida terminada: {} de {} canciones, {} fallidas, {} robos",
+                        processed - failed, total, failed, steals);
+                    return error == null && !cancelled && failed == 0 && processed == total;
+                }
+            });
+    }
+
+    /**
+     * Detiene el reparto: ningún worker toma tramos nuevos
+     */
+    void cancel() {
+        cancelled = true;
+        signalResumed();
+    }
+
+    /**
+     * Impide que los workers lancen procesos nuevos hasta resume(); los
+     * procesos en curso se pausan por su propia sesión
+     */
+    void pause() {
+        pauseLock.lock();
+        try {
+            paused = true;
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    /**
+     * Permite de nuevo que los workers lancen procesos
+     */
+    void resume() {
+        pauseLock.lock();
+        try {
+            paused = false;
+        } finally {
+            pauseLock.unlock();
+        }
+        signalResumed();
+    }
+
+    private void work() {
+        Range range = claim();
+        while (range != null && !cancelled) {
+            runRange(range);
+            range = claim();
+        }
+    }
+
+    /**
+     * Toma un tramo sin dueño o, si no queda ninguno, roba la mitad final del
+     * tramo con más elementos pendientes
+     * @return tramo a descargar, o null si no queda trabajo que repartir
+     */
+    private synchronized Range claim() {
+        if (cancelled) {
+            return null;
+        }
+
+        Range largest = null;
+        for (Range range : ranges) {
+            if (!range.owned && range.remaining() > 0) {
+                range.owned = true;
+                return range;
+            }
+            if (largest == null || range.remaining() > largest.remaining()) {
+                largest = range;
+            }
+        }
+
+        if (largest == null || largest.remaining() < MIN_STEAL) {
+            return null;
+        }
+
+        int split = largest.end - largest.remaining() / 2;
+        Range stolen = new Range(split, largest.end);
+        stolen.owned = true;
+        largest.end = split;
+        ranges.add(stolen);
+        steals++;
+        LOGGER.debug("Robadas las posiciones {}-{} de la playlist", split, stolen.end - 1);
+        return stolen;
+    }
+
+    /**
+     * Descarga un tramo, relanzando yt-dlp a partir del elemento siguiente si
+     * el proceso termina antes de acabar (un elemento con error lo detiene)
+     * @param range tramo propio
+     */
+    private void runRange(Range range) {
+        while (!cancelled) {
+            awaitResume();
+
+            int from;
+            int to;
+            synchronized (this) {
+                from = range.cursor;
+                to = range.end;
+            }
+            if (from >= to) {
+                break;
+            }
+
+            List<PlaylistEntry> items = selected.subList(from, to);
+            DownloadSession session = sessionFactory.apply(items);
+            PlaylistCheckpoint checkpoint = new PlaylistCheckpoint(journal, items, new RangeObserver(range, from, session));
+            session.setOutputListener(checkpoint);
+            if (cancelled) {
+                session.cancel();
+            }
+            session.run();
+
+            DownloadHandle.State state = session.getState();
+            checkpoint.finish(state == DownloadHandle.State.COMPLETED);
+            if (state == DownloadHandle.State.CANCELLED) {
+                cancelled = true;
+                break;
+            }
+
+            synchronized (this) {
+                // yt-dlp terminó sin empezar ningún elemento: no tiene sentido relanzarlo
+                if (range.cursor == from) {
+                    int skipped = range.end - range.cursor;
+                    range.cursor = range.end;
+                    recordFinished(skipped, state != DownloadHandle.State.COMPLETED);
+                }
+            }
+        }
+
+        synchronized (this) {
+            ranges.remove(range);
+        }
+    }
+
+    /**
+     * Bloquea al worker mientras el reparto esté pausado
+     */
+    private void awaitResume() {
+        pauseLock.lock();
+        try {
+            while (paused && !cancelled) {
+                resumed.await();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancelled = true;
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    private void signalResumed() {
+        pauseLock.lock();
+        try {
+            resumed.signalAll();
+        } finally {
+            pauseLock.unlock();
+        }
+    }
+
+    private void recordFinished(int count, boolean asFailed) {
+        if (count <= 0) {
+            return;
+        }
+        processed += count;
+        if (asFailed) {
+            failed += count;
+        }
+        progress.accept("PLAYLIST_PROGRESS:" + processed + "/" + selected.size());
+    }
+
+    /**
+     * Relaciona los elementos que anuncia un proceso con su tramo
+     */
+    private final class RangeObserver implements PlaylistCheckpoint.ItemObserver {
+        private final Range range;
+        private final int offset;
+        private final DownloadSession session;
+
+        private RangeObserver(Range range, int offset, DownloadSession session) {
+            this.range = range;
+            this.offset = offset;
+            this.session = session;
+        }
+
+        @Override
+        public boolean itemStarted(int position) {
+            int current;
+            synchronized (PlaylistShardCoordinator.this) {
+                int absolute = offset + position;
+                if (absolute >= range.end) {
+                    session.stopEarly();
+                    return false;
+                }
+                range.cursor = absolute + 1;
+                current = ++started;
+            }
+            progress.accept("SONG_START:" + current + "/" + selected.size());
+            return true;
+        }
+
+        @Override
+        public void itemFinished(int position, boolean completed) {
+            synchronized (PlaylistShardCoordinator.this) {
+                recordFinished(1, !completed);
+            }
+        }
+    }
+
+    /**
+     * Obtiene métricas del reparto
+     * @return mapa con estadísticas
+     */
+    synchronized Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("total", selected.size());
+        stats.put("processed", processed);
+        stats.put("failed", failed);
+        stats.put("activeRanges", ranges.size());
+        stats.put("steals", steals);
+        return stats;
+    }
+}
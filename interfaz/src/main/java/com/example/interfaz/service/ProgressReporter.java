@@ -15,6 +15,7 @@ public class ProgressReporter {
     
     private Consumer<String> progressCallback;
     private final SongFilterService songFilterService;
+    private volatile boolean playlistCounterEnabled = true;
     
     public ProgressReporter() {
         this.songFilterService = SongFilterService.getInstance();
@@ -24,6 +25,16 @@ public class ProgressReporter {
         this.progressCallback = callback;
     }
     
+    /**
+     * Activa o desactiva los mensajes PLAYLIST_PROGRESS y SONG_START de yt-dlp.
+     * Se desactivan cuando la playlist se reparte entre varios procesos, porque
+     * cada uno numera solo su tramo y el progreso lo publica el coordinador.
+     * @param enabled true para reenviar el contador de yt-dlp
+     */
+    public void setPlaylistCounterEnabled(boolean enabled) {
+        this.playlistCounterEnabled = enabled;
+    }
+    
     public void notifyProgress(String message) {
         if (progressCallback != null) {
             progressCallback.accept(message);
@@ -95,15 +106,23 @@ public class ProgressReporter {
     private void handleFFmpegComplete(String line) {
         String fileName = extractFileNameFromFFmpeg(line);
         if (fileName != null) {
-            String songTitle = extractSongTitle(fileName);
-            if (songTitle != null && !songFilterService.isDuplicateSong(songTitle)) {
-                songFilterService.registerDownloadedSong(songTitle);
-                notifyProgress("PROCESSED:" + songTitle);
-            }
+            reportProcessed(fileName);
             notifyProgress("PROCESSING:" + fileName);
         }
     }
     
+    /**
+     * Registra una canción convertida fuera de yt-dlp (etapa de conversión del pipeline)
+     * @param fileName nombre del archivo final
+     */
+    public void reportProcessed(String fileName) {
+        String songTitle = extractSongTitle(fileName);
+        if (songTitle != null && !songFilterService.isDuplicateSong(songTitle)) {
+            songFilterService.registerDownloadedSong(songTitle);
+            notifyProgress("PROCESSED:" + songTitle);
+        }
+    }
+    
     private void handleFFmpegProgress(String line) {
         String fileName = extractFileNameFromFFmpeg(line);
         if (fileName != null) {
@@ -131,7 +150,7 @@ public class ProgressReporter {
         Pattern playlistPattern = Pattern.compile("\\[download\\] Downloading item (\\d+) of (\\d+)");
         Matcher playlistMatcher = playlistPattern.matcher(line);
         
-        if (playlistMatcher.find()) {
+        if (playlistMatcher.find() && playlistCounterEnabled) {
             String currentItem = playlistMatcher.group(1);
             String totalItems = playlistMatcher.group(2);
             
@@ -4,7 +4,9 @@ import com.example.interfaz.model.Song;
 import com.example.interfaz.util.FileUtils;
 import com.example.interfaz.service.filter.DuplicateFinder;
 import com.example.interfaz.service.filter.SimilarityCalculator;
+import com.example.interfaz.service.filter.TitleIndex;
 
+import java.io.File;
 import java.util.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -20,16 +22,19 @@ public class SongFilterService implements FilterService {
     
     private static final double SIMILARITY_THRESHOLD = 0.70;
     
-    private Set<String> downloadedSongs;
+    private volatile TitleIndex downloadedSongs;
     private long lastCacheUpdate;
     private static final long CACHE_EXPIRY_MS = 30000;
+    // Marca (fecha y tamaño) del archivo de canciones reflejada en el índice
+    private volatile long loadedFileModified = -1;
+    private volatile long loadedFileLength = -1;
     
     private static SongFilterService instance;
     
     private final DuplicateFinder duplicateFinder;
     
     private SongFilterService() {
-        this.downloadedSongs = new HashSet<>();
+        this.downloadedSongs = new TitleIndex();
         this.lastCacheUpdate = 0;
         this.duplicateFinder = new DuplicateFinder(SIMILARITY_THRESHOLD);
         loadDownloadedSongs();
@@ -90,7 +95,12 @@ public class SongFilterService implements FilterService {
     public void registerDownloadedSong(String songTitle) {
         if (songTitle != null && !songTitle.trim().isEmpty()) {
             downloadedSongs.add(songTitle.trim());
+            boolean upToDate = isFileUnchanged();
             FileUtils.saveDownloadedSong(songTitle.trim());
+            // El índice ya tiene la línea agregada: no hace falta releer el archivo por ella
+            if (upToDate) {
+                rememberFileStamp();
+            }
             LOGGER.info("Canción registrada: " + songTitle);
         }
     }
@@ -112,7 +122,7 @@ public class SongFilterService implements FilterService {
      */
     public Set<String> getDownloadedSongs() {
         refreshCacheIfNeeded();
-        return new HashSet<>(downloadedSongs);
+        return new HashSet<>(downloadedSongs.titles());
     }
     
     /**
@@ -134,7 +144,7 @@ public class SongFilterService implements FilterService {
             return 1.0;
         }
         
-        int distance = levenshteinDistance(normalized1, normalized2);
+        int distance = SimilarityCalculator.levenshteinDistance(normalized1, normalized2);
         return 1.0 - (double) distance / maxLength;
     }
     
@@ -153,12 +163,15 @@ public class SongFilterService implements FilterService {
      */
     public List<Song> loadDownloadedSongs() {
         try {
-            this.downloadedSongs = FileUtils.loadDownloadedSongs();
+            rememberFileStamp();
+            TitleIndex loadedSongs = new TitleIndex();
+            loadedSongs.addAll(FileUtils.loadDownloadedSongs());
+            this.downloadedSongs = loadedSongs;
             this.lastCacheUpdate = System.currentTimeMillis();
             LOGGER.info("Cache de canciones actualizado: {} canciones", downloadedSongs.size());
         } catch (Exception e) {
             LOGGER.error("Error al cargar canciones descargadas", e);
-            this.downloadedSongs = new HashSet<>();
+            this.downloadedSongs = new TitleIndex();
         }
         return new ArrayList<>();
     }
@@ -166,31 +179,50 @@ public class SongFilterService implements FilterService {
     @Override
     public void updateCache(List<Song> songs) {
         if (songs != null) {
-            this.downloadedSongs = new HashSet<>();
+            TitleIndex updated = new TitleIndex();
             for (Song song : songs) {
                 if (song != null && song.getTitle() != null) {
-                    this.downloadedSongs.add(song.getTitle());
+                    updated.add(song.getTitle());
                 }
             }
+            this.downloadedSongs = updated;
+            this.loadedFileModified = -1;
             LOGGER.info("Cache actualizado con " + songs.size() + " canciones");
         }
     }
     
     /**
-     * Actualiza el cache si ha expirado
+     * Actualiza el cache si ha expirado y el archivo cambió desde la última carga.
+     * Reconstruir el índice normaliza toda la biblioteca, así que no se hace en vano.
      */
     private void refreshCacheIfNeeded() {
         long currentTime = System.currentTimeMillis();
         if (currentTime - lastCacheUpdate > CACHE_EXPIRY_MS) {
-            loadDownloadedSongs();
+            if (isFileUnchanged()) {
+                lastCacheUpdate = currentTime;
+            } else {
+                loadDownloadedSongs();
+            }
         }
     }
     
+    private boolean isFileUnchanged() {
+        File file = new File(FileUtils.getDownloadedSongsFile());
+        return file.lastModified() == loadedFileModified && file.length() == loadedFileLength;
+    }
+    
+    private void rememberFileStamp() {
+        File file = new File(FileUtils.getDownloadedSongsFile());
+        loadedFileModified = file.lastModified();
+        loadedFileLength = file.length();
+    }
+    
     /**
      * Limpia el cache forzando una recarga
      */
     public void clearCache() {
         this.lastCacheUpdate = 0;
+        this.loadedFileModified = -1;
         loadDownloadedSongs();
     }
     
@@ -275,6 +307,7 @@ public class SongFilterService implements FilterService {
     public void saveDownloadedSongs(List<Song> songs) {
         if (songs != null) {
             downloadedSongs.clear();
+            loadedFileModified = -1;
             for (Song song : songs) {
                 if (song != null && song.getTitle() != null) {
                     downloadedSongs.add(song.getTitle());
@@ -300,33 +333,6 @@ public class SongFilterService implements FilterService {
                       .trim();
       }
      
-     /**
-      * Calcula la distancia de Levenshtein entre dos strings
-      */
-     private int levenshteinDistance(String s1, String s2) {
-         int[][] dp = new int[s1.length() + 1][s2.length() + 1];
-         
-         for (int i = 0; i <= s1.length(); i++) {
-             dp[i][0] = i;
-         }
-         
-         for (int j = 0; j <= s2.length(); j++) {
-             dp[0][j] = j;
-         }
-         
-         for (int i = 1; i <= s1.length(); i++) {
-             for (int j = 1; j <= s2.length(); j++) {
-                 if (s1.charAt(i - 1) == s2.charAt(j - 1)) {
-                     dp[i][j] = dp[i - 1][j - 1];
-                 } else {
-                     dp[i][j] = 1 + Math.min(Math.min(dp[i - 1][j], dp[i][j - 1]), dp[i - 1][j - 1]);
-                 }
-             }
-         }
-         
-         return dp[s1.length()][s2.length()];
-     }
-     
      /**
       * Verifica si una URL es válida para descarga.
       * 
@@ -0,0 +1,163 @@
+package com.example.interfaz.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Vigilante de descargas colgadas o demasiado lentas (download.timeout.seconds)
+ *
+ * Un único temporizador revisa cada segundo todas las sesiones activas:
+ * - Si yt-dlp no escribe nada durante el tiempo límite, se termina el proceso y
+ *   la sesión falla para que el planificador la reintente. Durante la conversión
+ *   con ffmpeg el límite se multiplica, porque yt-dlp no informa progreso.
+ * - Si la velocidad se mantiene por debajo del mínimo durante una ventana, la
+ *   sesión se marca como lenta; si sigue así otra ventana más, se termina igual.
+ * Las sesiones en pausa no se vigilan.
+ */
+public class StallWatchdog {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(StallWatchdog.class);
+
+    private static final long TICK_MS = 1000;
+    private static final int POST_PROCESSING_FACTOR = 10;
+
+    private final Supplier<Collection<DownloadSession>> sessions;
+    private final long stallTimeoutNanos;
+    private final long minBytesPerSecond;
+    private final long slowWindowNanos;
+
+    private final Map<DownloadSession, Long> slowSince = new ConcurrentHashMap<>();
+    private final Set<DownloadSession> flaggedSlow = ConcurrentHashMap.newKeySet();
+    private final AtomicLong stalledAborts = new AtomicLong(0);
+    private final AtomicLong slowAborts = new AtomicLong(0);
+
+    private ScheduledExecutorService timer;
+
+    /**
+     * Constructor del vigilante
+     * @param sessions proveedor de las sesiones activas
+     * @param stallTimeoutSeconds segundos sin salida antes de terminar un proceso
+     * @param minSpeedKbps velocidad mínima en kilobits por segundo (0 = sin mínimo)
+     * @param slowWindowSeconds segundos por debajo del mínimo antes de marcar la sesión
+     */
+    public StallWatchdog(Supplier<Collection<DownloadSession>> sessions, int stallTimeoutSeconds,
+                         long minSpeedKbps, int slowWindowSeconds) {
+        this.sessions = sessions;
+        this.stallTimeoutNanos = TimeUnit.SECONDS.toNanos(Math.max(1, stallTimeoutSeconds));
+        this.minBytesPerSecond = Math.max(0, minSpeedKbps) * 1000 / 8;
+        this.slowWindowNanos = TimeUnit.SECONDS.toNanos(Math.max(1, slowWindowSeconds));
+    }
+
+    /**
+     * Inicia el temporizador compartido
+     */
+    public synchronized void start() {
+        if (timer != null) {
+            return;
+        }
+        timer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stall-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(this::tick, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void shutdown() {
+        if (timer != null) {
+            timer.shutdownNow();
+            timer = null;
+        }
+    }
+
+    private void tick() {
+        try {
+            long now = System.nanoTime();
+            Collection<DownloadSession> active = sessions.get();
+
+            for (DownloadSession session : active) {
+                if (session.getState() != DownloadHandle.State.RUNNING || !session.isProcessAlive()) {
+                    slowSince.remove(session);
+                    continue;
+                }
+                if (checkStalled(session, now)) {
+                    continue;
+                }
+                checkSlow(session, now);
+            }
+
+            slowSince.keySet().retainAll(active);
+            flaggedSlow.retainAll(active);
+        } catch (RuntimeException e) {
+            LOGGER.warn("Error en el vigilante de descargas", e);
+        }
+    }
+
+    private boolean checkStalled(DownloadSession session, long now) {
+        long timeout = session.isPostProcessing() ? stallTimeoutNanos * POST_PROCESSING_FACTOR : stallTimeoutNanos;
+        long silent = now - session.getLastOutputNanos();
+        if (silent < timeout) {
+            return false;
+        }
+
+        if (session.abort("sin actividad durante " + TimeUnit.NANOSECONDS.toSeconds(silent) + " s")) {
+            stalledAborts.incrementAndGet();
+        }
+        return true;
+    }
+
+    private void checkSlow(DownloadSession session, long now) {
+        long speed = session.getBytesPerSecond();
+        if (minBytesPerSecond <= 0 || speed <= 0 || speed >= minBytesPerSecond || session.isPostProcessing()) {
+            slowSince.remove(session);
+            flaggedSlow.remove(session);
+            return;
+        }
+
+        long since = slowSince.computeIfAbsent(session, key -> now);
+        long elapsed = now - since;
+
+        if (elapsed >= 2 * slowWindowNanos) {
+            if (session.abort("velocidad inferior al mínimo durante " + TimeUnit.NANOSECONDS.toSeconds(elapsed) + " s")) {
+                slowAborts.incrementAndGet();
+            }
+            slowSince.remove(session);
+            flaggedSlow.remove(session);
+        } else if (elapsed >= slowWindowNanos && flaggedSlow.add(session)) {
+            LOGGER.warn("Descarga lenta ({} B/s): {}", speed, session.getUrl());
+        }
+    }
+
+    /**
+     * Obtiene el número de sesiones marcadas como lentas en este momento
+     * @return sesiones lentas
+     */
+    public int getSlowSessionCount() {
+        return flaggedSlow.size();
+    }
+
+    /**
+     * Obtiene métricas del vigilante
+     * @return mapa con estadísticas
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("stallTimeoutSeconds", TimeUnit.NANOSECONDS.toSeconds(stallTimeoutNanos));
+        stats.put("minBytesPerSecond", minBytesPerSecond);
+        stats.put("slowSessions", flaggedSlow.size());
+        stats.put("stalledAborts", stalledAborts.get());
+        stats.put("slowAborts", slowAborts.get());
+        return stats;
+    }
+}
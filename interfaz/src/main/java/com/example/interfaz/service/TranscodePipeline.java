@@ -0,0 +1,145 @@
+package com.example.interfaz.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Etapa de conversión del pipeline de descargas
+ *
+ * Recibe el audio ya descargado (bestaudio) y lo convierte a mp3 con ffmpeg en
+ * un pool de hilos dimensionado por núcleos de CPU, independiente del número de
+ * descargas de red. La cola de entrega entre etapas es acotada: cuando está
+ * llena, la etapa de red espera antes de liberar su cupo, de modo que no se
+ * acumula audio sin convertir más rápido de lo que la CPU puede procesarlo.
+ */
+public class TranscodePipeline {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(TranscodePipeline.class);
+
+    private static final String THREAD_PREFIX = "ffmpeg-worker-";
+
+    private final BlockingQueue<PipelineDownload> handoff;
+    private final List<Thread> workers;
+    private final int workerCount;
+
+    private final AtomicInteger transcoding = new AtomicInteger(0);
+    private final AtomicLong completedJobs = new AtomicLong(0);
+    private final AtomicLong failedJobs = new AtomicLong(0);
+    private final AtomicLong transcodeTimeMs = new AtomicLong(0);
+
+    private volatile boolean shutdown;
+
+    /**
+     * Constructor de la etapa de conversión
+     * @param workerCount número de conversiones simultáneas (0 o menos = núcleos disponibles)
+     * @param queueCapacity capacidad de la cola de entrega entre etapas
+     */
+    public TranscodePipeline(int workerCount, int queueCapacity) {
+        this.workerCount = workerCount > 0 ? workerCount : Runtime.getRuntime().availableProcessors();
+        this.handoff = new ArrayBlockingQueue<>(Math.max(1, queueCapacity));
+        this.workers = new ArrayList<>(this.workerCount);
+
+        for (int i = 1; i <= this.workerCount; i++) {
+            Thread thread = new Thread(this::workerLoop, THREAD_PREFIX + i);
+            thread.setDaemon(true);
+            workers.add(thread);
+            thread.start();
+        }
+
+        LOGGER.info("Etapa de conversión iniciada: {} hilos, cola de {}", this.workerCount, handoff.remainingCapacity());
+    }
+
+    /**
+     * Entrega un audio descargado a la etapa de conversión.
+     * Bloquea mientras la cola de entrega esté llena.
+     * @param download descarga con el audio en el área temporal
+     * @throws InterruptedException si el hilo es interrumpido mientras espera
+     */
+    void submit(PipelineDownload download) throws InterruptedException {
+        if (shutdown) {
+            download.cancel();
+            return;
+        }
+        handoff.put(download);
+    }
+
+    /**
+     * Quita de la cola una descarga que aún no empezó a convertirse
+     * @param download descarga a quitar
+     */
+    void remove(PipelineDownload download) {
+        handoff.remove(download);
+    }
+
+    private void workerLoop() {
+        while (!shutdown) {
+            PipelineDownload download;
+            try {
+                download = handoff.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+
+            long start = System.currentTimeMillis();
+            transcoding.incrementAndGet();
+            try {
+                if (download.transcode()) {
+                    completedJobs.incrementAndGet();
+                } else {
+                    failedJobs.incrementAndGet();
+                }
+            } catch (RuntimeException e) {
+                failedJobs.incrementAndGet();
+                LOGGER.error("Error no controlado en la conversión de {}", download.getUrl(), e);
+            } finally {
+                transcoding.decrementAndGet();
+                transcodeTimeMs.addAndGet(System.currentTimeMillis() - start);
+            }
+        }
+    }
+
+    /**
+     * Detiene los hilos de conversión y cancela lo que quede en la cola
+     */
+    public void shutdown() {
+        shutdown = true;
+        List<PipelineDownload> remaining = new ArrayList<>();
+        handoff.drainTo(remaining);
+        remaining.forEach(PipelineDownload::cancel);
+        workers.forEach(Thread::interrupt);
+    }
+
+    public int getQueuedCount() {
+        return handoff.size();
+    }
+
+    public int getTranscodingCount() {
+        return transcoding.get();
+    }
+
+    /**
+     * Obtiene métricas de la etapa de conversión
+     * @return mapa con estadísticas
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("workers", workerCount);
+        stats.put("queued", handoff.size());
+        stats.put("queueCapacity", handoff.size() + handoff.remainingCapacity());
+        stats.put("transcoding", transcoding.get());
+        stats.put("completedJobs", completedJobs.get());
+        stats.put("failedJobs", failedJobs.get());
+        stats.put("transcodeTimeMs", transcodeTimeMs.get());
+        return stats;
+    }
+}
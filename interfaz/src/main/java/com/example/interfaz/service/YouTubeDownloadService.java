@@ -1,16 +1,28 @@
 
 package com.example.interfaz.service;
 
+import com.example.interfaz.config.AppConfig;
+import com.example.interfaz.model.PlaylistEntry;
+import com.example.interfaz.model.PlaylistInventory;
 import com.example.interfaz.model.Song;
 import com.example.interfaz.util.FileUtils;
+import com.example.interfaz.util.PlaylistJournal;
+import com.example.interfaz.util.UrlCanonicalizer;
 import javafx.concurrent.Task;
 
 
-import java.io.*;
 import java.nio.file.Paths;
 import java.nio.file.Path;
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.function.Consumer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -26,6 +38,10 @@ public class YouTubeDownloadService implements DownloadService {
     private static final String YT_DLP_ENV = "YT_DLP_PATH";
     private static final String FFMPEG_ENV = "FFMPEG_PATH";
     private static final String DEFAULT_YT_DLP_RELATIVE = "Libs/yt-dlp.exe";
+    private static final String STAGING_DIR_NAME = ".staging";
+    private static final int MIN_ITEMS_PER_SHARD = 4;
+    // Análisis simultáneos de duración para ordenar la cola (no compiten con las descargas)
+    private static final int DURATION_PROBE_THREADS = 2;
     private static final String DEFAULT_FFMPEG_RELATIVE = "Libs/ffmpeg-2024-09-26-git-f43916e217-full_build/ffmpeg-2024-09-26-git-f43916e217-full_build/bin/ffmpeg.exe";
 
     private static String getYtDlpPath() {
@@ -44,16 +60,74 @@ public class YouTubeDownloadService implements DownloadService {
     
     private final ProgressReporter progressReporter;
     
-    private Process currentProcess;
-    private boolean isPaused;
-    private boolean shouldStop;
+    private final Set<DownloadSession> activeSessions;
+    private final Set<PipelineDownload> activePipelineDownloads;
+    private final Set<PlaylistShardCoordinator> activeShardCoordinators;
+    private final DownloadExecutor downloadExecutor;
+    private final YtDlpWorkerPool workerPool;
+    private final TranscodePipeline transcodePipeline;
+    private final PlaylistScanner playlistScanner;
+    private DurationProbe durationProbe;
+    private final SongFilterService songFilterService;
+    private final InFlightRegistry inFlightRegistry;
+    private final BandwidthBudget bandwidthBudget;
+    private final StallWatchdog stallWatchdog;
+    // Diarios de las playlists expandidas en la cola, por id de playlist
+    private final Map<String, PlaylistJournal> playlistJournals = new ConcurrentHashMap<>();
+    private volatile boolean isPaused;
     
     private static YouTubeDownloadService instance;
     
     public YouTubeDownloadService() {
         this.progressReporter = new ProgressReporter();
+        this.activeSessions = ConcurrentHashMap.newKeySet();
+        this.activePipelineDownloads = ConcurrentHashMap.newKeySet();
+        this.activeShardCoordinators = ConcurrentHashMap.newKeySet();
+        this.downloadExecutor = DownloadExecutor.getInstance();
+        this.workerPool = createWorkerPool();
+        this.transcodePipeline = createTranscodePipeline();
+        this.playlistScanner = new PlaylistScanner(getYtDlpPath());
+        this.songFilterService = SongFilterService.getInstance();
+        this.inFlightRegistry = InFlightRegistry.getInstance();
+        this.bandwidthBudget = new BandwidthBudget(AppConfig.getInstance().getBandwidthLimitKbps());
+        this.stallWatchdog = new StallWatchdog(() -> activeSessions, AppConfig.getInstance().getTimeoutSeconds(),
+            AppConfig.getInstance().getMinSpeedKbps(), AppConfig.getInstance().getSlowWindowSeconds());
+        this.stallWatchdog.start();
         this.isPaused = false;
-        this.shouldStop = false;
+    }
+    
+    /**
+     * Crea la etapa de conversión separada si download.transcode.split está activo
+     * @return etapa de conversión o null para convertir dentro de yt-dlp
+     */
+    private TranscodePipeline createTranscodePipeline() {
+        AppConfig config = AppConfig.getInstance();
+        if (!config.isTranscodeSplitEnabled()) {
+            return null;
+        }
+        return new TranscodePipeline(config.getTranscodeThreads(), config.getTranscodeQueueCapacity());
+    }
+    
+    /**
+     * Crea el pool de procesos de yt-dlp si download.worker.batch.size es mayor que 1
+     * @return pool de workers o null para lanzar un proceso por canción
+     */
+    private YtDlpWorkerPool createWorkerPool() {
+        AppConfig config = AppConfig.getInstance();
+        int batchSize = config.getWorkerBatchSize();
+        if (batchSize <= 1) {
+            return null;
+        }
+        
+        return new YtDlpWorkerPool(config.getMaxConcurrentDownloads(), batchSize, config.getWorkerLingerMs(),
+            outputDir -> YtDlpCommand.forStdinBatch()
+                .noPlaylist()
+                .extractAudioMp3(getFfmpegPath())
+                .outputTemplate(outputDir + File.separator + "%(title)s.%(ext)s")
+                .noOverwrites()
+                .option("--ignore-errors")
+                .build(getYtDlpPath()),
+            progressReporter, downloadExecutor);
     }
     
     /**
@@ -68,74 +142,412 @@ public class YouTubeDownloadService implements DownloadService {
     }
     
     /**
-     * Descarga una playlist completa de YouTube
+     * Obtiene el inventario de una playlist sin descargar audio
+     * @param playlistUrl URL de la playlist
+     * @return CompletableFuture con el inventario
+     */
+    public CompletableFuture<PlaylistInventory> scanPlaylist(String playlistUrl) {
+        return CompletableFuture.supplyAsync(() -> scanInventory(playlistUrl), downloadExecutor);
+    }
+    
+    private PlaylistInventory scanInventory(String playlistUrl) {
+        notifyProgress("Analizando playlist...");
+        try {
+            PlaylistInventory inventory = playlistScanner.scan(playlistUrl);
+            if (!inventory.isEmpty()) {
+                notifyProgress("Playlist analizada: " + inventory.size() + " canciones en "
+                    + inventory.getScanTimeMs() + " ms");
+            }
+            return inventory;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return PlaylistInventory.empty(playlistUrl);
+        }
+    }
+    
+    /**
+     * Analiza una playlist y devuelve la URL de cada canción para encolarlas por
+     * separado, sin las que ya están en la biblioteca ni las que el diario de la
+     * playlist marca como completadas. Las URLs conservan la playlist y la
+     * posición (list=, index=); al completarse cada una se marca en el diario,
+     * así que una playlist interrumpida se reanuda donde quedó. Si el diario
+     * dice que ya estaba toda completada, se empieza de cero.
+     * @param playlistUrl URL de la playlist
+     * @return CompletableFuture con las URLs y sus duraciones, o null si el análisis falla
+     */
+    @Override
+    public CompletableFuture<Map<String, Integer>> expandPlaylist(String playlistUrl) {
+        return CompletableFuture.supplyAsync(() -> {
+            PlaylistInventory inventory = scanInventory(playlistUrl);
+            if (inventory.isEmpty()) {
+                return null;
+            }
+            
+            String playlistId = PlaylistJournal.extractPlaylistId(playlistUrl);
+            Map<String, Integer> entries = new LinkedHashMap<>();
+            for (PlaylistEntry entry : withoutDownloaded(playlistUrl, pendingInJournal(inventory))) {
+                entries.put(entry.getUrl(playlistId), entry.getDurationSeconds());
+            }
+            LOGGER.info("Playlist {} expandida en {} canciones", playlistUrl, entries.size());
+            return entries;
+        }, downloadExecutor);
+    }
+    
+    /**
+     * Obtiene los elementos que el diario de la playlist no marca como completados
+     * @param inventory inventario de la playlist
+     * @return elementos pendientes; todos si la playlist ya estaba completa o no hay diario
+     */
+    private List<PlaylistEntry> pendingInJournal(PlaylistInventory inventory) {
+        String playlistUrl = inventory.getPlaylistUrl();
+        PlaylistJournal journal = journalFor(playlistUrl, inventory.size());
+        if (journal == null) {
+            return inventory.getEntries();
+        }
+        
+        List<PlaylistEntry> pending = inventory.select(entry -> !journal.isCompleted(entry.getIndex()));
+        if (pending.isEmpty()) {
+            journal.reset();
+            return inventory.getEntries();
+        }
+        int completed = inventory.size() - pending.size();
+        if (completed > 0) {
+            notifyProgress("Reanudando la playlist: " + completed + " de " + inventory.size()
+                + " canciones ya completadas");
+        }
+        return pending;
+    }
+    
+    /**
+     * Obtiene el diario de la playlist de una URL, abriéndolo la primera vez
+     * @param url URL de la playlist o de una canción con list=
+     * @param expectedItems número de elementos conocido de la playlist
+     * @return diario abierto, o null si no se pudo abrir
+     */
+    private PlaylistJournal journalFor(String url, int expectedItems) {
+        String playlistId = PlaylistJournal.extractPlaylistId(url);
+        return playlistJournals.computeIfAbsent(playlistId, id -> {
+            try {
+                return PlaylistJournal.open(url, expectedItems);
+            } catch (IOException e) {
+                LOGGER.warn("No se pudo abrir el diario de la playlist {}: {}", id, e.getMessage());
+                return null;
+            }
+        });
+    }
+    
+    /**
+     * Marca en el diario de su playlist una canción expandida cuando se complete
+     * @param url URL de la canción (con list= e index=)
+     * @param handle manejador de su descarga
+     */
+    private void trackPlaylistEntry(String url, DownloadHandle handle) {
+        int index = PlaylistJournal.extractIndex(url);
+        if (index <= 0) {
+            return;
+        }
+        handle.completion().thenAccept(state -> {
+            PlaylistJournal journal = state == DownloadHandle.State.COMPLETED ? journalFor(url, index) : null;
+            if (journal != null) {
+                journal.markCompleted(index);
+            }
+        });
+    }
+    
+    /**
+     * Descarga una playlist completa de YouTube.
+     * Primero obtiene el inventario con --flat-playlist, descarta los elementos
+     * que el diario de la playlist marca como completados, los títulos que ya
+     * están en la biblioteca y los que otra descarga tiene reservados en
+     * InFlightRegistry, y descarga solo el resto con --playlist-items,
+     * repartido entre varios procesos si la selección es grande (download.playlist.shards);
+     * si el análisis falla, descarga la playlist directamente como antes.
      * @param playlistUrl URL de la playlist
      * @param outputDirectory directorio de salida
      * @param newPlaylist true si es una nueva playlist, false para reanudar
      * @return CompletableFuture con el resultado
      */
     public CompletableFuture<Boolean> downloadPlaylist(String playlistUrl, String outputDirectory, boolean newPlaylist) {
-        return CompletableFuture.supplyAsync(() -> {
-            try {
-                int startFromVideo = 1;
-                
-                if (!newPlaylist) {
-                    startFromVideo = FileUtils.loadProgress();
-                    notifyProgress("Reanudando la descarga desde la canción #" + startFromVideo);
-                }
-                
-                ProcessBuilder processBuilder = new ProcessBuilder();
-                processBuilder.command(
-                    getYtDlpPath(),
-                    "-x",
-                    "--audio-format", "mp3",
-                    "--ffmpeg-location", getFfmpegPath(),
-                    "-o", Paths.get(outputDirectory, "%(title)s.%(ext)s").toString(),
-                    "--playlist-start", String.valueOf(startFromVideo),
-                    "--no-overwrites",
-                    playlistUrl
-                );
-                
-                currentProcess = processBuilder.start();
-                
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(currentProcess.getInputStream()))) {
-                    String line;
-                    while ((line = reader.readLine()) != null && !shouldStop) {
-                        // Manejar pausa
-                        handlePauseState();
-                        
-                        if (shouldStop) {
-                            break;
-                        }
-                        
-                        notifyProgress(line);
-                        processDownloadLine(line);
+        PlaylistDownload download = new PlaylistDownload(playlistUrl);
+        runPlaylist(download, outputDirectory, newPlaylist);
+        return download.completion().thenApply(state -> state == DownloadHandle.State.COMPLETED);
+    }
+    
+    /**
+     * Lanza la descarga de una playlist completa en el ejecutor de descargas.
+     * El hilo que analiza la playlist no espera a los tramos repartidos: el
+     * resultado llega al manejador cuando termina el último.
+     * @param download manejador de la playlist
+     * @param outputDirectory directorio de salida
+     * @param newPlaylist true si es una nueva playlist, false para reanudar
+     */
+    private void runPlaylist(PlaylistDownload download, String outputDirectory, boolean newPlaylist) {
+        try {
+            CompletableFuture.supplyAsync(() -> preparePlaylist(download, outputDirectory, newPlaylist), downloadExecutor)
+                .thenCompose(result -> result)
+                .whenComplete((completed, error) -> {
+                    if (error != null) {
+                        LOGGER.error("Error al descargar la playlist {}", download.getUrl(), error);
                     }
-                }
-                
-                int exitCode = currentProcess.waitFor();
-                boolean success = exitCode == 0 && !shouldStop;
-                
-                if (success) {
-                    notifyProgress("Descarga de playlist completada exitosamente");
-                } else if (shouldStop) {
-                    notifyProgress("Descarga cancelada por el usuario");
-                } else {
-                    notifyProgress("Error en la descarga (código: " + exitCode + ")");
-                }
-                
-                return success;
-                
-            } catch (IOException | InterruptedException e) {
-                LOGGER.error("Error durante la descarga de playlist", e);
-                notifyProgress("Error: " + e.getMessage());
-                return false;
-            } finally {
-                resetDownloadState();
+                    download.finish(error == null && Boolean.TRUE.equals(completed));
+                });
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Ejecutor de descargas detenido, se descarta {}", download.getUrl());
+            download.cancel();
+            download.finish(false);
+        }
+    }
+    
+    /**
+     * Analiza la playlist, selecciona los elementos pendientes y los descarga
+     * @param download manejador de la playlist
+     * @param outputDirectory directorio de salida
+     * @param newPlaylist true si es una nueva playlist, false para reanudar
+     * @return CompletableFuture con true si todos los elementos se completaron
+     */
+    private CompletableFuture<Boolean> preparePlaylist(PlaylistDownload download, String outputDirectory, boolean newPlaylist) {
+        String playlistUrl = download.getUrl();
+        download.markRunning();
+        YtDlpCommand command = YtDlpCommand.forUrl(playlistUrl)
+            .extractAudioMp3(getFfmpegPath())
+            .outputTemplate(Paths.get(outputDirectory, "%(title)s.%(ext)s").toString())
+            .noOverwrites();
+        
+        PlaylistInventory inventory = scanInventory(playlistUrl);
+        if (inventory.isEmpty()) {
+            DownloadSession session = createSession(playlistUrl, command, "Descarga de playlist completada exitosamente");
+            download.attach(session);
+            session.run();
+            return CompletableFuture.completedFuture(session.getState() == DownloadHandle.State.COMPLETED);
+        }
+        
+        PlaylistJournal journal = openJournal(playlistUrl, inventory.size(), newPlaylist);
+        Map<PlaylistEntry, InFlightRegistry.Claim> claims = new LinkedHashMap<>();
+        CompletableFuture<Boolean> result;
+        try {
+            result = downloadSelection(download, outputDirectory, command, inventory, journal, claims);
+        } catch (RuntimeException e) {
+            releaseClaims(claims, journal, false);
+            closeJournal(journal);
+            throw e;
+        }
+        return result.whenComplete((completed, error) -> {
+            releaseClaims(claims, journal, Boolean.TRUE.equals(completed));
+            closeJournal(journal);
+        });
+    }
+    
+    /**
+     * Descarga los elementos pendientes de la playlist con un proceso, o repartidos
+     * en tramos si la selección es grande
+     * @param download manejador de la playlist
+     * @param outputDirectory directorio de salida
+     * @param command comando base de yt-dlp para la playlist
+     * @param inventory inventario de la playlist
+     * @param journal diario de la playlist (puede ser null)
+     * @param claims reservas tomadas en InFlightRegistry, que se liberan al terminar
+     * @return CompletableFuture con true si todos los elementos se completaron
+     */
+    private CompletableFuture<Boolean> downloadSelection(PlaylistDownload download, String outputDirectory,
+                                                         YtDlpCommand command, PlaylistInventory inventory,
+                                                         PlaylistJournal journal,
+                                                         Map<PlaylistEntry, InFlightRegistry.Claim> claims) {
+        List<PlaylistEntry> selected = selectPendingEntries(inventory, journal, claims);
+        if (selected.isEmpty()) {
+            notifyProgress("No hay canciones pendientes en la playlist");
+            return CompletableFuture.completedFuture(true);
+        }
+        
+        int shards = Math.min(getPlaylistShards(), selected.size() / MIN_ITEMS_PER_SHARD);
+        if (shards > 1) {
+            return downloadSharded(download, outputDirectory, selected, journal, shards);
+        }
+        
+        command.playlistItems(PlaylistInventory.toPlaylistItems(selected));
+        DownloadSession session = createSession(download.getUrl(), command, "Descarga de playlist completada exitosamente");
+        PlaylistCheckpoint checkpoint = new PlaylistCheckpoint(journal, selected);
+        session.setOutputListener(checkpoint);
+        download.attach(session);
+        session.run();
+        
+        boolean completed = session.getState() == DownloadHandle.State.COMPLETED;
+        checkpoint.finish(completed);
+        return CompletableFuture.completedFuture(completed);
+    }
+    
+    /**
+     * Descarga la selección repartida en tramos de --playlist-items entre varios
+     * procesos de yt-dlp, con robo de trabajo entre ellos. Cada tramo es una
+     * tarea propia del ejecutor de descargas y nadie la espera bloqueado.
+     * @param download manejador de la playlist
+     * @param outputDirectory directorio de salida
+     * @param selected elementos a descargar
+     * @param journal diario de la playlist (puede ser null)
+     * @param shards número de procesos simultáneos
+     * @return CompletableFuture con true si todos los elementos se completaron
+     */
+    private CompletableFuture<Boolean> downloadSharded(PlaylistDownload download, String outputDirectory,
+                                                       List<PlaylistEntry> selected, PlaylistJournal journal, int shards) {
+        String playlistUrl = download.getUrl();
+        ProgressReporter shardReporter = new ProgressReporter();
+        shardReporter.setProgressCallback(progressReporter::notifyProgress);
+        shardReporter.setPlaylistCounterEnabled(false);
+        
+        PlaylistShardCoordinator coordinator = new PlaylistShardCoordinator(selected, journal, items -> {
+            YtDlpCommand command = YtDlpCommand.forUrl(playlistUrl)
+                .extractAudioMp3(getFfmpegPath())
+                .outputTemplate(Paths.get(outputDirectory, "%(title)s.%(ext)s").toString())
+                .noOverwrites()
+                .playlistItems(PlaylistInventory.toPlaylistItems(items));
+            DownloadSession session = createSession(playlistUrl, command, shardReporter, "Tramo de la playlist terminado");
+            download.attach(session);
+            return session;
+        }, progressReporter::notifyProgress);
+        
+        activeShardCoordinators.add(coordinator);
+        download.attach(coordinator);
+        if (isPaused) {
+            coordinator.pause();
+        }
+        notifyProgress("Descargando la playlist con " + shards + " procesos en paralelo");
+        return coordinator.start(downloadExecutor, shards).whenComplete((completed, error) -> {
+            activeShardCoordinators.remove(coordinator);
+            if (Boolean.TRUE.equals(completed)) {
+                notifyProgress("Descarga de playlist completada exitosamente");
             }
         });
     }
     
+    private int getPlaylistShards() {
+        int shards = AppConfig.getInstance().getPlaylistShards();
+        return shards > 0 ? shards : AppConfig.getInstance().getMaxConcurrentDownloads();
+    }
+    
+    /**
+     * Abre el diario de reanudación de la playlist
+     * @param playlistUrl URL de la playlist
+     * @param itemCount número de elementos del inventario
+     * @param newPlaylist true para empezar de cero
+     * @return diario abierto, o null si no se pudo abrir
+     */
+    private PlaylistJournal openJournal(String playlistUrl, int itemCount, boolean newPlaylist) {
+        try {
+            PlaylistJournal journal = PlaylistJournal.open(playlistUrl, itemCount);
+            if (newPlaylist) {
+                journal.reset();
+            } else {
+                int completed = journal.completedCount();
+                notifyProgress("Reanudando la playlist: " + completed + " de " + itemCount + " canciones ya completadas");
+            }
+            return journal;
+        } catch (IOException e) {
+            LOGGER.warn("No se pudo abrir el diario de la playlist {}: {}", playlistUrl, e.getMessage());
+            return null;
+        }
+    }
+    
+    private void closeJournal(PlaylistJournal journal) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            LOGGER.warn("No se pudo cerrar el diario de la playlist: {}", e.getMessage());
+        }
+    }
+    
+    /**
+     * Selecciona los elementos de la playlist que hay que descargar: los que el
+     * diario no marca como completados, sin los que ya existen en la biblioteca
+     * ni los que otra descarga tiene en curso. Cada elemento seleccionado queda
+     * reservado en InFlightRegistry hasta que termine la playlist.
+     * @param inventory inventario de la playlist
+     * @param journal diario de la playlist (puede ser null)
+     * @param claims recibe la reserva de cada elemento seleccionado
+     * @return elementos pendientes en orden de playlist
+     */
+    private List<PlaylistEntry> selectPendingEntries(PlaylistInventory inventory, PlaylistJournal journal,
+                                                     Map<PlaylistEntry, InFlightRegistry.Claim> claims) {
+        String playlistUrl = inventory.getPlaylistUrl();
+        List<PlaylistEntry> candidates = withoutDownloaded(playlistUrl,
+            inventory.select(entry -> journal == null || !journal.isCompleted(entry.getIndex())));
+        List<PlaylistEntry> pending = new ArrayList<>();
+        int inProgress = 0;
+        for (PlaylistEntry entry : candidates) {
+            InFlightRegistry.Claim claim = inFlightRegistry.tryClaim(entry.getUrl(), entry.getTitle());
+            if (claim == null) {
+                inProgress++;
+                continue;
+            }
+            claim.bindActivity(() -> playlistActivityNanos(playlistUrl));
+            claims.put(entry, claim);
+            pending.add(entry);
+        }
+        
+        if (inProgress > 0) {
+            notifyProgress("Omitidas " + inProgress + " canciones que ya se están descargando");
+            LOGGER.info("Omitidas {} canciones de {} en curso en otra descarga", inProgress, playlistUrl);
+        }
+        return pending;
+    }
+    
+    /**
+     * Quita los elementos cuyo título ya está en la biblioteca (SongFilterService)
+     * @param playlistUrl URL de la playlist, para el registro
+     * @param candidates elementos en orden de playlist
+     * @return elementos que no se han descargado, en el mismo orden
+     */
+    private List<PlaylistEntry> withoutDownloaded(String playlistUrl, List<PlaylistEntry> candidates) {
+        List<PlaylistEntry> kept = new ArrayList<>(candidates.size());
+        for (PlaylistEntry entry : candidates) {
+            if (!songFilterService.isDuplicateSong(entry.getTitle())) {
+                kept.add(entry);
+            }
+        }
+        
+        int skipped = candidates.size() - kept.size();
+        if (skipped > 0) {
+            notifyProgress("Omitidas " + skipped + " canciones ya descargadas");
+            LOGGER.info("Omitidos {} duplicados de {} antes de descargar", skipped, playlistUrl);
+        }
+        return kept;
+    }
+    
+    /**
+     * Obtiene la última actividad de los procesos de una playlist, con la que se
+     * renuevan las reservas de sus elementos
+     * @param playlistUrl URL de la playlist
+     * @return marca de System.nanoTime(); el instante actual si aún no hay procesos
+     */
+    private long playlistActivityNanos(String playlistUrl) {
+        long latest = System.nanoTime();
+        boolean found = false;
+        for (DownloadSession session : activeSessions) {
+            if (session.getUrl().equals(playlistUrl)) {
+                long activity = session.getLastActivityNanos();
+                if (!found || activity - latest > 0) {
+                    latest = activity;
+                    found = true;
+                }
+            }
+        }
+        return latest;
+    }
+    
+    /**
+     * Libera las reservas de la playlist. Con diario, cada elemento se da por
+     * descargado según su marca; sin él, según el resultado de la playlist.
+     * @param claims reservas de los elementos seleccionados
+     * @param journal diario de la playlist (puede ser null)
+     * @param completed true si la playlist se completó
+     */
+    private void releaseClaims(Map<PlaylistEntry, InFlightRegistry.Claim> claims, PlaylistJournal journal,
+                               boolean completed) {
+        claims.forEach((entry, claim) ->
+            claim.release(journal != null ? journal.isCompleted(entry.getIndex()) : completed));
+    }
+    
     /**
      * Descarga una canción individual
      * @param url URL de la canción
@@ -143,154 +555,233 @@ public class YouTubeDownloadService implements DownloadService {
      */
     public CompletableFuture<Boolean> downloadSong(String url) {
         return CompletableFuture.supplyAsync(() -> {
-            try {
-                ProcessBuilder processBuilder = new ProcessBuilder();
-                processBuilder.command(
-                    getYtDlpPath(),
-                    "-x",
-                    "--audio-format", "mp3",
-                    "--ffmpeg-location", getFfmpegPath(),
-                    "-o", FileUtils.getMusicDirectory() + File.separator + "%(title)s.%(ext)s",
-                    "--no-overwrites",
-                    url
-                );
-                
-                currentProcess = processBuilder.start();
-                
-                try (BufferedReader reader = new BufferedReader(new InputStreamReader(currentProcess.getInputStream()))) {
-                    String line;
-                    while ((line = reader.readLine()) != null && !shouldStop) {
-                        // Manejar pausa
-                        handlePauseState();
-                        
-                        if (shouldStop) {
-                            break;
-                        }
-                        
-                        notifyProgress(line);
-                        processDownloadLine(line);
-                    }
-                }
-                
-                int exitCode = currentProcess.waitFor();
-                boolean success = exitCode == 0 && !shouldStop;
-                
-                if (success) {
+            DownloadSession session = createSongSession(url, FileUtils.getMusicDirectory());
+            session.run();
+            return session.getState() == DownloadHandle.State.COMPLETED;
+        }, downloadExecutor);
+    }
+    
+    /**
+     * Inicia la descarga de una canción en el ejecutor de descargas y devuelve su manejador.
+     * Una URL de playlist (cuando la cola no la expande en canciones) se descarga
+     * completa, reanudando desde su diario y repartida en tramos si es grande.
+     * @param url URL de la canción o de la playlist
+     * @param outputPath directorio de salida (vacío para el directorio de música)
+     * @return manejador de la descarga
+     */
+    @Override
+    public DownloadHandle startDownload(String url, String outputPath) {
+        if (UrlCanonicalizer.isPlaylist(url)) {
+            PlaylistDownload download = new PlaylistDownload(url);
+            runPlaylist(download, resolveOutputDirectory(outputPath), false);
+            return download;
+        }
+        
+        if (workerPool != null) {
+            DownloadHandle handle = workerPool.submit(url, resolveOutputDirectory(outputPath));
+            handle.completion().thenAccept(state -> {
+                if (state == DownloadHandle.State.COMPLETED) {
                     notifyProgress("Canción descargada exitosamente");
-                } else if (shouldStop) {
-                    notifyProgress("Descarga cancelada");
-                } else {
-                    notifyProgress("Error en la descarga");
                 }
-                
-                return success;
-                
-            } catch (IOException | InterruptedException e) {
-                LOGGER.error("Error durante la descarga de canción", e);
-                notifyProgress("Error: " + e.getMessage());
-                return false;
-            } finally {
-                resetDownloadState();
-            }
-        });
+            });
+            trackPlaylistEntry(url, handle);
+            return handle;
+        }
+        
+        String outputDir = resolveOutputDirectory(outputPath);
+        DownloadHandle handle;
+        Runnable task;
+        if (transcodePipeline != null) {
+            PipelineDownload download = createPipelineDownload(url, outputDir);
+            handle = download;
+            task = download;
+        } else {
+            DownloadSession session = createSongSession(url, outputDir);
+            handle = session;
+            task = session;
+        }
+        
+        trackPlaylistEntry(url, handle);
+        try {
+            downloadExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            LOGGER.warn("Ejecutor de descargas detenido, se descarta {}", url);
+            handle.cancel();
+        }
+        return handle;
     }
     
     /**
-     * Pausa la descarga actual
+     * Crea una descarga en dos etapas: yt-dlp obtiene el mejor audio en un área
+     * temporal del directorio de salida y la etapa de conversión genera el mp3
+     * @param url URL de la canción
+     * @param outputDir directorio de salida
+     * @return descarga registrada como activa
+     */
+    private PipelineDownload createPipelineDownload(String url, String outputDir) {
+        Path stagingDir = Paths.get(outputDir, STAGING_DIR_NAME);
+        YtDlpCommand command = YtDlpCommand.forUrl(url)
+            .noPlaylist()
+            .option("-f", "bestaudio/best")
+            .outputTemplate(stagingDir.resolve("%(id)s").resolve("%(title)s.%(ext)s").toString())
+            .noOverwrites();
+        
+        DownloadSession fetchSession = createSession(url, command, "Audio descargado, en espera de conversión");
+        PipelineDownload download = new PipelineDownload(fetchSession, transcodePipeline, getFfmpegPath(),
+            outputDir, progressReporter);
+        activePipelineDownloads.add(download);
+        download.completion().whenComplete((state, error) -> activePipelineDownloads.remove(download));
+        return download;
+    }
+    
+    /**
+     * Crea una sesión para descargar una canción individual
+     * @param url URL de la canción
+     * @param outputDir directorio de salida
+     * @return sesión registrada como activa
+     */
+    private DownloadSession createSongSession(String url, String outputDir) {
+        YtDlpCommand command = YtDlpCommand.forUrl(url)
+            .noPlaylist()
+            .extractAudioMp3(getFfmpegPath())
+            .outputTemplate(outputDir + File.separator + "%(title)s.%(ext)s")
+            .noOverwrites();
+        
+        return createSession(url, command, "Canción descargada exitosamente");
+    }
+    
+    /**
+     * Crea una sesión y la registra como activa hasta que termine
+     * @param url URL de la descarga
+     * @param command comando de yt-dlp
+     * @param successMessage mensaje a notificar al completarse
+     * @return sesión creada
+     */
+    private DownloadSession createSession(String url, YtDlpCommand command, String successMessage) {
+        return createSession(url, command, progressReporter, successMessage);
+    }
+    
+    /**
+     * Crea una sesión que informa a un receptor de progreso propio
+     * @param url URL de la descarga
+     * @param command comando de yt-dlp
+     * @param reporter receptor de las líneas de progreso
+     * @param successMessage mensaje a notificar al completarse
+     * @return sesión creada
+     */
+    private DownloadSession createSession(String url, YtDlpCommand command, ProgressReporter reporter, String successMessage) {
+        DownloadSession session = new DownloadSession(url, command.build(getYtDlpPath()), reporter, successMessage);
+        session.setBandwidthBudget(bandwidthBudget);
+        activeSessions.add(session);
+        session.completion().whenComplete((state, error) -> activeSessions.remove(session));
+        return session;
+    }
+    
+    private String resolveOutputDirectory(String outputPath) {
+        return outputPath == null || outputPath.isEmpty() ? FileUtils.getMusicDirectory() : outputPath;
+    }
+    
+    /**
+     * Pausa todas las descargas activas
      */
     public void pauseDownload() {
         this.isPaused = true;
+        activeShardCoordinators.forEach(PlaylistShardCoordinator::pause);
+        activeSessions.forEach(DownloadSession::pause);
+        activePipelineDownloads.forEach(PipelineDownload::pause);
+        if (workerPool != null) {
+            workerPool.pauseAll();
+        }
         notifyProgress("Descarga pausada");
         LOGGER.info("Descarga pausada");
     }
     
     /**
-     * Reanuda la descarga pausada
+     * Reanuda todas las descargas pausadas
      */
     public void resumeDownload() {
         this.isPaused = false;
+        activeShardCoordinators.forEach(PlaylistShardCoordinator::resume);
+        activeSessions.forEach(DownloadSession::resume);
+        activePipelineDownloads.forEach(PipelineDownload::resume);
+        if (workerPool != null) {
+            workerPool.resumeAll();
+        }
         notifyProgress("Descarga reanudada");
         LOGGER.info("Descarga reanudada");
     }
     
     /**
-     * Detiene la descarga actual
+     * Detiene todas las descargas activas
      */
     public void stopDownload() {
-        this.shouldStop = true;
         this.isPaused = false;
         
-        if (currentProcess != null && currentProcess.isAlive()) {
-            currentProcess.destroyForcibly();
+        boolean poolActive = workerPool != null && workerPool.hasActiveItems();
+        if (poolActive) {
+            workerPool.cancelAll();
+        }
+        
+        activeShardCoordinators.forEach(PlaylistShardCoordinator::cancel);
+        
+        if (!activeSessions.isEmpty() || !activePipelineDownloads.isEmpty() || poolActive) {
+            activePipelineDownloads.forEach(PipelineDownload::cancel);
+            activeSessions.forEach(DownloadSession::cancel);
             notifyProgress("Descarga detenida");
-            LOGGER.info("Proceso de descarga terminado forzosamente");
+            LOGGER.info("Procesos de descarga terminados forzosamente");
         }
     }
     
     /**
-     * Verifica si la descarga está pausada
-     * @return true si está pausada
+     * Cambia el límite global de ancho de banda; las descargas en curso se
+     * relanzan con su nueva cuota
+     * @param limitKbps límite en kilobits por segundo (0 = sin límite)
      */
-    public boolean isPaused() {
-        return isPaused;
+    public void setBandwidthLimitKbps(long limitKbps) {
+        AppConfig.getInstance().setBandwidthLimitKbps(limitKbps);
+        bandwidthBudget.setLimitKbps(limitKbps);
     }
     
-    /**
-     * Verifica si se debe detener la descarga
-     * @return true si se debe detener
-     */
-    public boolean shouldStop() {
-        return shouldStop;
+    public BandwidthBudget getBandwidthBudget() {
+        return bandwidthBudget;
     }
     
-    /**
-     * Verifica si hay una descarga en progreso
-     * @return true si hay descarga activa
-     */
-    public boolean isDownloading() {
-        return currentProcess != null && currentProcess.isAlive();
+    public StallWatchdog getStallWatchdog() {
+        return stallWatchdog;
     }
     
     /**
-     * Establece el callback para notificaciones de progreso
-     * @param callback función que recibe las actualizaciones
+     * Verifica si la descarga está pausada
+     * @return true si está pausada
      */
-    public void setProgressCallback(Consumer<String> callback) {
-        this.progressReporter.setProgressCallback(callback);
+    public boolean isPaused() {
+        return isPaused;
     }
     
     /**
-     * Procesa una línea de salida del proceso de descarga
-     * @param line línea de salida
+     * Verifica si hay una descarga en progreso
+     * @return true si hay descarga activa
      */
-    private void processDownloadLine(String line) {
-        progressReporter.processDownloadLine(line);
+    public boolean isDownloading() {
+        return activeSessions.stream().anyMatch(DownloadSession::isProcessAlive)
+            || !activePipelineDownloads.isEmpty()
+            || (workerPool != null && workerPool.hasActiveItems());
     }
     
-
-    
     /**
-     * Maneja el estado de pausa
+     * Obtiene el número de sesiones de descarga activas
+     * @return sesiones activas
      */
-    private void handlePauseState() {
-        while (isPaused && !shouldStop) {
-            try {
-                Thread.sleep(100);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                shouldStop = true;
-                break;
-            }
-        }
+    public int getActiveSessionCount() {
+        return activeSessions.size();
     }
     
     /**
-     * Reinicia el estado de descarga
+     * Establece el callback para notificaciones de progreso
+     * @param callback función que recibe las actualizaciones
      */
-    private void resetDownloadState() {
-        this.currentProcess = null;
-        this.isPaused = false;
-        this.shouldStop = false;
+    public void setProgressCallback(Consumer<String> callback) {
+        this.progressReporter.setProgressCallback(callback);
     }
     
     /**
@@ -304,59 +795,29 @@ public class YouTubeDownloadService implements DownloadService {
     @Override
     public Task<Void> downloadSong(String url, String outputPath) {
         return new Task<Void>() {
+            private volatile DownloadSession session;
+            
             @Override
             protected Void call() throws Exception {
-                try {
-                    ProcessBuilder processBuilder = new ProcessBuilder();
-                    String outputDir = outputPath.isEmpty() ? FileUtils.getMusicDirectory() : outputPath;
-                    processBuilder.command(
-                        getYtDlpPath(),
-                        "-x",
-                        "--audio-format", "mp3",
-                        "--ffmpeg-location", getFfmpegPath(),
-                        "-o", outputDir + File.separator + "%(title)s.%(ext)s",
-                        "--no-overwrites",
-                        url
-                    );
-
-                    
-                    currentProcess = processBuilder.start();
-                    
-                    try (BufferedReader reader = new BufferedReader(new InputStreamReader(currentProcess.getInputStream()))) {
-                        String line;
-                        while ((line = reader.readLine()) != null && !shouldStop) {
-                            handlePauseState();
-                            
-                            if (shouldStop) {
-                                break;
-                            }
-                            
-                            System.out.println(line);
-                            notifyProgress(line);
-                            processDownloadLine(line);
-                        }
-                    }
-                    
-                    int exitCode = currentProcess.waitFor();
-                    boolean success = exitCode == 0 && !shouldStop;
-                    
-                    if (success) {
-                        notifyProgress("Canción descargada exitosamente");
-                    } else if (shouldStop) {
-                        notifyProgress("Descarga cancelada");
-                    } else {
-                        notifyProgress("Error en la descarga");
-                    }
-                    
-                } catch (IOException | InterruptedException e) {
-                    LOGGER.error("Error durante la descarga de canción", e);
-                    notifyProgress("Error: " + e.getMessage());
-                    throw e;
-                } finally {
-                    resetDownloadState();
+                session = createSongSession(url, resolveOutputDirectory(outputPath));
+                if (isCancelled()) {
+                    session.cancel();
+                }
+                session.run();
+                
+                if (session.getFailureCause() != null) {
+                    throw session.getFailureCause();
                 }
                 return null;
             }
+            
+            @Override
+            protected void cancelled() {
+                DownloadSession current = session;
+                if (current != null) {
+                    current.cancel();
+                }
+            }
         };
     }
     
@@ -365,6 +826,19 @@ public class YouTubeDownloadService implements DownloadService {
         return url != null && (url.contains("youtube.com") || url.contains("youtu.be"));
     }
     
+    @Override
+    public CompletableFuture<Integer> probeDuration(String url) {
+        DurationProbe probe;
+        synchronized (this) {
+            // Los hilos de la sonda solo se crean si la cola ordena por duración
+            if (durationProbe == null) {
+                durationProbe = new DurationProbe(playlistScanner, DURATION_PROBE_THREADS);
+            }
+            probe = durationProbe;
+        }
+        return probe.probe(url);
+    }
+    
     @Override
     public Song getSongInfo(String url) {
         Song song = new Song();
@@ -0,0 +1,142 @@
+package com.example.interfaz.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Constructor de líneas de comando para yt-dlp
+ * Centraliza los argumentos que antes se repetían en cada método de descarga
+ */
+public class YtDlpCommand {
+
+    private final String url;
+    private final List<String> options;
+
+    private YtDlpCommand(String url) {
+        this.url = url;
+        this.options = new ArrayList<>();
+    }
+
+    /**
+     * Crea un comando para la URL indicada
+     * @param url URL de video o playlist
+     * @return nuevo comando
+     */
+    public static YtDlpCommand forUrl(String url) {
+        return new YtDlpCommand(url);
+    }
+
+    /**
+     * Crea un comando que lee la lista de URLs desde la entrada estándar (-a -)
+     * @return nuevo comando en modo lote
+     */
+    public static YtDlpCommand forStdinBatch() {
+        return new YtDlpCommand(null);
+    }
+
+    /**
+     * Extrae el audio y lo convierte a mp3 con ffmpeg
+     * @param ffmpegPath ruta del ejecutable de ffmpeg
+     * @return este comando
+     */
+    public YtDlpCommand extractAudioMp3(String ffmpegPath) {
+        return option("-x", "--audio-format", "mp3", "--ffmpeg-location", ffmpegPath);
+    }
+
+    /**
+     * Establece la plantilla de salida de yt-dlp
+     * @param template plantilla de salida (-o)
+     * @return este comando
+     */
+    public YtDlpCommand outputTemplate(String template) {
+        return option("-o", template);
+    }
+
+    /**
+     * Empieza la playlist desde el elemento indicado
+     * @param startIndex índice (base 1) del primer elemento
+     * @return este comando
+     */
+    public YtDlpCommand playlistStart(int startIndex) {
+        return option("--playlist-start", String.valueOf(startIndex));
+    }
+
+    /**
+     * Descarga solo los elementos indicados de la playlist
+     * @param spec índices y rangos en formato de yt-dlp (ej. "1-3,7")
+     * @return este comando
+     */
+    public YtDlpCommand playlistItems(String spec) {
+        return option("--playlist-items", spec);
+    }
+
+    /**
+     * Descarga solo el video aunque la URL también indique una playlist (watch?v=...&list=...)
+     * @return este comando
+     */
+    public YtDlpCommand noPlaylist() {
+        return option("--no-playlist");
+    }
+
+    /**
+     * Lista los elementos de la playlist sin resolver cada video
+     * @return este comando
+     */
+    public YtDlpCommand flatPlaylist() {
+        return option("--flat-playlist");
+    }
+
+    /**
+     * Imprime la plantilla indicada por cada elemento en lugar de descargarlo
+     * @param template plantilla de salida de yt-dlp
+     * @return este comando
+     */
+    public YtDlpCommand print(String template) {
+        return option("--print", template);
+    }
+
+    /**
+     * Evita sobrescribir archivos existentes
+     * @return este comando
+     */
+    public YtDlpCommand noOverwrites() {
+        return option("--no-overwrites");
+    }
+
+    /**
+     * Agrega opciones arbitrarias
+     * @param args argumentos a agregar
+     * @return este comando
+     */
+    public YtDlpCommand option(String... args) {
+        Collections.addAll(options, args);
+        return this;
+    }
+
+    /**
+     * Construye la línea de comando completa
+     * @param executable ruta del ejecutable de yt-dlp
+     * @return lista de argumentos para ProcessBuilder
+     */
+    public List<String> build(String executable) {
+        List<String> command = new ArrayList<>(options.size() + 2);
+        command.add(executable);
+        command.addAll(options);
+        if (url != null) {
+            command.add(url);
+        } else {
+            command.add("--batch-file");
+            command.add("-");
+        }
+        return command;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public boolean isStdinBatch() {
+        return url == null;
+    }
+}
@@ -0,0 +1,673 @@
+package com.example.interfaz.service;
+
+import com.example.interfaz.util.ProcessTreeSignals;
+import com.example.interfaz.util.ProgressParser;
+import com.example.interfaz.util.UrlCanonicalizer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Pool de workers de yt-dlp que reparten el coste de arranque entre varias URLs
+ *
+ * Cada worker lanza un proceso con --batch-file - y le pasa por stdin un lote de
+ * URLs del mismo directorio de salida. El lote es la parte que le toca de las
+ * pendientes repartidas entre los workers libres (como mucho batchSize), así que
+ * un worker no se lleva todo lo pendiente mientras otros esperan.
+ *
+ * yt-dlp lee el archivo de lote completo antes de empezar, así que un proceso no
+ * admite URLs nuevas una vez arrancado. Para no pagar el arranque (intérprete y
+ * extractores) en cada lote, cada worker deja lanzado el proceso del lote
+ * siguiente esperando en stdin mientras descarga el actual.
+ *
+ * La salida se atribuye por el id de vídeo que yt-dlp pone al principio de las
+ * líneas de cada URL ("[youtube] ID: ..."); las que no lo llevan (progreso,
+ * conversión) son de la URL en curso. Para URLs sin id conocido se usa la línea
+ * "Extracting URL:".
+ */
+public class YtDlpWorkerPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(YtDlpWorkerPool.class);
+
+    private static final Pattern EXTRACTING_PATTERN = Pattern.compile("^\\[[^\\]]+\\] Extracting URL: (.+)$");
+    private static final Pattern ITEM_ID_PATTERN = Pattern.compile("^(?:ERROR: )?\\[[^\\]]+\\] ([A-Za-z0-9_-]{11}): ");
+    private static final String TRUNCATION_MARK = "...";
+    private static final long IDLE_TIMEOUT_MS = 1000;
+
+    private final int workers;
+    private final int batchSize;
+    private final long lingerMs;
+    private final Function<String, List<String>> commandFactory;
+    private final ProgressReporter progressReporter;
+    private final Executor executor;
+
+    private final LinkedBlockingDeque<BatchItem> pending = new LinkedBlockingDeque<>();
+    private final Set<BatchItem> activeItems = ConcurrentHashMap.newKeySet();
+
+    private final AtomicInteger busyWorkers = new AtomicInteger();
+
+    private int runningWorkers;
+    private volatile boolean shutdown;
+
+    /**
+     * Constructor del pool
+     * @param workers número de procesos de yt-dlp simultáneos
+     * @param batchSize número máximo de URLs por proceso
+     * @param lingerMs tiempo que un worker espera para completar un lote
+     * @param commandFactory crea la línea de comando para un directorio de salida
+     * @param progressReporter receptor de las líneas de progreso
+     * @param executor ejecutor donde corren los workers
+     */
+    public YtDlpWorkerPool(int workers, int batchSize, long lingerMs,
+                           Function<String, List<String>> commandFactory,
+                           ProgressReporter progressReporter, Executor executor) {
+        this.workers = Math.max(1, workers);
+        this.batchSize = Math.max(1, batchSize);
+        this.lingerMs = Math.max(0, lingerMs);
+        this.commandFactory = commandFactory;
+        this.progressReporter = progressReporter;
+        this.executor = executor;
+    }
+
+    /**
+     * Encola una URL para que la descargue el siguiente worker libre
+     * @param url URL a descargar
+     * @param outputDir directorio de salida
+     * @return manejador de la descarga
+     */
+    public DownloadHandle submit(String url, String outputDir) {
+        BatchItem item = new BatchItem(url, outputDir);
+
+        if (shutdown) {
+            item.complete(DownloadHandle.State.CANCELLED);
+            return item;
+        }
+
+        activeItems.add(item);
+        item.completion().whenComplete((state, error) -> activeItems.remove(item));
+        pending.offer(item);
+        ensureWorkers();
+        return item;
+    }
+
+    /**
+     * Arranca workers hasta cubrir las URLs pendientes, sin superar el máximo.
+     * Los workers terminan solos cuando la cola queda vacía para no ocupar
+     * hilos del ejecutor mientras no hay trabajo.
+     */
+    private synchronized void ensureWorkers() {
+        while (!shutdown && runningWorkers < workers && !pending.isEmpty()) {
+            runningWorkers++;
+            try {
+                executor.execute(this::workerLoop);
+            } catch (RejectedExecutionException e) {
+                runningWorkers--;
+                LOGGER.warn("No se pudo iniciar un worker de yt-dlp: {}", e.getMessage());
+                return;
+            }
+        }
+    }
+
+    private synchronized void workerExited() {
+        runningWorkers--;
+    }
+
+    /**
+     * Bucle de un worker: toma lotes de la cola y los descarga con un único proceso
+     */
+    private void workerLoop() {
+        WarmProcess warm = new WarmProcess();
+        try {
+            while (!shutdown) {
+                List<BatchItem> batch = takeBatch();
+                if (batch == null) {
+                    break;
+                }
+                if (!batch.isEmpty()) {
+                    busyWorkers.incrementAndGet();
+                    try {
+                        runBatch(batch, warm);
+                    } finally {
+                        busyWorkers.decrementAndGet();
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            warm.discard();
+            workerExited();
+            ensureWorkers();
+        }
+    }
+
+    /**
+     * Espera la primera URL pendiente y junta las de su mismo directorio de salida
+     * hasta la parte que le toca a este worker, esperando como máximo lingerMs a
+     * que lleguen más
+     * @return lote de elementos a descargar, o null si no hay trabajo
+     * @throws InterruptedException si el worker es interrumpido
+     */
+    private List<BatchItem> takeBatch() throws InterruptedException {
+        BatchItem first = pending.poll(IDLE_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        if (first == null) {
+            return null;
+        }
+
+        List<BatchItem> batch = new ArrayList<>(batchSize);
+        if (!first.claim()) {
+            return batch;
+        }
+        batch.add(first);
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(lingerMs);
+        while (true) {
+            int limit = batchLimit(first.outputDir, batch.size());
+            collectMatching(first.outputDir, batch, limit);
+            long remaining = deadline - System.nanoTime();
+            if (batch.size() >= limit || remaining <= 0) {
+                break;
+            }
+            BatchItem next = pending.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                break;
+            }
+            if (next.outputDir.equals(first.outputDir) && next.claim()) {
+                batch.add(next);
+            } else if (next.getState() == DownloadHandle.State.PENDING) {
+                pending.offerFirst(next);
+                break;
+            }
+        }
+
+        return batch;
+    }
+
+    /**
+     * Calcula cuántas URLs le tocan a un lote: las pendientes del mismo directorio
+     * (más las ya tomadas) repartidas entre los workers que no están descargando,
+     * redondeando hacia arriba y sin pasar de batchSize
+     * @param outputDir directorio de salida del lote
+     * @param taken elementos ya tomados para el lote
+     * @return tamaño máximo del lote
+     */
+    private int batchLimit(String outputDir, int taken) {
+        int available = taken;
+        for (BatchItem item : pending) {
+            if (item.outputDir.equals(outputDir)) {
+                available++;
+            }
+        }
+        int idle = Math.max(1, workers - busyWorkers.get());
+        int share = (available + idle - 1) / idle;
+        return Math.max(taken, Math.min(batchSize, share));
+    }
+
+    /**
+     * Mueve al lote los elementos pendientes del mismo directorio de salida
+     * @param outputDir directorio de salida del lote
+     * @param batch lote en construcción
+     * @param limit tamaño máximo del lote
+     */
+    private void collectMatching(String outputDir, List<BatchItem> batch, int limit) {
+        Iterator<BatchItem> iterator = pending.iterator();
+        while (iterator.hasNext() && batch.size() < limit) {
+            BatchItem item = iterator.next();
+            if (item.outputDir.equals(outputDir) && pending.remove(item) && item.claim()) {
+                batch.add(item);
+            }
+        }
+    }
+
+    /**
+     * Descarga un lote con un único proceso de yt-dlp
+     * @param batch elementos del lote, en el orden en que se escriben en stdin
+     * @param warm proceso preparado del worker; se usa si es del mismo directorio
+     */
+    private void runBatch(List<BatchItem> batch, WarmProcess warm) {
+        BatchProcess batchProcess = new BatchProcess();
+        BatchItem current = null;
+        String outputDir = batch.get(0).outputDir;
+
+        try {
+            Process process = warm.take(outputDir);
+            batchProcess.process = process;
+            batch.forEach(item -> item.batchProcess = batchProcess);
+
+            try (Writer stdin = new OutputStreamWriter(process.getOutputStream(), StandardCharsets.UTF_8)) {
+                for (BatchItem item : batch) {
+                    stdin.write(item.url);
+                    stdin.write('\n');
+                }
+            }
+            // El siguiente lote arranca sobre un proceso ya cargado
+            warm.prepare(outputDir);
+
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    BatchItem owner = ownerOf(line, batch, current);
+                    if (owner != current) {
+                        if (current != null) {
+                            current.finishFromOutput();
+                        }
+                        current = owner;
+                        current.started = true;
+                        batchProcess.current = current;
+
+                        if (current.getState() == DownloadHandle.State.CANCELLED) {
+                            destroyTree(process);
+                            break;
+                        }
+                    }
+
+                    if (current != null) {
+                        current.onLine(line);
+                    }
+
+                    LogService.log(line);
+                    progressReporter.notifyProgress(line);
+                    progressReporter.processDownloadLine(line);
+                }
+            }
+
+            int exitCode = process.waitFor();
+            if (current != null) {
+                current.exitCode = exitCode;
+                current.finishFromOutput();
+            }
+
+        } catch (IOException e) {
+            LOGGER.error("Error ejecutando lote de yt-dlp", e);
+            progressReporter.notifyProgress("Error: " + e.getMessage());
+            if (current != null) {
+                current.failed = true;
+                current.finishFromOutput();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (batchProcess.process != null) {
+                destroyTree(batchProcess.process);
+            }
+        } finally {
+            settleRemaining(batch, batchProcess.killed);
+        }
+    }
+
+    /**
+     * Busca a qué elemento del lote pertenece una línea de yt-dlp: el que tenga
+     * el id de vídeo de la línea o, con "Extracting URL:", el de esa URL. Solo
+     * cuentan los que aún no empezaron; las demás líneas son del elemento en curso.
+     * @param line línea de salida
+     * @param batch elementos del lote
+     * @param current elemento en curso (puede ser null)
+     * @return elemento dueño de la línea, o current si no se puede saber
+     */
+    private static BatchItem ownerOf(String line, List<BatchItem> batch, BatchItem current) {
+        Matcher idMatcher = ITEM_ID_PATTERN.matcher(line);
+        if (idMatcher.find()) {
+            String id = idMatcher.group(1);
+            if (current != null && id.equals(current.videoId)) {
+                return current;
+            }
+            for (BatchItem item : batch) {
+                if (!item.started && id.equals(item.videoId)) {
+                    return item;
+                }
+            }
+            return current;
+        }
+
+        Matcher extracting = EXTRACTING_PATTERN.matcher(line);
+        if (extracting.matches()) {
+            String printed = extracting.group(1).trim();
+            if (current != null && matchesUrl(current.url, printed)) {
+                return current;
+            }
+            for (BatchItem item : batch) {
+                if (!item.started && matchesUrl(item.url, printed)) {
+                    return item;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Resuelve los elementos del lote que quedaron sin terminar.
+     * Los que yt-dlp no llegó a empezar vuelven a la cola si el proceso se detuvo
+     * por una cancelación; si terminó por sí solo se marcan como fallidos para no
+     * reintentarlos indefinidamente. Uno empezado y sin resolver (proceso
+     * interrumpido) falla.
+     */
+    private void settleRemaining(List<BatchItem> batch, boolean killed) {
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            BatchItem item = batch.get(i);
+            item.batchProcess = null;
+
+            if (item.getState().isTerminal()) {
+                continue;
+            }
+            if (shutdown) {
+                item.complete(DownloadHandle.State.CANCELLED);
+            } else if (!item.started && killed && item.requeue()) {
+                pending.offerFirst(item);
+            } else {
+                item.complete(DownloadHandle.State.FAILED);
+            }
+        }
+    }
+
+    /**
+     * Compara la URL de un elemento con la que imprime yt-dlp, que puede venir
+     * truncada como inicio...final cuando es muy larga
+     */
+    private static boolean matchesUrl(String expected, String printed) {
+        if (expected.equals(printed)) {
+            return true;
+        }
+        int mark = printed.indexOf(TRUNCATION_MARK);
+        return mark > 0
+            && expected.startsWith(printed.substring(0, mark))
+            && expected.endsWith(printed.substring(mark + TRUNCATION_MARK.length()));
+    }
+
+    private static void destroyTree(Process process) {
+        process.descendants().forEach(ProcessHandle::destroyForcibly);
+        process.destroyForcibly();
+    }
+
+    public void pauseAll() {
+        activeItems.forEach(BatchItem::pause);
+    }
+
+    public void resumeAll() {
+        activeItems.forEach(BatchItem::resume);
+    }
+
+    public void cancelAll() {
+        activeItems.forEach(BatchItem::cancel);
+    }
+
+    public boolean hasActiveItems() {
+        return !activeItems.isEmpty();
+    }
+
+    /**
+     * Detiene los workers y cancela todo lo pendiente
+     */
+    public void shutdown() {
+        shutdown = true;
+        cancelAll();
+    }
+
+    /**
+     * Proceso de yt-dlp de un worker lanzado de antemano: arranca mientras el
+     * worker descarga su lote y queda esperando las URLs del siguiente en stdin
+     */
+    private class WarmProcess {
+        private Process process;
+        private String outputDir;
+
+        /**
+         * Obtiene un proceso para el directorio indicado: el preparado si sigue
+         * vivo y es del mismo directorio, o uno nuevo
+         */
+        Process take(String outputDir) throws IOException {
+            Process ready = process;
+            boolean usable = ready != null && ready.isAlive() && outputDir.equals(this.outputDir);
+            if (ready != null && !usable) {
+                destroyTree(ready);
+            }
+            process = null;
+            return usable ? ready : start(outputDir);
+        }
+
+        /**
+         * Lanza el proceso del siguiente lote; si no se puede, el lote lo lanzará al empezar
+         */
+        void prepare(String outputDir) {
+            if (shutdown) {
+                return;
+            }
+            try {
+                process = start(outputDir);
+                this.outputDir = outputDir;
+            } catch (IOException e) {
+                LOGGER.debug("No se pudo preparar un proceso de yt-dlp: {}", e.getMessage());
+            }
+        }
+
+        void discard() {
+            if (process != null) {
+                destroyTree(process);
+                process = null;
+            }
+        }
+
+        private Process start(String outputDir) throws IOException {
+            ProcessBuilder processBuilder = new ProcessBuilder(commandFactory.apply(outputDir));
+            processBuilder.redirectErrorStream(true);
+            return processBuilder.start();
+        }
+    }
+
+    /**
+     * Proceso de yt-dlp compartido por los elementos de un lote
+     */
+    private static class BatchProcess {
+        private volatile Process process;
+        private volatile BatchItem current;
+        private volatile boolean suspended;
+        private volatile boolean killed;
+
+        synchronized void suspend() {
+            Process target = process;
+            if (!suspended && target != null && target.isAlive() && ProcessTreeSignals.isSupported()) {
+                suspended = ProcessTreeSignals.suspendTree(target.toHandle());
+            }
+        }
+
+        synchronized void resume() {
+            Process target = process;
+            if (suspended && target != null) {
+                ProcessTreeSignals.resumeTree(target.toHandle());
+            }
+            suspended = false;
+        }
+
+        void kill() {
+            Process target = process;
+            killed = true;
+            if (target != null && target.isAlive()) {
+                destroyTree(target);
+            }
+        }
+    }
+
+    /**
+     * Elemento de un lote; implementa DownloadHandle para que el planificador lo
+     * controle igual que una sesión individual. Pausar un elemento suspende el
+     * proceso de todo su lote.
+     */
+    private class BatchItem implements DownloadHandle {
+        private final String url;
+        private final String outputDir;
+        private final String videoId;
+        private final AtomicReference<State> state = new AtomicReference<>(State.PENDING);
+        private final CompletableFuture<State> completion = new CompletableFuture<>();
+
+        private volatile BatchProcess batchProcess;
+        private volatile boolean started;
+        private volatile boolean failed;
+        private volatile int exitCode = -1;
+        private volatile long bytesPerSecond;
+        private volatile long lastOutputNanos = System.nanoTime();
+
+        BatchItem(String url, String outputDir) {
+            this.url = url;
+            this.outputDir = outputDir;
+            String key = UrlCanonicalizer.canonicalKey(url);
+            this.videoId = key.startsWith("yt:") ? key.substring(3) : null;
+        }
+
+        /**
+         * Reserva el elemento para un lote
+         * @return true si el elemento seguía pendiente
+         */
+        boolean claim() {
+            lastOutputNanos = System.nanoTime();
+            return state.compareAndSet(State.PENDING, State.RUNNING);
+        }
+
+        /**
+         * Devuelve el elemento a pendiente tras interrumpirse su lote
+         * @return true si el elemento puede volver a la cola
+         */
+        boolean requeue() {
+            failed = false;
+            started = false;
+            return state.compareAndSet(State.RUNNING, State.PENDING)
+                || state.compareAndSet(State.PAUSED, State.PENDING);
+        }
+
+        void onLine(String line) {
+            lastOutputNanos = System.nanoTime();
+            if (line.startsWith("ERROR:")) {
+                failed = true;
+            } else if (line.startsWith("[download]")) {
+                long speed = ProgressParser.speedToBytesPerSecond(ProgressParser.extractSpeed(line));
+                if (speed >= 0) {
+                    bytesPerSecond = speed;
+                }
+            }
+        }
+
+        void finishFromOutput() {
+            complete(failed ? State.FAILED : State.COMPLETED);
+        }
+
+        void complete(State result) {
+            bytesPerSecond = 0;
+            State finalState = state.updateAndGet(current -> current.isTerminal() ? current : result);
+            completion.complete(finalState);
+        }
+
+        @Override
+        public String getUrl() {
+            return url;
+        }
+
+        @Override
+        public State getState() {
+            return state.get();
+        }
+
+        @Override
+        public void pause() {
+            if (state.compareAndSet(State.RUNNING, State.PAUSED)) {
+                BatchProcess target = batchProcess;
+                if (target != null) {
+                    target.suspend();
+                }
+            }
+        }
+
+        @Override
+        public void resume() {
+            if (state.compareAndSet(State.PAUSED, State.RUNNING)) {
+                BatchProcess target = batchProcess;
+                if (target != null) {
+                    target.resume();
+                }
+            }
+        }
+
+        @Override
+        public void cancel() {
+            State previous = state.getAndUpdate(current -> current.isTerminal() ? current : State.CANCELLED);
+            if (previous.isTerminal()) {
+                return;
+            }
+
+            if (previous == State.PENDING) {
+                pending.remove(this);
+                completion.complete(State.CANCELLED);
+                return;
+            }
+
+            BatchProcess target = batchProcess;
+            if (target != null) {
+                target.resume();
+                if (target.current == this) {
+                    target.kill();
+                }
+            }
+            completion.complete(State.CANCELLED);
+        }
+
+        @Override
+        public boolean await() throws InterruptedException {
+            try {
+                return completion.get() == State.COMPLETED;
+            } catch (ExecutionException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public boolean await(long timeout, TimeUnit unit) throws InterruptedException {
+            try {
+                completion.get(timeout, unit);
+                return true;
+            } catch (ExecutionException e) {
+                return true;
+            } catch (TimeoutException e) {
+                return false;
+            }
+        }
+
+        @Override
+        public CompletableFuture<State> completion() {
+            return completion;
+        }
+
+        @Override
+        public int getExitCode() {
+            return exitCode;
+        }
+
+        @Override
+        public long getBytesPerSecond() {
+            return state.get() == State.RUNNING ? bytesPerSecond : 0;
+        }
+
+        @Override
+        public long getLastActivityNanos() {
+            return state.get() == State.RUNNING ? lastOutputNanos : System.nanoTime();
+        }
+    }
+}
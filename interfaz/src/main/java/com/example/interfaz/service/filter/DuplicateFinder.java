@@ -49,7 +49,7 @@ public class DuplicateFinder {
         for (String existingTitle : existingTitles) {
             String normalizedExisting = TitleNormalizer.normalize(existingTitle);
             
-            if (SimilarityCalculator.calculateCombinedSimilarity(normalizedTitle, normalizedExisting) >= similarityThreshold) {
+            if (SimilarityCalculator.isAboveThreshold(normalizedTitle, normalizedExisting, similarityThreshold)) {
                 LOGGER.info("Similitud detectada: '" + title + "' es similar a '" + existingTitle + "'");
                 return true;
             }
@@ -58,6 +58,36 @@ public class DuplicateFinder {
         return false;
     }
     
+    /**
+     * Verifica si un título es duplicado de alguno del índice.
+     * Solo se normaliza el título consultado; la biblioteca ya está preparada
+     * y solo se comparan los títulos relacionados que devuelve el índice.
+     * @param title título a verificar
+     * @param index índice de títulos existentes
+     * @return true si es duplicado
+     */
+    public boolean isDuplicate(String title, TitleIndex index) {
+        if (title == null || title.trim().isEmpty() || index == null) {
+            return false;
+        }
+        
+        if (index.contains(title)) {
+            LOGGER.info("Duplicado exacto encontrado: " + title);
+            return true;
+        }
+        
+        TitleIndex.Entry prepared = TitleIndex.prepare(title);
+        
+        for (TitleIndex.Entry existing : candidatesFor(prepared, index)) {
+            if (SimilarityCalculator.isAboveThreshold(prepared, existing, similarityThreshold)) {
+                LOGGER.info("Similitud detectada: '" + title + "' es similar a '" + existing.getTitle() + "'");
+                return true;
+            }
+        }
+        
+        return false;
+    }
+    
     /**
      * Encuentra el título más similar en una colección
      * @param title título objetivo
@@ -86,6 +116,47 @@ public class DuplicateFinder {
         return mostSimilar;
     }
     
+    /**
+     * Encuentra el título más similar del índice
+     * @param title título objetivo
+     * @param index índice de títulos existentes
+     * @return el título más similar o null si no hay similitudes por encima del umbral
+     */
+    public String findMostSimilar(String title, TitleIndex index) {
+        if (title == null || index == null || index.isEmpty()) {
+            return null;
+        }
+        
+        TitleIndex.Entry prepared = TitleIndex.prepare(title);
+        String mostSimilar = null;
+        double maxSimilarity = 0.0;
+        
+        for (TitleIndex.Entry existing : candidatesFor(prepared, index)) {
+            if (!SimilarityCalculator.isAboveThreshold(prepared, existing, similarityThreshold)) {
+                continue;
+            }
+            double similarity = SimilarityCalculator.calculateCombinedSimilarity(prepared, existing);
+            
+            if (similarity >= similarityThreshold && similarity > maxSimilarity) {
+                maxSimilarity = similarity;
+                mostSimilar = existing.getTitle();
+            }
+        }
+        
+        return mostSimilar;
+    }
+    
+    /**
+     * Obtiene los títulos del índice que pueden alcanzar el umbral. Con umbrales
+     * bajos un título sin palabras relacionadas también puede, así que se recorre todo.
+     */
+    private Collection<TitleIndex.Entry> candidatesFor(TitleIndex.Entry prepared, TitleIndex index) {
+        if (similarityThreshold > TitleIndex.UNRELATED_SIMILARITY_BOUND) {
+            return index.candidates(prepared, similarityThreshold);
+        }
+        return index.entries();
+    }
+    
     /**
      * Agrupa títulos similares de una lista
      * @param titles lista de títulos
@@ -98,6 +169,10 @@ public class DuplicateFinder {
         
         Map<String, List<String>> groups = new HashMap<>();
         Set<String> processed = new HashSet<>();
+        Map<String, TitleIndex.Entry> prepared = new HashMap<>();
+        for (String title : titles) {
+            prepared.computeIfAbsent(title, TitleIndex::prepare);
+        }
         
         for (String title : titles) {
             if (processed.contains(title)) {
@@ -108,13 +183,11 @@ public class DuplicateFinder {
             group.add(title);
             processed.add(title);
             
-            String normalizedTitle = TitleNormalizer.normalize(title);
+            TitleIndex.Entry preparedTitle = prepared.get(title);
             
             for (String otherTitle : titles) {
                 if (!processed.contains(otherTitle)) {
-                    String normalizedOther = TitleNormalizer.normalize(otherTitle);
-                    
-                    if (SimilarityCalculator.calculateCombinedSimilarity(normalizedTitle, normalizedOther) >= similarityThreshold) {
+                    if (SimilarityCalculator.isAboveThreshold(preparedTitle, prepared.get(otherTitle), similarityThreshold)) {
                         group.add(otherTitle);
                         processed.add(otherTitle);
                     }
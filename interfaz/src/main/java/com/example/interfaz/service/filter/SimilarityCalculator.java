@@ -15,7 +15,9 @@ public class SimilarityCalculator {
      * @return porcentaje de similitud (0.0 a 1.0)
      */
     public static double calculateCombinedSimilarity(String normalizedTitle1, String normalizedTitle2) {
-        if (normalizedTitle1 == null || normalizedTitle2 == null) {
+        // Un título que queda vacío al normalizarlo no identifica ninguna canción
+        if (normalizedTitle1 == null || normalizedTitle2 == null
+                || normalizedTitle1.isEmpty() || normalizedTitle2.isEmpty()) {
             return 0.0;
         }
         
@@ -27,9 +29,214 @@ public class SimilarityCalculator {
         double jaccardSim = calculateJaccardSimilarity(normalizedTitle1, normalizedTitle2);
         double containmentSim = calculateContainmentSimilarity(normalizedTitle1, normalizedTitle2);
         
+        return combine(levenshteinSim, jaccardSim, containmentSim);
+    }
+    
+    /**
+     * Calcula la similitud combinada entre dos títulos ya preparados por TitleIndex,
+     * sin volver a dividirlos en palabras. Da el mismo resultado que la versión con cadenas.
+     * @param title1 primer título preparado
+     * @param title2 segundo título preparado
+     * @return porcentaje de similitud (0.0 a 1.0)
+     */
+    public static double calculateCombinedSimilarity(TitleIndex.Entry title1, TitleIndex.Entry title2) {
+        String normalized1 = title1.getNormalized();
+        String normalized2 = title2.getNormalized();
+        if (normalized1.isEmpty() || normalized2.isEmpty()) {
+            return 0.0;
+        }
+        if (normalized1.equals(normalized2)) {
+            return 1.0;
+        }
+        
+        double levenshteinSim = calculateLevenshteinSimilarity(normalized1, normalized2);
+        double jaccardSim = jaccard(title1.getWordSet(), title2.getWordSet());
+        double containmentSim = containment(normalized1, normalized2, title1.getWords(), title2.getWords());
+        
+        return combine(levenshteinSim, jaccardSim, containmentSim);
+    }
+    
+    /**
+     * Pondera las tres similitudes. Es la única expresión del total: las cotas
+     * de isAboveThreshold pasan por aquí y, como el redondeo es monótono, una
+     * cota mayor o igual que cada componente da un total mayor o igual.
+     * TitleIndex la usa también para acotar los títulos que no recorre.
+     */
+    static double combine(double levenshteinSim, double jaccardSim, double containmentSim) {
         return (levenshteinSim * 0.4) + (jaccardSim * 0.3) + (containmentSim * 0.3);
     }
     
+    /**
+     * Indica si la similitud combinada de dos títulos normalizados alcanza el umbral.
+     * Equivale a calculateCombinedSimilarity(...) >= threshold, pero evalúa primero
+     * cotas baratas y se detiene en cuanto el mejor total posible queda por debajo:
+     * - longitudes: la distancia de Levenshtein es al menos la diferencia de longitudes
+     * - número de palabras: la intersección de Jaccard no supera al conjunto menor
+     * - firmas de caracteres: una palabra solo contiene a otra si tiene todos sus
+     *   caracteres, lo que acota los pares que cuenta la contención
+     * Después calcula Jaccard, ajusta la cota de Levenshtein con la distancia de
+     * bolsa (caracteres que sobran en una cadena respecto a la otra), calcula la
+     * contención y solo al final Levenshtein, si el umbral aún puede alcanzarse.
+     * @param normalizedTitle1 primer título normalizado
+     * @param normalizedTitle2 segundo título normalizado
+     * @param threshold umbral de similitud
+     * @return true si la similitud combinada es mayor o igual que el umbral
+     */
+    public static boolean isAboveThreshold(String normalizedTitle1, String normalizedTitle2, double threshold) {
+        if (normalizedTitle1 == null || normalizedTitle2 == null
+                || normalizedTitle1.isEmpty() || normalizedTitle2.isEmpty()) {
+            return 0.0 >= threshold;
+        }
+        if (normalizedTitle1.equals(normalizedTitle2)) {
+            return 1.0 >= threshold;
+        }
+        
+        String[] words1 = normalizedTitle1.split("\\s+");
+        String[] words2 = normalizedTitle2.split("\\s+");
+        return isAboveThreshold(normalizedTitle1, normalizedTitle2, words1, words2,
+                                new HashSet<>(Arrays.asList(words1)), new HashSet<>(Arrays.asList(words2)),
+                                longWordSignatures(words1), longWordSignatures(words2), threshold);
+    }
+    
+    /**
+     * Indica si la similitud combinada de dos títulos preparados por TitleIndex alcanza el umbral
+     * @param title1 primer título preparado
+     * @param title2 segundo título preparado
+     * @param threshold umbral de similitud
+     * @return lo mismo que calculateCombinedSimilarity(title1, title2) >= threshold
+     */
+    public static boolean isAboveThreshold(TitleIndex.Entry title1, TitleIndex.Entry title2, double threshold) {
+        String normalized1 = title1.getNormalized();
+        String normalized2 = title2.getNormalized();
+        if (normalized1.isEmpty() || normalized2.isEmpty()) {
+            return 0.0 >= threshold;
+        }
+        if (normalized1.equals(normalized2)) {
+            return 1.0 >= threshold;
+        }
+        return isAboveThreshold(normalized1, normalized2, title1.getWords(), title2.getWords(),
+                                title1.getWordSet(), title2.getWordSet(),
+                                title1.getLongWordSignatures(), title2.getLongWordSignatures(), threshold);
+    }
+    
+    private static boolean isAboveThreshold(String s1, String s2, String[] words1, String[] words2,
+                                            Set<String> set1, Set<String> set2,
+                                            long[] signatures1, long[] signatures2, double threshold) {
+        int maxLength = Math.max(s1.length(), s2.length());
+        double levenshteinBound = 1.0 - (double) Math.abs(s1.length() - s2.length()) / maxLength;
+        double jaccardBound = (double) Math.min(set1.size(), set2.size()) / Math.max(set1.size(), set2.size());
+        double containmentBound = containmentUpperBound(s1, s2, words1.length, words2.length, signatures1, signatures2);
+        if (combine(levenshteinBound, jaccardBound, containmentBound) < threshold) {
+            return false;
+        }
+        
+        double jaccardSim = jaccard(set1, set2);
+        if (combine(levenshteinBound, jaccardSim, containmentBound) < threshold) {
+            return false;
+        }
+        
+        levenshteinBound = 1.0 - (double) bagDistance(s1, s2) / maxLength;
+        if (combine(levenshteinBound, jaccardSim, containmentBound) < threshold) {
+            return false;
+        }
+        
+        double containmentSim = containment(s1, s2, words1, words2);
+        if (combine(levenshteinBound, jaccardSim, containmentSim) < threshold) {
+            return false;
+        }
+        
+        double levenshteinSim = calculateLevenshteinSimilarity(s1, s2);
+        return combine(levenshteinSim, jaccardSim, containmentSim) >= threshold;
+    }
+    
+    /**
+     * Cota superior de la contención: 0.8 si la cadena más corta puede estar
+     * dentro de la larga, o los pares de palabras de más de 2 letras cuyas firmas
+     * permiten que una contenga a la otra
+     */
+    private static double containmentUpperBound(String s1, String s2, int wordCount1, int wordCount2,
+                                                long[] signatures1, long[] signatures2) {
+        int pairs = 0;
+        for (long signature1 : signatures1) {
+            for (long signature2 : signatures2) {
+                long common = signature1 & signature2;
+                if (common == signature1 || common == signature2) {
+                    pairs++;
+                }
+            }
+        }
+        double pairBound = (double) pairs / Math.max(wordCount1, wordCount2);
+        
+        String shorter = s1.length() <= s2.length() ? s1 : s2;
+        String longer = shorter == s1 ? s2 : s1;
+        long shorterSignature = signature(shorter);
+        boolean mayContain = (shorterSignature & signature(longer)) == shorterSignature;
+        return mayContain ? Math.max(0.8, pairBound) : pairBound;
+    }
+    
+    /**
+     * Firma de caracteres: un bit por carácter (agrupados módulo 64). Si una
+     * cadena contiene a otra, la firma de la contenida es subconjunto de la otra.
+     */
+    private static long signature(String text) {
+        long signature = 0;
+        for (int i = 0; i < text.length(); i++) {
+            signature |= 1L << (text.charAt(i) & 63);
+        }
+        return signature;
+    }
+    
+    /**
+     * Obtiene las firmas de las palabras de más de 2 letras, las que cuentan para la contención
+     * @param words palabras del título normalizado
+     * @return firmas, con repeticiones
+     */
+    static long[] longWordSignatures(String[] words) {
+        int count = 0;
+        for (String word : words) {
+            if (word.length() > 2) {
+                count++;
+            }
+        }
+        long[] signatures = new long[count];
+        int next = 0;
+        for (String word : words) {
+            if (word.length() > 2) {
+                signatures[next++] = signature(word);
+            }
+        }
+        return signatures;
+    }
+    
+    private static final ThreadLocal<int[]> BAG_COUNTS = ThreadLocal.withInitial(() -> new int[256]);
+    
+    /**
+     * Distancia de bolsa: el mayor número de caracteres de una cadena sin pareja
+     * en la otra. Cada uno exige al menos una edición, así que nunca supera a la
+     * distancia de Levenshtein. Los caracteres se agrupan por su byte bajo; juntar
+     * caracteres solo puede bajar la cota, nunca hacerla inválida.
+     */
+    private static int bagDistance(String s1, String s2) {
+        int[] counts = BAG_COUNTS.get();
+        for (int i = 0; i < s1.length(); i++) {
+            counts[s1.charAt(i) & 0xFF]++;
+        }
+        int unmatched2 = 0;
+        for (int i = 0; i < s2.length(); i++) {
+            int bucket = s2.charAt(i) & 0xFF;
+            if (counts[bucket] > 0) {
+                counts[bucket]--;
+            } else {
+                unmatched2++;
+            }
+        }
+        for (int i = 0; i < s1.length(); i++) {
+            counts[s1.charAt(i) & 0xFF] = 0;
+        }
+        int unmatched1 = s1.length() - (s2.length() - unmatched2);
+        return Math.max(unmatched1, unmatched2);
+    }
+    
     /**
      * Calcula similitud usando distancia de Levenshtein
      * @param s1 primera cadena
@@ -56,13 +263,22 @@ public class SimilarityCalculator {
         Set<String> words1 = new HashSet<>(Arrays.asList(s1.split("\\s+")));
         Set<String> words2 = new HashSet<>(Arrays.asList(s2.split("\\s+")));
         
-        Set<String> intersection = new HashSet<>(words1);
-        intersection.retainAll(words2);
+        return jaccard(words1, words2);
+    }
+    
+    private static double jaccard(Set<String> words1, Set<String> words2) {
+        Set<String> smaller = words1.size() <= words2.size() ? words1 : words2;
+        Set<String> larger = smaller == words1 ? words2 : words1;
         
-        Set<String> union = new HashSet<>(words1);
-        union.addAll(words2);
+        int intersection = 0;
+        for (String word : smaller) {
+            if (larger.contains(word)) {
+                intersection++;
+            }
+        }
         
-        return union.isEmpty() ? 0.0 : (double) intersection.size() / union.size();
+        int union = words1.size() + words2.size() - intersection;
+        return union == 0 ? 0.0 : (double) intersection / union;
     }
     
     /**
@@ -76,13 +292,18 @@ public class SimilarityCalculator {
             return 0.0;
         }
         
+        return containment(s1, s2, s1.split("\\s+"), s2.split("\\s+"));
+    }
+    
+    private static double containment(String s1, String s2, String[] words1, String[] words2) {
+        if (s1.isEmpty() || s2.isEmpty()) {
+            return 0.0;
+        }
+        
         if (s1.contains(s2) || s2.contains(s1)) {
             return 0.8; 
         }
         
-        String[] words1 = s1.split("\\s+");
-        String[] words2 = s2.split("\\s+");
-        
         int matches = 0;
         for (String word1 : words1) {
             for (String word2 : words2) {
@@ -97,33 +318,157 @@ public class SimilarityCalculator {
     }
     
     /**
-     * Calcula la distancia de Levenshtein entre dos cadenas
+     * Calcula la distancia de Levenshtein entre dos cadenas.
+     * Si la más corta cabe en 64 caracteres usa el algoritmo de vectores de bits
+     * de Myers (variante de Hyyrö): una palabra de 64 bits por columna en lugar
+     * de una fila de la matriz. Si no, dos filas de programación dinámica.
+     * Ninguno de los dos reserva memoria por llamada: las tablas son por hilo.
      * @param s1 primera cadena
      * @param s2 segunda cadena
      * @return distancia de edición
      */
     public static int levenshteinDistance(String s1, String s2) {
-        int[][] dp = new int[s1.length() + 1][s2.length() + 1];
+        String pattern = s1.length() <= s2.length() ? s1 : s2;
+        String text = pattern == s1 ? s2 : s1;
+        
+        if (pattern.isEmpty()) {
+            return text.length();
+        }
+        if (pattern.length() <= Long.SIZE) {
+            return bitParallelDistance(pattern, text);
+        }
+        return twoRowDistance(pattern, text);
+    }
+    
+    /**
+     * Tablas por hilo del algoritmo de vectores de bits: máscara de posiciones de
+     * cada carácter del patrón (directa para los primeros 256, lista para el resto)
+     */
+    private static final class PatternMasks {
+        private final long[] latin = new long[256];
+        private final char[] otherChars = new char[Long.SIZE];
+        private final long[] otherMasks = new long[Long.SIZE];
+        private int otherCount;
+        
+        void load(String pattern) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                long bit = 1L << i;
+                if (c < 256) {
+                    latin[c] |= bit;
+                } else {
+                    int slot = indexOfOther(c);
+                    if (slot < 0) {
+                        slot = otherCount++;
+                        otherChars[slot] = c;
+                        otherMasks[slot] = 0;
+                    }
+                    otherMasks[slot] |= bit;
+                }
+            }
+        }
+        
+        long mask(char c) {
+            if (c < 256) {
+                return latin[c];
+            }
+            int slot = otherCount == 0 ? -1 : indexOfOther(c);
+            return slot < 0 ? 0 : otherMasks[slot];
+        }
+        
+        void clear(String pattern) {
+            for (int i = 0; i < pattern.length(); i++) {
+                char c = pattern.charAt(i);
+                if (c < 256) {
+                    latin[c] = 0;
+                }
+            }
+            otherCount = 0;
+        }
+        
+        private int indexOfOther(char c) {
+            for (int i = 0; i < otherCount; i++) {
+                if (otherChars[i] == c) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+    }
+    
+    private static final ThreadLocal<PatternMasks> PATTERN_MASKS = ThreadLocal.withInitial(PatternMasks::new);
+    private static final ThreadLocal<int[][]> DP_ROWS = ThreadLocal.withInitial(() -> new int[2][128]);
+    
+    /**
+     * Distancia con vectores de bits: Pv/Mv guardan si cada celda de la columna
+     * sube o baja respecto a la anterior y score sigue la última fila
+     * @param pattern cadena de 1 a 64 caracteres
+     * @param text otra cadena
+     */
+    private static int bitParallelDistance(String pattern, String text) {
+        PatternMasks masks = PATTERN_MASKS.get();
+        masks.load(pattern);
+        
+        int m = pattern.length();
+        long last = 1L << (m - 1);
+        long pv = -1L;
+        long mv = 0L;
+        int score = m;
+        
+        for (int j = 0; j < text.length(); j++) {
+            long eq = masks.mask(text.charAt(j));
+            long xv = eq | mv;
+            long xh = (((eq & pv) + pv) ^ pv) | eq;
+            long ph = mv | ~(xh | pv);
+            long mh = pv & xh;
+            if ((ph & last) != 0) {
+                score++;
+            } else if ((mh & last) != 0) {
+                score--;
+            }
+            // La fila 0 vale j, así que cada columna aporta un +1 por arriba
+            ph = (ph << 1) | 1L;
+            mh <<= 1;
+            pv = mh | ~(xv | ph);
+            mv = ph & xv;
+        }
         
-        for (int i = 0; i <= s1.length(); i++) {
-            dp[i][0] = i;
+        masks.clear(pattern);
+        return score;
+    }
+    
+    /**
+     * Distancia con dos filas de programación dinámica, para patrones de más de 64 caracteres
+     */
+    private static int twoRowDistance(String pattern, String text) {
+        int[][] rows = DP_ROWS.get();
+        if (rows[0].length < pattern.length() + 1) {
+            rows = new int[2][Math.max(pattern.length() + 1, rows[0].length * 2)];
+            DP_ROWS.set(rows);
         }
+        int[] previous = rows[0];
+        int[] current = rows[1];
         
-        for (int j = 0; j <= s2.length(); j++) {
-            dp[0][j] = j;
+        for (int i = 0; i <= pattern.length(); i++) {
+            previous[i] = i;
         }
         
-        for (int i = 1; i <= s1.length(); i++) {
-            for (int j = 1; j <= s2.length(); j++) {
-                if (s1.charAt(i - 1) == s2.charAt(j - 1)) {
-                    dp[i][j] = dp[i - 1][j - 1];
+        for (int j = 1; j <= text.length(); j++) {
+            char c = text.charAt(j - 1);
+            current[0] = j;
+            for (int i = 1; i <= pattern.length(); i++) {
+                if (pattern.charAt(i - 1) == c) {
+                    current[i] = previous[i - 1];
                 } else {
-                    dp[i][j] = 1 + Math.min(Math.min(dp[i - 1][j], dp[i][j - 1]), dp[i - 1][j - 1]);
+                    current[i] = 1 + Math.min(Math.min(previous[i], current[i - 1]), previous[i - 1]);
                 }
             }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
         }
         
-        return dp[s1.length()][s2.length()];
+        return previous[pattern.length()];
     }
     
     /**
@@ -137,7 +482,7 @@ public class SimilarityCalculator {
         String normalized1 = TitleNormalizer.normalize(title1);
         String normalized2 = TitleNormalizer.normalize(title2);
         
-        return calculateCombinedSimilarity(normalized1, normalized2) >= threshold;
+        return isAboveThreshold(normalized1, normalized2, threshold);
     }
     
     /**
@@ -167,4 +512,41 @@ public class SimilarityCalculator {
         
         return mostSimilar;
     }
-}
\ No newline at end of file
+    
+    /**
+     * Encuentra el título más similar del índice.
+     * Primero compara solo los títulos relacionados; si ninguno llega a
+     * UNRELATED_SIMILARITY_BOUND, un título sin relación podría ganar y se recorre todo.
+     * @param target título objetivo
+     * @param candidates índice de candidatos
+     * @return el título más similar o null si no hay candidatos
+     */
+    public static String findMostSimilar(String target, TitleIndex candidates) {
+        if (candidates == null || candidates.isEmpty()) {
+            return null;
+        }
+        
+        TitleIndex.Entry prepared = TitleIndex.prepare(target);
+        TitleIndex.Entry best = mostSimilar(prepared, candidates.candidates(prepared));
+        if (best == null || calculateCombinedSimilarity(prepared, best) < TitleIndex.UNRELATED_SIMILARITY_BOUND) {
+            best = mostSimilar(prepared, candidates.entries());
+        }
+        return best == null ? null : best.getTitle();
+    }
+    
+    private static TitleIndex.Entry mostSimilar(TitleIndex.Entry target, Collection<TitleIndex.Entry> candidates) {
+        TitleIndex.Entry mostSimilar = null;
+        double maxSimilarity = 0.0;
+        
+        for (TitleIndex.Entry candidate : candidates) {
+            double similarity = calculateCombinedSimilarity(target, candidate);
+            
+            if (similarity > maxSimilarity) {
+                maxSimilarity = similarity;
+                mostSimilar = candidate;
+            }
+        }
+        
+        return mostSimilar;
+    }
+}
@@ -0,0 +1,383 @@
+package com.example.interfaz.service.filter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Índice de títulos ya normalizados
+ * Guarda de cada título su forma normalizada, sus palabras y su longitud al
+ * agregarlo, de modo que cada comprobación de duplicados solo compara y no
+ * vuelve a normalizar la biblioteca entera.
+ *
+ * Además mantiene un índice invertido de palabras a títulos y otro de
+ * trigramas a palabras del vocabulario. Con ellos candidates() devuelve solo
+ * los títulos relacionados con la consulta: los que comparten una palabra
+ * (Jaccard) o tienen una palabra de más de 2 letras que contiene a otra de la
+ * consulta o está contenida en ella (contención). Un título sin relación no
+ * puede superar UNRELATED_SIMILARITY_BOUND en calculateCombinedSimilarity: sin
+ * palabras en común Jaccard vale 0 y la contención vale 0 o 0.8 (una cadena
+ * dentro de la otra), así que el total queda por debajo de 0.4 + 0.24.
+ * Un título vacío al normalizarlo no es similar a ninguno, así que no tiene
+ * candidatos ni aparece como candidato.
+ *
+ * Con un umbral, candidates() filtra por prefijo: recorre las palabras de la
+ * consulta de la más rara a la más frecuente y deja sin recorrer las más
+ * frecuentes mientras un título relacionado solo a través de ellas no pueda
+ * alcanzar el umbral (ver unprobedBound).
+ */
+public class TitleIndex {
+
+    /** Similitud combinada que ningún título sin relación con la consulta puede alcanzar */
+    public static final double UNRELATED_SIMILARITY_BOUND = 0.64;
+
+    // Longitud mínima de las palabras que cuentan para la contención
+    private static final int MIN_CONTAINMENT_LENGTH = 3;
+    private static final int GRAM = 3;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    // Índice invertido, protegido por el monitor del índice
+    private final List<Entry> documents = new ArrayList<>();
+    private final Map<String, Postings> postings = new HashMap<>();
+    private final Map<String, List<String>> vocabularyTrigrams = new HashMap<>();
+    private int[] seenStamp = new int[0];
+    private int stamp;
+
+    /**
+     * Identificadores de los títulos que contienen una palabra
+     */
+    private static final class Postings {
+        private int[] ids = new int[2];
+        private int size;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size * 2);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * Título preparado para comparar
+     */
+    public static final class Entry {
+        private final String title;
+        private final String normalized;
+        private final String[] words;
+        private final Set<String> wordSet;
+        private final long[] longWordSignatures;
+
+        private Entry(String title) {
+            this.title = title;
+            this.normalized = TitleNormalizer.normalize(title);
+            this.words = normalized.split("\\s+");
+            this.wordSet = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(words)));
+            this.longWordSignatures = SimilarityCalculator.longWordSignatures(words);
+        }
+
+        public String getTitle() {
+            return title;
+        }
+
+        public String getNormalized() {
+            return normalized;
+        }
+
+        /**
+         * Obtiene las palabras del título normalizado, en orden y con repeticiones
+         * @return palabras separadas por espacios
+         */
+        String[] getWords() {
+            return words;
+        }
+
+        public Set<String> getWordSet() {
+            return wordSet;
+        }
+
+        /**
+         * Obtiene las firmas de caracteres de las palabras de más de 2 letras
+         * @return firmas en orden, con repeticiones
+         */
+        long[] getLongWordSignatures() {
+            return longWordSignatures;
+        }
+
+        public int length() {
+            return normalized.length();
+        }
+    }
+
+    /**
+     * Prepara un título para compararlo contra el índice sin agregarlo
+     * @param title título original
+     * @return título preparado
+     */
+    public static Entry prepare(String title) {
+        return new Entry(title == null ? "" : title);
+    }
+
+    /**
+     * Agrega un título al índice
+     * @param title título original
+     * @return true si el título no estaba
+     */
+    public boolean add(String title) {
+        if (title == null || entries.containsKey(title)) {
+            return false;
+        }
+        Entry entry = new Entry(title);
+        if (entries.putIfAbsent(title, entry) != null) {
+            return false;
+        }
+        indexEntry(entry);
+        return true;
+    }
+    
+    private synchronized void indexEntry(Entry entry) {
+        int id = documents.size();
+        documents.add(entry);
+        if (entry.normalized.isEmpty()) {
+            return;
+        }
+        for (String word : entry.wordSet) {
+            Postings list = postings.get(word);
+            if (list == null) {
+                list = new Postings();
+                postings.put(word, list);
+                indexVocabularyWord(word);
+            }
+            list.add(id);
+        }
+    }
+    
+    private void indexVocabularyWord(String word) {
+        if (word.length() < MIN_CONTAINMENT_LENGTH) {
+            return;
+        }
+        Set<String> grams = new HashSet<>();
+        for (int i = 0; i + GRAM <= word.length(); i++) {
+            grams.add(word.substring(i, i + GRAM));
+        }
+        for (String gram : grams) {
+            vocabularyTrigrams.computeIfAbsent(gram, key -> new ArrayList<>()).add(word);
+        }
+    }
+
+    /**
+     * Agrega varios títulos al índice
+     * @param titles títulos originales
+     */
+    public void addAll(Collection<String> titles) {
+        for (String title : titles) {
+            add(title);
+        }
+    }
+
+    /**
+     * Verifica si el índice contiene exactamente un título
+     * @param title título original
+     * @return true si está en el índice
+     */
+    public boolean contains(String title) {
+        return title != null && entries.containsKey(title);
+    }
+
+    /**
+     * Obtiene los títulos relacionados con la consulta, sin repetir. Las palabras
+     * raras (pocas apariciones en la biblioteca) se recorren primero, así que los
+     * candidatos más parecidos suelen salir antes.
+     * Con un umbral mayor que UNRELATED_SIMILARITY_BOUND, ningún título fuera de
+     * esta lista puede ser duplicado de la consulta.
+     * @param query título preparado con prepare()
+     * @return títulos relacionados
+     */
+    public List<Entry> candidates(Entry query) {
+        return candidates(query, UNRELATED_SIMILARITY_BOUND);
+    }
+    
+    /**
+     * Obtiene los títulos que pueden alcanzar el umbral con la consulta. Solo se
+     * recorren las listas de las palabras más raras necesarias: las palabras más
+     * frecuentes se omiten mientras unprobedBound quede por debajo del umbral.
+     * Con un umbral mayor que UNRELATED_SIMILARITY_BOUND, ningún título fuera de
+     * esta lista puede ser duplicado de la consulta.
+     * @param query título preparado con prepare()
+     * @param threshold umbral de similitud combinada
+     * @return títulos candidatos
+     */
+    public synchronized List<Entry> candidates(Entry query, double threshold) {
+        List<Entry> result = new ArrayList<>();
+        if (query.normalized.isEmpty()) {
+            return result;
+        }
+        
+        Map<String, Set<String>> relatedByWord = new HashMap<>();
+        Map<String, Integer> cost = new HashMap<>();
+        for (String word : query.wordSet) {
+            Set<String> words = new HashSet<>();
+            collectRelatedWords(word, words);
+            int postingsSize = 0;
+            for (String relatedWord : words) {
+                postingsSize += postings.get(relatedWord).size;
+            }
+            relatedByWord.put(word, words);
+            cost.put(word, postingsSize);
+        }
+        
+        Map<String, Integer> occurrences = new HashMap<>();
+        for (String word : query.words) {
+            occurrences.merge(word, 1, Integer::sum);
+        }
+        List<String> byFrequency = new ArrayList<>(query.wordSet);
+        byFrequency.sort((a, b) -> Integer.compare(cost.get(b), cost.get(a)));
+        
+        int unprobedWords = 0;
+        int unprobedLongWords = 0;
+        Set<String> related = new HashSet<>();
+        for (String word : byFrequency) {
+            int longWords = word.length() >= MIN_CONTAINMENT_LENGTH ? occurrences.get(word) : 0;
+            if (unprobedBound(unprobedWords + 1, query.wordSet.size(), unprobedLongWords + longWords) < threshold) {
+                unprobedWords++;
+                unprobedLongWords += longWords;
+            } else {
+                related.addAll(relatedByWord.get(word));
+            }
+        }
+        List<Postings> lists = new ArrayList<>(related.size());
+        for (String word : related) {
+            lists.add(postings.get(word));
+        }
+        lists.sort((a, b) -> Integer.compare(a.size, b.size));
+        
+        int current = nextStamp();
+        for (Postings list : lists) {
+            for (int i = 0; i < list.size; i++) {
+                int id = list.ids[i];
+                if (seenStamp[id] != current) {
+                    seenStamp[id] = current;
+                    result.add(documents.get(id));
+                }
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Cota de la similitud combinada de un título que solo se relaciona con la
+     * consulta a través de palabras no recorridas. Ese título no tiene ninguna
+     * palabra recorrida, así que Jaccard no pasa de no recorridas / palabras de
+     * la consulta; cada par de la contención usa una aparición de una palabra
+     * larga no recorrida y cada una forma como mucho un par por palabra del
+     * título, así que la contención no pasa de esas apariciones (o de 0.8 si
+     * una cadena está dentro de la otra). Levenshtein se acota con 1. Sin
+     * ninguna palabra recorrida no se encontraría ni un título idéntico.
+     * @param unprobedWords palabras distintas de la consulta sin recorrer
+     * @param queryWords palabras distintas de la consulta
+     * @param unprobedLongWords apariciones en la consulta de palabras sin recorrer de más de 2 letras
+     * @return similitud máxima de un título no recorrido
+     */
+    static double unprobedBound(int unprobedWords, int queryWords, int unprobedLongWords) {
+        if (unprobedWords >= queryWords) {
+            return 1.0;
+        }
+        double jaccardBound = (double) unprobedWords / queryWords;
+        double containmentBound = Math.max(0.8, unprobedLongWords);
+        return SimilarityCalculator.combine(1.0, jaccardBound, containmentBound);
+    }
+    
+    /**
+     * Agrega las palabras del vocabulario relacionadas con una palabra de la
+     * consulta: ella misma y, si es lo bastante larga, las que la contienen o
+     * están contenidas en ella
+     */
+    private void collectRelatedWords(String word, Set<String> related) {
+        if (postings.containsKey(word)) {
+            related.add(word);
+        }
+        if (word.length() < MIN_CONTAINMENT_LENGTH) {
+            return;
+        }
+        
+        // Palabras que la contienen: se verifica la lista del trigrama menos frecuente
+        List<String> rarest = null;
+        for (int i = 0; i + GRAM <= word.length(); i++) {
+            List<String> holders = vocabularyTrigrams.get(word.substring(i, i + GRAM));
+            if (holders == null) {
+                rarest = null;
+                break;
+            }
+            if (rarest == null || holders.size() < rarest.size()) {
+                rarest = holders;
+            }
+        }
+        if (rarest != null) {
+            for (String candidate : rarest) {
+                if (candidate.contains(word)) {
+                    related.add(candidate);
+                }
+            }
+        }
+        
+        // Palabras contenidas en ella
+        for (int length = MIN_CONTAINMENT_LENGTH; length < word.length(); length++) {
+            for (int start = 0; start + length <= word.length(); start++) {
+                String part = word.substring(start, start + length);
+                if (postings.containsKey(part)) {
+                    related.add(part);
+                }
+            }
+        }
+    }
+    
+    private int nextStamp() {
+        if (seenStamp.length < documents.size()) {
+            seenStamp = Arrays.copyOf(seenStamp, Math.max(documents.size(), seenStamp.length * 2));
+        }
+        if (++stamp == 0) {
+            Arrays.fill(seenStamp, 0);
+            stamp = 1;
+        }
+        return stamp;
+    }
+    
+    /**
+     * Obtiene los títulos preparados del índice
+     * @return vista de las entradas
+     */
+    public Collection<Entry> entries() {
+        return entries.values();
+    }
+
+    /**
+     * Obtiene los títulos originales del índice
+     * @return vista de los títulos
+     */
+    public Set<String> titles() {
+        return entries.keySet();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public boolean isEmpty() {
+        return entries.isEmpty();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        documents.clear();
+        postings.clear();
+        vocabularyTrigrams.clear();
+    }
+}
@@ -1,11 +1,91 @@
 package com.example.interfaz.service.filter;
 
+import java.text.Normalizer;
+import java.util.Arrays;
+
 /**
  * Utilidad para normalizar títulos de canciones
  * Responsable únicamente de la normalización de texto
+ *
+ * Recorre el título una sola vez: pasa a minúsculas, quita los acentos
+ * (descomposición NFD sin las marcas diacríticas), conserva letras y dígitos
+ * de cualquier escritura y descarta la puntuación sin separar palabras
+ * ("don't" queda "dont"). Los espacios y los paréntesis, corchetes y llaves
+ * separan palabras, y las palabras de relleno (official, video, letra...) se
+ * quitan solo si son la palabra completa. El resultado tiene las palabras
+ * separadas por un único espacio, sin espacios al principio ni al final.
  */
 public class TitleNormalizer {
     
+    // Palabras que no identifican la canción
+    private static final char[][] NOISE_WORDS = {
+        "official".toCharArray(), "oficial".toCharArray(), "video".toCharArray(),
+        "lyrics".toCharArray(), "letra".toCharArray(), "audio".toCharArray(),
+        "hd".toCharArray(), "4k".toCharArray(), "music".toCharArray(),
+        "mv".toCharArray(), "clip".toCharArray()
+    };
+    
+    // Tabla de caracteres hasta TABLE_SIZE (latín, griego, cirílico...): forma final, SEPARATOR o DROP.
+    // El resto se clasifica al vuelo con classifyCodePoint().
+    private static final int TABLE_SIZE = 0x2000;
+    private static final char SEPARATOR = ' ';
+    private static final char DROP = 0;
+    private static final char[] TABLE = buildTable();
+    
+    // Buffer reutilizado por hilo; uno agrandado por un título enorme no se guarda
+    private static final int MAX_KEPT_BUFFER = 1024;
+    private static final ThreadLocal<char[]> BUFFER = ThreadLocal.withInitial(() -> new char[256]);
+    
+    private static char[] buildTable() {
+        char[] table = new char[TABLE_SIZE];
+        for (char c = 0; c < TABLE_SIZE; c++) {
+            table[c] = classify(c);
+        }
+        return table;
+    }
+    
+    private static char classify(char c) {
+        if (Character.isWhitespace(c) || Character.isSpaceChar(c) || isBracket(c)) {
+            return SEPARATOR;
+        }
+        if (isDiacritic(c)) {
+            return DROP;
+        }
+        if (Character.isLetterOrDigit(c)) {
+            // Letra base de la descomposición, si el resto son diacríticos
+            String decomposed = Normalizer.normalize(String.valueOf(c), Normalizer.Form.NFD);
+            char base = decomposed.charAt(0);
+            for (int i = 1; i < decomposed.length(); i++) {
+                if (!isDiacritic(decomposed.charAt(i))) {
+                    base = c;
+                    break;
+                }
+            }
+            return Character.toLowerCase(base);
+        }
+        int type = Character.getType(c);
+        if (type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK) {
+            // Signos vocálicos y demás marcas de otras escrituras forman parte de la palabra
+            return c;
+        }
+        return DROP;
+    }
+    
+    private static boolean isBracket(int c) {
+        return c == '(' || c == ')' || c == '[' || c == ']' || c == '{' || c == '}';
+    }
+    
+    /**
+     * Marcas de los bloques de diacríticos combinables, las que NFD separa de las letras latinas
+     */
+    private static boolean isDiacritic(int c) {
+        return (c >= 0x0300 && c <= 0x036F)
+            || (c >= 0x1AB0 && c <= 0x1AFF)
+            || (c >= 0x1DC0 && c <= 0x1DFF)
+            || (c >= 0x20D0 && c <= 0x20FF)
+            || (c >= 0xFE20 && c <= 0xFE2F);
+    }
+    
     /**
      * Normaliza un título de canción para comparación
      * @param title título original
@@ -16,12 +96,109 @@ public class TitleNormalizer {
             return "";
         }
         
-        return title.toLowerCase()
-                   .replaceAll("[\\[\\](){}]", "")
-                   .replaceAll("\\s*(official|video|lyrics|audio|hd|4k|music|mv|clip)\\s*", "")
-                   .replaceAll("[^a-z0-9\\s]", "")
-                   .replaceAll("\\s+", " ")
-                   .trim();
+        // Cada carácter produce como mucho dos (mayúscula fuera del plano básico)
+        char[] buffer = BUFFER.get();
+        if (buffer.length < title.length() * 2) {
+            buffer = new char[title.length() * 2];
+            if (buffer.length <= MAX_KEPT_BUFFER) {
+                BUFFER.set(buffer);
+            }
+        }
+        
+        int length = 0;
+        int wordStart = -1;
+        for (int i = 0; i < title.length(); i++) {
+            char c = title.charAt(i);
+            int mapped;
+            if (c < TABLE_SIZE) {
+                mapped = TABLE[c];
+            } else {
+                int codePoint = title.codePointAt(i);
+                if (Character.isSupplementaryCodePoint(codePoint)) {
+                    i++;
+                }
+                mapped = classifyCodePoint(codePoint);
+            }
+            
+            if (mapped == DROP) {
+                continue;
+            }
+            if (mapped == SEPARATOR) {
+                if (wordStart >= 0) {
+                    length = endWord(buffer, wordStart, length);
+                    wordStart = -1;
+                }
+                continue;
+            }
+            if (wordStart < 0) {
+                if (length > 0) {
+                    buffer[length++] = ' ';
+                }
+                wordStart = length;
+            }
+            if (mapped < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                buffer[length++] = (char) mapped;
+            } else {
+                length += Character.toChars(mapped, buffer, length);
+            }
+        }
+        if (wordStart >= 0) {
+            length = endWord(buffer, wordStart, length);
+        }
+        
+        // Un título ya normalizado se devuelve tal cual, sin copiarlo
+        if (isSame(title, buffer, length)) {
+            return title;
+        }
+        return new String(buffer, 0, length);
+    }
+    
+    private static boolean isSame(String title, char[] buffer, int length) {
+        if (length != title.length()) {
+            return false;
+        }
+        for (int i = 0; i < length; i++) {
+            if (title.charAt(i) != buffer[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static int classifyCodePoint(int codePoint) {
+        if (Character.isWhitespace(codePoint) || Character.isSpaceChar(codePoint)) {
+            return SEPARATOR;
+        }
+        if (isDiacritic(codePoint)) {
+            return DROP;
+        }
+        int type = Character.getType(codePoint);
+        if (Character.isLetterOrDigit(codePoint)
+                || type == Character.NON_SPACING_MARK || type == Character.COMBINING_SPACING_MARK) {
+            return Character.toLowerCase(codePoint);
+        }
+        return DROP;
+    }
+    
+    /**
+     * Cierra la palabra que empieza en wordStart y la quita si es de relleno
+     * @return nueva longitud del buffer
+     */
+    private static int endWord(char[] buffer, int wordStart, int length) {
+        if (!isNoiseWord(buffer, wordStart, length)) {
+            return length;
+        }
+        return wordStart > 0 ? wordStart - 1 : 0;
+    }
+    
+    private static boolean isNoiseWord(char[] buffer, int wordStart, int end) {
+        int length = end - wordStart;
+        for (char[] noise : NOISE_WORDS) {
+            if (noise.length == length && Arrays.equals(buffer, wordStart, end, noise, 0, length)) {
+                return true;
+            }
+        }
+        return false;
     }
     
     /**
@@ -45,14 +45,6 @@ public class FileUtils {
         createDirectoryIfNotExists(musicDirectory);
     }
     
-    /**
-     * Obtiene la ruta del archivo de progreso
-     * @return ruta del archivo de progreso
-     */
-    public static String getProgressFile() {
-        return getMusicDirectory() + File.separator + "download_progress.txt";
-    }
-    
     /**
      * Obtiene la ruta del archivo de canciones descargadas
      * @return ruta del archivo de canciones descargadas
@@ -97,7 +89,7 @@ public class FileUtils {
      * Guarda una canción en el archivo de canciones descargadas
      * @param songTitle título de la canción
      */
-    public static void saveDownloadedSong(String songTitle) {
+    public static synchronized void saveDownloadedSong(String songTitle) {
         if (songTitle == null || songTitle.trim().isEmpty()) {
             return;
         }
@@ -127,47 +119,6 @@ public class FileUtils {
         }
     }
     
-    /**
-     * Carga el progreso de descarga desde el archivo
-     * @return número del último video descargado
-     */
-    public static int loadProgress() {
-        File file = new File(getProgressFile());
-        
-        if (file.exists()) {
-            try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-                String line = reader.readLine();
-                if (line != null && !line.trim().isEmpty()) {
-                    int progress = Integer.parseInt(line.trim());
-                    LOGGER.info("Progreso cargado: " + progress);
-                    return progress;
-                }
-            } catch (IOException | NumberFormatException e) {
-                LOGGER.log(Level.WARNING, "Error al cargar progreso", e);
-            }
-        }
-        
-        return 1; // Comenzar desde el primer video
-    }
-    
-    /**
-     * Guarda el progreso de descarga en el archivo
-     * @param videoNumber número del video actual
-     */
-    public static void saveProgress(int videoNumber) {
-        try {
-            createDirectoryIfNotExists(getMusicDirectory());
-            
-            try (FileWriter writer = new FileWriter(getProgressFile())) {
-                writer.write(String.valueOf(videoNumber));
-                writer.flush();
-                LOGGER.fine("Progreso guardado: " + videoNumber);
-            }
-        } catch (IOException e) {
-            LOGGER.log(Level.SEVERE, "Error al guardar progreso", e);
-        }
-    }
-    
     /**
      * Crea un directorio si no existe
      * @param directoryPath ruta del directorio
@@ -0,0 +1,241 @@
+package com.example.interfaz.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Diario de reanudación de una playlist: un bit por elemento completado
+ *
+ * Reemplaza al entero único de download_progress.txt, que no sirve cuando los
+ * elementos terminan en desorden o hay varias playlists. Cada playlist tiene su
+ * archivo (por id de playlist) mapeado en memoria; marcar un elemento solo
+ * modifica un byte de la página, y el sistema operativo lo escribe a disco.
+ *
+ * Formato: cabecera de 8 bytes (MAGIC, capacidad en elementos) y el mapa de bits,
+ * donde el bit i corresponde al índice de playlist i + 1.
+ */
+public class PlaylistJournal implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PlaylistJournal.class);
+
+    private static final int MAGIC = 0x504C4A31; // "PLJ1"
+    private static final int HEADER_SIZE = 8;
+    private static final int MIN_CAPACITY = 256;
+    private static final String JOURNAL_DIR = ".playlist_journal";
+    private static final Pattern LIST_PARAM = Pattern.compile("[?&]list=([A-Za-z0-9_-]+)");
+    private static final Pattern INDEX_PARAM = Pattern.compile("[?&]index=(\\d{1,9})(?:&|$)");
+
+    private final Path file;
+    private final String playlistId;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int capacity;
+
+    private PlaylistJournal(Path file, String playlistId) {
+        this.file = file;
+        this.playlistId = playlistId;
+    }
+
+    /**
+     * Abre (o crea) el diario de una playlist
+     * @param playlistUrl URL de la playlist
+     * @param expectedItems número de elementos conocido de la playlist
+     * @return diario abierto
+     * @throws IOException si no se puede crear o mapear el archivo
+     */
+    public static PlaylistJournal open(String playlistUrl, int expectedItems) throws IOException {
+        String playlistId = extractPlaylistId(playlistUrl);
+        Path directory = Paths.get(FileUtils.getMusicDirectory(), JOURNAL_DIR);
+        Files.createDirectories(directory);
+
+        PlaylistJournal journal = new PlaylistJournal(directory.resolve(playlistId + ".bits"), playlistId);
+        journal.map(expectedItems);
+        return journal;
+    }
+
+    /**
+     * Obtiene el identificador de playlist de una URL (parámetro list=) o, si no
+     * lo tiene, un resumen de la URL completa
+     * @param playlistUrl URL de la playlist
+     * @return identificador apto para nombre de archivo
+     */
+    public static String extractPlaylistId(String playlistUrl) {
+        Matcher matcher = LIST_PARAM.matcher(playlistUrl);
+        if (matcher.find()) {
+            return matcher.group(1);
+        }
+
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(playlistUrl.trim().getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder("url-");
+            for (int i = 0; i < 8; i++) {
+                hex.append(String.format("%02x", digest[i]));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            return "url-" + Integer.toHexString(playlistUrl.trim().hashCode());
+        }
+    }
+
+    /**
+     * Obtiene la posición de una canción dentro de su playlist (parámetro index=)
+     * @param url URL de la canción, como la que genera PlaylistEntry.getUrl(playlistId)
+     * @return índice (base 1), o -1 si la URL no indica playlist y posición
+     */
+    public static int extractIndex(String url) {
+        if (url == null || !LIST_PARAM.matcher(url).find()) {
+            return -1;
+        }
+        Matcher matcher = INDEX_PARAM.matcher(url);
+        return matcher.find() ? Integer.parseInt(matcher.group(1)) : -1;
+    }
+
+    /**
+     * Mapea el archivo con capacidad para al menos los elementos indicados,
+     * conservando los bits existentes
+     */
+    private synchronized void map(int requiredItems) throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        int storedCapacity = 0;
+        if (channel.size() >= HEADER_SIZE) {
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_ONLY, 0, HEADER_SIZE);
+            if (header.getInt(0) == MAGIC) {
+                storedCapacity = header.getInt(4);
+            } else {
+                LOGGER.warn("Diario de playlist no válido, se reinicia: {}", file);
+            }
+        }
+
+        int newCapacity = Math.max(storedCapacity, Math.max(MIN_CAPACITY, requiredItems));
+        if (newCapacity > storedCapacity) {
+            // Redondear a múltiplos de 8 elementos y dejar margen para playlists que crecen
+            newCapacity = ((newCapacity + newCapacity / 4) + 7) & ~7;
+        }
+
+        long size = HEADER_SIZE + (newCapacity + 7) / 8;
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        if (storedCapacity == 0) {
+            for (int i = HEADER_SIZE; i < size; i++) {
+                buffer.put(i, (byte) 0);
+            }
+        }
+        buffer.putInt(0, MAGIC);
+        buffer.putInt(4, newCapacity);
+        capacity = newCapacity;
+    }
+
+    /**
+     * Marca un elemento como completado
+     * @param index índice (base 1) del elemento en la playlist
+     */
+    public synchronized void markCompleted(int index) {
+        if (index <= 0) {
+            return;
+        }
+        try {
+            if (index > capacity) {
+                map(index);
+            }
+            int bit = index - 1;
+            int position = HEADER_SIZE + bit / 8;
+            buffer.put(position, (byte) (buffer.get(position) | (1 << (bit % 8))));
+        } catch (IOException e) {
+            LOGGER.warn("No se pudo ampliar el diario {}: {}", file, e.getMessage());
+        }
+    }
+
+    /**
+     * Verifica si un elemento está completado
+     * @param index índice (base 1) del elemento en la playlist
+     * @return true si el elemento se descargó
+     */
+    public synchronized boolean isCompleted(int index) {
+        if (index <= 0 || index > capacity) {
+            return false;
+        }
+        int bit = index - 1;
+        return (buffer.get(HEADER_SIZE + bit / 8) & (1 << (bit % 8))) != 0;
+    }
+
+    /**
+     * Obtiene los índices de 1 a totalItems que aún no se completaron
+     * @param totalItems número de elementos de la playlist
+     * @return índices pendientes en orden
+     */
+    public synchronized List<Integer> missingIndices(int totalItems) {
+        List<Integer> missing = new ArrayList<>();
+        for (int index = 1; index <= totalItems; index++) {
+            if (!isCompleted(index)) {
+                missing.add(index);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Cuenta los elementos completados
+     * @return número de bits activos
+     */
+    public synchronized int completedCount() {
+        int count = 0;
+        for (int i = HEADER_SIZE; i < buffer.limit(); i++) {
+            count += Integer.bitCount(buffer.get(i) & 0xFF);
+        }
+        return count;
+    }
+
+    /**
+     * Borra todas las marcas, para descargar la playlist desde cero
+     */
+    public synchronized void reset() {
+        for (int i = HEADER_SIZE; i < buffer.limit(); i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    /**
+     * Fuerza la escritura del mapa de bits a disco
+     */
+    public synchronized void flush() {
+        if (buffer != null) {
+            buffer.force();
+        }
+    }
+
+    public String getPlaylistId() {
+        return playlistId;
+    }
+
+    public File getFile() {
+        return file.toFile();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        flush();
+        if (channel != null) {
+            channel.close();
+            channel = null;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.interfaz.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Utilidad para suspender y reanudar un árbol de procesos con señales POSIX
+ * Envía SIGSTOP/SIGCONT al proceso y a todos sus descendientes (yt-dlp y ffmpeg)
+ */
+public class ProcessTreeSignals {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProcessTreeSignals.class);
+
+    private static final long KILL_TIMEOUT_SECONDS = 5;
+    private static final boolean SUPPORTED = !System.getProperty("os.name", "").toLowerCase().contains("win");
+
+    // Constructor privado para clase de utilidades
+    private ProcessTreeSignals() {
+        throw new UnsupportedOperationException("Esta es una clase de utilidades");
+    }
+
+    /**
+     * Verifica si el sistema operativo permite suspender procesos con señales
+     * @return true en Linux/macOS, false en Windows
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    /**
+     * Suspende el proceso y todos sus descendientes (SIGSTOP).
+     * El padre se detiene primero para que no lance hijos nuevos mientras tanto.
+     * @param root proceso raíz del árbol
+     * @return true si la señal se envió correctamente
+     */
+    public static boolean suspendTree(ProcessHandle root) {
+        List<Long> pids = new ArrayList<>();
+        pids.add(root.pid());
+        root.descendants().forEach(handle -> pids.add(handle.pid()));
+        return signal("-STOP", pids);
+    }
+
+    /**
+     * Reanuda el proceso y todos sus descendientes (SIGCONT).
+     * Los hijos se reanudan antes que el padre.
+     * @param root proceso raíz del árbol
+     * @return true si la señal se envió correctamente
+     */
+    public static boolean resumeTree(ProcessHandle root) {
+        List<Long> pids = new ArrayList<>();
+        root.descendants().forEach(handle -> pids.add(handle.pid()));
+        pids.add(root.pid());
+        return signal("-CONT", pids);
+    }
+
+    /**
+     * Envía una señal a una lista de procesos con una sola invocación de kill
+     * @param signal señal en formato de kill (ej. -STOP)
+     * @param pids identificadores de proceso
+     * @return true si kill terminó con código 0
+     */
+    private static boolean signal(String signal, List<Long> pids) {
+        if (!SUPPORTED || pids.isEmpty()) {
+            return false;
+        }
+
+        List<String> command = new ArrayList<>(pids.size() + 2);
+        command.add("kill");
+        command.add(signal);
+        pids.forEach(pid -> command.add(String.valueOf(pid)));
+
+        try {
+            Process kill = new ProcessBuilder(command).redirectErrorStream(true).start();
+            if (!kill.waitFor(KILL_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                kill.destroyForcibly();
+                LOGGER.warn("kill {} no respondió a tiempo para {}", signal, pids);
+                return false;
+            }
+            boolean success = kill.exitValue() == 0;
+            if (!success) {
+                LOGGER.warn("kill {} terminó con código {} para {}", signal, kill.exitValue(), pids);
+            }
+            return success;
+        } catch (IOException e) {
+            LOGGER.warn("No se pudo enviar {} a {}: {}", signal, pids, e.getMessage());
+            return false;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -19,6 +19,7 @@ public class ProgressParser {
     private static final Pattern SPEED_PATTERN = Pattern.compile("at\\s+([\\d.]+(?:[KMGT]?i?B/s|B/s))");
     private static final Pattern ETA_PATTERN = Pattern.compile("ETA\\s+([\\d:]+|\\d+s?)");
     private static final Pattern SIZE_PATTERN = Pattern.compile("of\\s+([\\d.]+(?:[KMGT]?i?B))");
+    private static final Pattern SPEED_VALUE_PATTERN = Pattern.compile("([\\d.]+)([KMGT]?)(i?)B/s");
     
     /**
      * Información parseada de un mensaje de progreso
@@ -104,6 +105,31 @@ public class ProgressParser {
         return null;
     }
     
+    /**
+     * Convierte una velocidad de yt-dlp (ej. "1.50MiB/s") a bytes por segundo
+     * @param speed velocidad en el formato de yt-dlp
+     * @return bytes por segundo, o -1 si no se puede interpretar
+     */
+    public static long speedToBytesPerSecond(String speed) {
+        if (speed == null) return -1;
+        
+        Matcher matcher = SPEED_VALUE_PATTERN.matcher(speed);
+        if (!matcher.find()) {
+            return -1;
+        }
+        
+        try {
+            double value = Double.parseDouble(matcher.group(1));
+            String prefix = matcher.group(2);
+            int exponent = prefix.isEmpty() ? 0 : "KMGT".indexOf(prefix) + 1;
+            double base = matcher.group(3).isEmpty() ? 1000.0 : 1024.0;
+            return (long) (value * Math.pow(base, exponent));
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Error parseando velocidad: {}", speed, e);
+            return -1;
+        }
+    }
+    
     /**
      * Extrae el ETA (tiempo estimado) de un mensaje
      */
@@ -0,0 +1,156 @@
+package com.example.interfaz.util;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Calcula una clave canónica para URLs de descarga
+ *
+ * Las distintas formas de una misma canción de YouTube (youtu.be/ID,
+ * watch?v=ID&list=..., shorts/ID, music.youtube.com, parámetros de rastreo)
+ * comparten la clave "yt:ID"; una playlist sin vídeo concreto es "ytpl:LIST".
+ * Para otras URLs se normaliza el host, se quitan los parámetros de rastreo y
+ * se ordenan los demás.
+ */
+public final class UrlCanonicalizer {
+
+    private static final Pattern VIDEO_ID = Pattern.compile("[A-Za-z0-9_-]{11}");
+    private static final Set<String> TRACKING_PARAMS = Set.of(
+        "si", "feature", "pp", "fbclid", "gclid", "igshid");
+
+    private UrlCanonicalizer() {
+    }
+
+    /**
+     * Obtiene la clave canónica de una URL
+     * @param url URL tal como la ingresó el usuario
+     * @return clave canónica; si la URL no se puede interpretar, la URL recortada
+     */
+    public static String canonicalKey(String url) {
+        if (url == null) {
+            return "";
+        }
+        String trimmed = url.trim();
+        URI uri;
+        try {
+            uri = URI.create(trimmed.contains("://") ? trimmed : "https://" + trimmed);
+        } catch (IllegalArgumentException e) {
+            return trimmed;
+        }
+
+        String host = uri.getHost();
+        if (host == null) {
+            return trimmed;
+        }
+        host = stripHostPrefix(host.toLowerCase(Locale.ROOT));
+        String path = uri.getRawPath() == null ? "" : uri.getRawPath();
+        String query = uri.getRawQuery();
+
+        String youtube = youtubeKey(host, path, query);
+        if (youtube != null) {
+            return youtube;
+        }
+
+        if (path.endsWith("/") && path.length() > 1) {
+            path = path.substring(0, path.length() - 1);
+        }
+        String filtered = filterQuery(query);
+        return "url:" + host + path + (filtered.isEmpty() ? "" : "?" + filtered);
+    }
+
+    /**
+     * Indica si una URL es una playlist sin vídeo concreto (clave "ytpl:")
+     * @param url URL a comprobar
+     * @return true si es una playlist
+     */
+    public static boolean isPlaylist(String url) {
+        return canonicalKey(url).startsWith("ytpl:");
+    }
+
+    private static String stripHostPrefix(String host) {
+        for (String prefix : new String[] {"www.", "m.", "music."}) {
+            if (host.startsWith(prefix)) {
+                return host.substring(prefix.length());
+            }
+        }
+        return host;
+    }
+
+    private static String youtubeKey(String host, String path, String query) {
+        if (host.equals("youtu.be")) {
+            String id = firstSegment(path);
+            return isVideoId(id) ? "yt:" + id : null;
+        }
+        if (!host.equals("youtube.com") && !host.equals("youtube-nocookie.com")) {
+            return null;
+        }
+
+        String video = queryParam(query, "v");
+        if (isVideoId(video)) {
+            return "yt:" + video;
+        }
+        for (String prefix : new String[] {"/shorts/", "/embed/", "/live/", "/v/"}) {
+            if (path.startsWith(prefix)) {
+                String id = firstSegment(path.substring(prefix.length() - 1));
+                if (isVideoId(id)) {
+                    return "yt:" + id;
+                }
+            }
+        }
+        String list = queryParam(query, "list");
+        if (list != null && !list.isEmpty()) {
+            return "ytpl:" + list;
+        }
+        return null;
+    }
+
+    private static String firstSegment(String path) {
+        String rest = path.startsWith("/") ? path.substring(1) : path;
+        int slash = rest.indexOf('/');
+        return slash >= 0 ? rest.substring(0, slash) : rest;
+    }
+
+    private static boolean isVideoId(String candidate) {
+        return candidate != null && VIDEO_ID.matcher(candidate).matches();
+    }
+
+    private static String queryParam(String query, String name) {
+        if (query == null) {
+            return null;
+        }
+        for (String pair : query.split("&")) {
+            int equals = pair.indexOf('=');
+            String key = equals >= 0 ? pair.substring(0, equals) : pair;
+            if (key.equals(name)) {
+                return equals >= 0 ? pair.substring(equals + 1) : "";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Quita los parámetros de rastreo y ordena el resto
+     */
+    private static String filterQuery(String query) {
+        if (query == null || query.isEmpty()) {
+            return "";
+        }
+        List<String> kept = new ArrayList<>();
+        for (String pair : query.split("&")) {
+            if (pair.isEmpty()) {
+                continue;
+            }
+            int equals = pair.indexOf('=');
+            String key = (equals >= 0 ? pair.substring(0, equals) : pair).toLowerCase(Locale.ROOT);
+            if (!key.startsWith("utm_") && !TRACKING_PARAMS.contains(key)) {
+                kept.add(pair);
+            }
+        }
+        kept.sort(null);
+        return String.join("&", kept);
+    }
+}
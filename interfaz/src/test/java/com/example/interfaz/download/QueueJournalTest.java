@@ -0,0 +1,101 @@
+package com.example.interfaz.download;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class QueueJournalTest {
+
+    private static final QueueSource PLAYLIST = QueueSource.bulk("ytpl:PL1", 2);
+
+    @TempDir
+    Path directory;
+
+    private static String song(int n) {
+        return String.format("https://www.youtube.com/watch?v=song%07d", n);
+    }
+
+    private List<String> recover(List<QueueSource> sources, List<String> failed) throws IOException {
+        List<String> pending = new ArrayList<>();
+        try (QueueJournal journal = new QueueJournal(directory, 100)) {
+            QueueJournal.Recovery recovery = journal.recover((url, source) -> {
+                pending.add(url);
+                sources.add(source);
+            });
+            failed.addAll(recovery.getFailed());
+            assertEquals(pending.size(), recovery.getPending());
+        }
+        return pending;
+    }
+
+    @Test
+    void recoversPendingClaimedAndFailed() throws IOException {
+        try (QueueJournal journal = new QueueJournal(directory, 100)) {
+            journal.recover((url, source) -> { });
+            journal.appendAll(QueueJournal.ADD, List.of(song(1), song(2), song(3), song(4), song(5)), PLAYLIST);
+            journal.append(QueueJournal.ADD, song(6), QueueSource.INTERACTIVE);
+            journal.append(QueueJournal.CLAIM, song(1));
+            journal.append(QueueJournal.CLAIM, song(2));
+            journal.append(QueueJournal.DONE, song(2));
+            journal.append(QueueJournal.CLAIM, song(3));
+            journal.append(QueueJournal.FAIL, song(3));
+            journal.append(QueueJournal.REMOVE, song(4));
+        }
+
+        List<QueueSource> sources = new ArrayList<>();
+        List<String> failed = new ArrayList<>();
+        List<String> pending = recover(sources, failed);
+
+        // La reclamada sin terminar vuelve al frente; el resto en orden de alta
+        assertEquals(List.of(song(1), song(5), song(6)), pending);
+        assertEquals(List.of(PLAYLIST, PLAYLIST, QueueSource.INTERACTIVE), sources);
+        assertEquals(List.of(song(3)), failed);
+    }
+
+    @Test
+    void readdAfterFailureIsPendingAgain() throws IOException {
+        try (QueueJournal journal = new QueueJournal(directory, 100)) {
+            journal.recover((url, source) -> { });
+            journal.append(QueueJournal.ADD, song(1), PLAYLIST);
+            journal.append(QueueJournal.CLAIM, song(1));
+            journal.append(QueueJournal.FAIL, song(1));
+            journal.append(QueueJournal.ADD, song(1), PLAYLIST);
+        }
+
+        List<String> failed = new ArrayList<>();
+        assertEquals(List.of(song(1)), recover(new ArrayList<>(), failed));
+        assertEquals(List.of(), failed);
+    }
+
+    @Test
+    void returnedUrlsComeFirstMostRecentFirst() throws IOException {
+        try (QueueJournal journal = new QueueJournal(directory, 100)) {
+            journal.recover((url, source) -> { });
+            journal.appendAll(QueueJournal.ADD, List.of(song(1), song(2), song(3)), PLAYLIST);
+            journal.append(QueueJournal.CLAIM, song(1));
+            journal.append(QueueJournal.CLAIM, song(2));
+            journal.append(QueueJournal.RETURN, song(1), PLAYLIST);
+            journal.append(QueueJournal.RETURN, song(2), PLAYLIST);
+        }
+
+        assertEquals(List.of(song(2), song(1), song(3)), recover(new ArrayList<>(), new ArrayList<>()));
+    }
+
+    @Test
+    void clearDropsEverythingBefore() throws IOException {
+        try (QueueJournal journal = new QueueJournal(directory, 100)) {
+            journal.recover((url, source) -> { });
+            journal.appendAll(QueueJournal.ADD, List.of(song(1), song(2)), PLAYLIST);
+            journal.append(QueueJournal.CLEAR, "");
+            journal.append(QueueJournal.ADD, song(3), PLAYLIST);
+        }
+
+        assertEquals(List.of(song(3)), recover(new ArrayList<>(), new ArrayList<>()));
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.interfaz.download;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RetryPolicyTest {
+
+    private static final String URL = "https://youtu.be/dQw4w9WgXcQ";
+
+    @Test
+    void delaysGrowExponentiallyWithJitterUntilExhausted() {
+        RetryPolicy policy = new RetryPolicy(3, 1000);
+
+        long first = policy.onFailure(URL);
+        assertTrue(first >= 500 && first <= 1000, "primer reintento: " + first);
+        long second = policy.onFailure(URL);
+        assertTrue(second >= 1000 && second <= 2000, "segundo reintento: " + second);
+        long third = policy.onFailure(URL);
+        assertTrue(third >= 2000 && third <= 4000, "tercer reintento: " + third);
+        assertEquals(3, policy.getFailureCount(URL));
+
+        assertEquals(-1, policy.onFailure(URL));
+        assertEquals(0, policy.getFailureCount(URL));
+    }
+
+    @Test
+    void delayIsCappedAtFiveMinutes() {
+        RetryPolicy policy = new RetryPolicy(40, 60_000);
+        long delay = 0;
+        for (int i = 0; i < 30; i++) {
+            delay = policy.onFailure(URL);
+        }
+        assertTrue(delay >= 150_000 && delay <= 300_000, "retardo: " + delay);
+    }
+
+    @Test
+    void resetForgetsFailures() {
+        RetryPolicy policy = new RetryPolicy(1, 10);
+        policy.onFailure(URL);
+        policy.reset(URL);
+        assertEquals(0, policy.getFailureCount(URL));
+        assertTrue(policy.onFailure(URL) >= 0);
+    }
+
+    @Test
+    void noneNeverRetries() {
+        assertEquals(-1, RetryPolicy.none().onFailure(URL));
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.interfaz.download;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class SpillingQueueTest {
+
+    @TempDir
+    Path directory;
+
+    private static String song(String prefix, int n) {
+        return String.format("https://www.youtube.com/watch?v=%s%08d", prefix, n);
+    }
+
+    private static List<String> drain(SpillingQueue queue) {
+        List<String> order = new ArrayList<>();
+        String url;
+        while ((url = queue.claim()) != null) {
+            order.add(url);
+            queue.complete(url);
+        }
+        return order;
+    }
+
+    @Test
+    void interactiveGoesBeforeBulk() {
+        SpillingQueue queue = SpillingQueue.inMemory();
+        queue.offerAll(List.of(song("pla", 1), song("pla", 2)), QueueSource.bulk("ytpl:A", 1));
+        queue.offer(song("int", 1), QueueSource.INTERACTIVE);
+
+        assertEquals(List.of(song("int", 1), song("pla", 1), song("pla", 2)), drain(queue));
+    }
+
+    @Test
+    void bulkSourcesAreWeightedRoundRobin() {
+        SpillingQueue queue = SpillingQueue.inMemory();
+        List<String> heavy = new ArrayList<>();
+        List<String> light = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            heavy.add(song("hvy", i));
+            light.add(song("lgt", i));
+        }
+        queue.offerAll(heavy, QueueSource.bulk("ytpl:H", 2));
+        queue.offerAll(light, QueueSource.bulk("ytpl:L", 1));
+
+        List<String> order = drain(queue);
+        // Las primeras nueve: dos de la fuente de peso 2 por cada una de la de peso 1
+        long heavyFirst = order.subList(0, 9).stream().filter(url -> url.contains("hvy")).count();
+        assertEquals(6, heavyFirst);
+        assertEquals(heavy, order.stream().filter(url -> url.contains("hvy")).toList());
+        assertEquals(light, order.stream().filter(url -> url.contains("lgt")).toList());
+    }
+
+    @Test
+    void expandedPlaylistsTakeTurns() {
+        SpillingQueue queue = SpillingQueue.inMemory();
+        String first = "https://www.youtube.com/playlist?list=PLfirst";
+        String second = "https://www.youtube.com/playlist?list=PLsecond";
+        queue.offer(first, QueueSource.forUrl(first));
+        queue.offer(second, QueueSource.forUrl(second));
+
+        // Como el planificador: cada playlist reclamada se expande en su propia fuente
+        List<String> songs = new ArrayList<>();
+        String url;
+        while ((url = queue.claim()) != null) {
+            if (url.contains("list=")) {
+                String prefix = url.equals(first) ? "one" : "two";
+                List<String> entries = new ArrayList<>();
+                for (int i = 0; i < 4; i++) {
+                    entries.add(song(prefix, i));
+                }
+                queue.offerAll(entries, queue.claimedSource(url));
+            } else {
+                songs.add(url);
+            }
+            queue.complete(url);
+        }
+
+        assertEquals(8, songs.size());
+        // Una vez expandidas las dos, ninguna acapara la cola
+        for (int i = 2; i < songs.size() - 2; i++) {
+            assertNotEquals(songs.get(i).contains("one"), songs.get(i + 1).contains("one"), songs.toString());
+        }
+    }
+
+    @Test
+    void shortestFirstWithinSource() {
+        SpillingQueue queue = SpillingQueue.inMemory();
+        queue.setOrder(SpillingQueue.Order.SHORTEST_FIRST, 0, 240);
+        queue.offerAll(List.of(song("sjf", 1), song("sjf", 2), song("sjf", 3)), QueueSource.bulk("ytpl:S", 1));
+        queue.setDuration(song("sjf", 1), 600);
+        queue.setDuration(song("sjf", 2), 60);
+
+        assertEquals(List.of(song("sjf", 2), song("sjf", 3), song("sjf", 1)), drain(queue));
+    }
+
+    @Test
+    void returnedUrlGoesBackToTheFront() {
+        SpillingQueue queue = SpillingQueue.inMemory();
+        queue.offerAll(List.of(song("ret", 1), song("ret", 2)), QueueSource.bulk("ytpl:R", 1));
+        String first = queue.claim();
+        assertTrue(queue.returnFirst(first));
+        assertEquals(first, queue.claim());
+    }
+
+    @Test
+    void duplicatesAreDetectedByCanonicalKey() {
+        SpillingQueue queue = SpillingQueue.inMemory();
+        assertEquals(SpillingQueue.Placement.WINDOW,
+                     queue.offer("https://youtu.be/dQw4w9WgXcQ", QueueSource.INTERACTIVE));
+        assertEquals(SpillingQueue.Placement.DUPLICATE,
+                     queue.offer("https://www.youtube.com/watch?v=dQw4w9WgXcQ&si=x", QueueSource.INTERACTIVE));
+        assertEquals(1, queue.size());
+    }
+
+    @Test
+    void claimedUrlStaysAMemberUntilFinished() {
+        SpillingQueue queue = SpillingQueue.inMemory();
+        String url = "https://www.youtube.com/watch?v=dQw4w9WgXcQ";
+        queue.offer(url, QueueSource.INTERACTIVE);
+        assertEquals(url, queue.claim());
+
+        // En descarga: ni una variante de la misma canción vuelve a entrar
+        assertTrue(queue.contains(url));
+        assertEquals(SpillingQueue.Placement.DUPLICATE, queue.offer("https://youtu.be/dQw4w9WgXcQ", QueueSource.INTERACTIVE));
+        assertNull(queue.claim());
+
+        queue.complete(url);
+        assertFalse(queue.contains(url));
+        assertEquals(SpillingQueue.Placement.WINDOW, queue.offer(url, QueueSource.INTERACTIVE));
+    }
+
+    @Test
+    void spilledUrlsKeepTheirOrderAcrossReopen() throws IOException {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            urls.add(song("spl", i));
+        }
+        SpillingQueue queue = SpillingQueue.open(directory, 16, 10000);
+        queue.offerAll(urls, QueueSource.bulk("ytpl:P", 1));
+        assertTrue(queue.getSpilledCount() > 0);
+        String claimed = queue.claim();
+        assertEquals(urls.get(0), claimed);
+
+        // Sin completar la reclamada: al reabrir vuelve al frente
+        SpillingQueue reopened = SpillingQueue.open(directory, 16, 10000);
+        assertEquals(urls, drain(reopened));
+        assertNull(reopened.claim());
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.interfaz.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BandwidthBudgetTest {
+
+    private static final long KB = 1000;
+
+    @Test
+    void sharesNeverAddUpToMoreThanTheLimit() {
+        assertEquals(0, BandwidthBudget.shareFor(0, 4));
+        assertEquals(100 * KB, BandwidthBudget.shareFor(100 * KB, 1));
+        for (int sessions = 1; sessions <= 64; sessions++) {
+            long limit = 20 * KB;
+            assertTrue(BandwidthBudget.shareFor(limit, sessions) * sessions <= limit, "sesiones: " + sessions);
+        }
+    }
+
+    @Test
+    void slackLimitIsKeptWhileTheSessionStaysUnderTheShare() {
+        // Cuota de 100 a 50: la sesión va a 40, no hace falta relanzarla
+        assertFalse(BandwidthBudget.needsRelaunch(100 * KB, 40 * KB, 50 * KB));
+        // Sin límite y por debajo de la cuota nueva
+        assertFalse(BandwidthBudget.needsRelaunch(0, 40 * KB, 50 * KB));
+    }
+
+    @Test
+    void sessionClearlyAboveTheShareIsRelaunched() {
+        assertTrue(BandwidthBudget.needsRelaunch(100 * KB, 95 * KB, 50 * KB));
+        assertTrue(BandwidthBudget.needsRelaunch(0, 500 * KB, 50 * KB));
+        // Dentro del margen no se toca
+        assertFalse(BandwidthBudget.needsRelaunch(100 * KB, 60 * KB, 50 * KB));
+    }
+
+    @Test
+    void throttledSessionGrowsOnlyWithARealMargin() {
+        // Frenada por su límite de 50 y la cuota sube a 100
+        assertTrue(BandwidthBudget.needsRelaunch(50 * KB, 49 * KB, 100 * KB));
+        // La cuota sube poco
+        assertFalse(BandwidthBudget.needsRelaunch(50 * KB, 49 * KB, 55 * KB));
+        // La cuota sube pero la sesión no aprovecha su límite
+        assertFalse(BandwidthBudget.needsRelaunch(50 * KB, 10 * KB, 100 * KB));
+        // Se quita el límite
+        assertTrue(BandwidthBudget.needsRelaunch(50 * KB, 49 * KB, 0));
+        assertFalse(BandwidthBudget.needsRelaunch(0, 49 * KB, 0));
+    }
+}
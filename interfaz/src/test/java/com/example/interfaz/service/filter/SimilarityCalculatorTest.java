@@ -0,0 +1,101 @@
+package com.example.interfaz.service.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class SimilarityCalculatorTest {
+
+    private static final String ALPHABET = "abcde fgh";
+    private static final String[] WORDS = {
+        "amor", "noche", "luna", "corazon", "baila", "remix", "live", "feat", "la", "de", "mi", "amorcito"
+    };
+
+    /** Levenshtein de referencia con la matriz completa */
+    private static int reference(String s1, String s2) {
+        int[][] d = new int[s1.length() + 1][s2.length() + 1];
+        for (int i = 0; i <= s1.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= s2.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= s1.length(); i++) {
+            for (int j = 1; j <= s2.length(); j++) {
+                int cost = s1.charAt(i - 1) == s2.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+            }
+        }
+        return d[s1.length()][s2.length()];
+    }
+
+    private static String randomString(Random random, int length, String alphabet) {
+        StringBuilder builder = new StringBuilder(length);
+        for (int i = 0; i < length; i++) {
+            builder.append(alphabet.charAt(random.nextInt(alphabet.length())));
+        }
+        return builder.toString();
+    }
+
+    private static String randomTitle(Random random) {
+        int words = 1 + random.nextInt(6);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            builder.append(WORDS[random.nextInt(WORDS.length)]);
+        }
+        return builder.toString();
+    }
+
+    @Test
+    void levenshteinMatchesReferenceOnBothPaths() {
+        Random random = new Random(42);
+        for (int n = 0; n < 2000; n++) {
+            // Hasta 64 caracteres usa vectores de bits; por encima, dos filas
+            String s1 = randomString(random, random.nextInt(140), ALPHABET);
+            String s2 = randomString(random, random.nextInt(140), ALPHABET);
+            assertEquals(reference(s1, s2), SimilarityCalculator.levenshteinDistance(s1, s2), s1 + " / " + s2);
+        }
+    }
+
+    @Test
+    void levenshteinAtTheBitVectorBoundary() {
+        String a64 = "a".repeat(64);
+        String a65 = "a".repeat(65);
+        assertEquals(1, SimilarityCalculator.levenshteinDistance(a64, a65));
+        assertEquals(64, SimilarityCalculator.levenshteinDistance(a64, "b".repeat(64)));
+        assertEquals(3, SimilarityCalculator.levenshteinDistance("", "abc"));
+        assertEquals(reference("ñandú ü", "nandu u"), SimilarityCalculator.levenshteinDistance("ñandú ü", "nandu u"));
+    }
+
+    @Test
+    void cascadeAgreesWithFullFormula() {
+        Random random = new Random(7);
+        double[] thresholds = {0.0, 0.3, 0.5, 0.64, 0.7, 0.85, 1.0};
+        for (int n = 0; n < 3000; n++) {
+            String t1 = randomTitle(random);
+            String t2 = random.nextInt(4) == 0 ? t1 + " " + randomTitle(random) : randomTitle(random);
+            double full = SimilarityCalculator.calculateCombinedSimilarity(t1, t2);
+            TitleIndex.Entry e1 = TitleIndex.prepare(t1);
+            TitleIndex.Entry e2 = TitleIndex.prepare(t2);
+            assertEquals(full, SimilarityCalculator.calculateCombinedSimilarity(e1, e2), 0.0);
+            for (double threshold : thresholds) {
+                assertEquals(full >= threshold, SimilarityCalculator.isAboveThreshold(t1, t2, threshold),
+                             t1 + " / " + t2 + " @ " + threshold);
+                assertEquals(full >= threshold, SimilarityCalculator.isAboveThreshold(e1, e2, threshold),
+                             t1 + " / " + t2 + " @ " + threshold);
+            }
+        }
+    }
+
+    @Test
+    void emptyTitlesAreNeverSimilar() {
+        assertEquals(0.0, SimilarityCalculator.calculateCombinedSimilarity("", ""), 0.0);
+        assertEquals(1.0, SimilarityCalculator.calculateCombinedSimilarity("amor", "amor"), 0.0);
+        assertEquals(false, SimilarityCalculator.isAboveThreshold("", "", 0.7));
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.interfaz.service.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TitleIndexTest {
+
+    // Las primeras palabras salen mucho más a menudo que las últimas
+    private static final String[] WORDS = {
+        "de", "la", "amor", "mi", "noche", "luna", "corazon", "baila", "amorcito", "sol",
+        "mar", "cielo", "fuego", "lluvia", "camino", "ojos", "tiempo", "verano", "ciudad", "sueño"
+    };
+    private static final double[] THRESHOLDS = {0.65, 0.7, 0.75, 0.8, 0.9, 0.95};
+
+    private static String randomTitle(Random random) {
+        int words = 1 + random.nextInt(6);
+        StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                builder.append(' ');
+            }
+            // Distribución sesgada hacia el principio de la lista
+            int index = (int) (WORDS.length * Math.pow(random.nextDouble(), 2.5));
+            builder.append(WORDS[index]);
+        }
+        return builder.toString();
+    }
+
+    @Test
+    void prefixFilterKeepsEveryTitleAboveThreshold() {
+        Random random = new Random(22);
+        TitleIndex index = new TitleIndex();
+        for (int i = 0; i < 1500; i++) {
+            index.add(randomTitle(random) + " " + i % 7);
+        }
+
+        for (int q = 0; q < 150; q++) {
+            TitleIndex.Entry query = TitleIndex.prepare(randomTitle(random));
+            for (double threshold : THRESHOLDS) {
+                Set<TitleIndex.Entry> candidates = new HashSet<>(index.candidates(query, threshold));
+                for (TitleIndex.Entry entry : index.entries()) {
+                    if (SimilarityCalculator.calculateCombinedSimilarity(query, entry) >= threshold) {
+                        assertTrue(candidates.contains(entry),
+                                   query.getNormalized() + " / " + entry.getNormalized() + " @ " + threshold);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    void frequentShortWordsAreNotProbedAtHighThresholds() {
+        TitleIndex index = new TitleIndex();
+        for (int i = 0; i < 200; i++) {
+            index.add("de cancion" + i);
+        }
+        index.add("luna de noche");
+        TitleIndex.Entry query = TitleIndex.prepare("luna de noche");
+
+        // Sin umbral se recorre "de", que está en toda la biblioteca
+        assertEquals(201, index.candidates(query).size());
+        List<TitleIndex.Entry> filtered = index.candidates(query, 0.8);
+        assertEquals(1, filtered.size());
+        assertEquals("luna de noche", filtered.get(0).getTitle());
+    }
+
+    @Test
+    void identicalTitleIsAlwaysACandidate() {
+        TitleIndex index = new TitleIndex();
+        index.add("mi la");
+        index.add("mi sol");
+        // Solo palabras cortas: al menos una tiene que recorrerse
+        assertTrue(index.candidates(TitleIndex.prepare("mi la"), 0.99).stream()
+                        .anyMatch(entry -> entry.getTitle().equals("mi la")));
+    }
+
+    @Test
+    void unprobedBoundNeverBelowUnrelatedBound() {
+        assertEquals(TitleIndex.UNRELATED_SIMILARITY_BOUND, TitleIndex.unprobedBound(0, 4, 0), 1e-9);
+        assertEquals(1.0, TitleIndex.unprobedBound(3, 3, 0), 1e-9);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.interfaz.service.filter;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.Set;
+import java.util.StringJoiner;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TitleNormalizerTest {
+
+    private static final String PUNCTUATION = "!?.,'\"-_:;&/|#*+=~`@$%^<>\t\n";
+    private static final Set<String> NOISE = Set.of(
+        "official", "oficial", "video", "lyrics", "letra", "audio", "hd", "4k", "music", "mv", "clip");
+
+    /** Normalizador anterior, con expresiones regulares */
+    private static String regexNormalize(String title) {
+        return title.toLowerCase()
+                    .replaceAll("[\\[\\](){}]", "")
+                    .replaceAll("\\s*(official|video|lyrics|audio|hd|4k|music|mv|clip)\\s*", "")
+                    .replaceAll("[^a-z0-9\\s]", "")
+                    .replaceAll("\\s+", " ")
+                    .trim();
+    }
+
+    /** El anterior con los dos cambios buscados: relleno como palabra completa y paréntesis como separador */
+    private static String wholeWordNormalize(String title) {
+        String cleaned = title.toLowerCase()
+                              .replaceAll("[\\[\\](){}]", " ")
+                              .replaceAll("[^a-z0-9\\s]", "");
+        StringJoiner joiner = new StringJoiner(" ");
+        for (String word : cleaned.trim().split("\\s+")) {
+            if (!word.isEmpty() && !NOISE.contains(word)) {
+                joiner.add(word);
+            }
+        }
+        return joiner.toString();
+    }
+
+    private static String randomAsciiTitle(Random random, String extra) {
+        StringBuilder builder = new StringBuilder();
+        int length = random.nextInt(60);
+        for (int i = 0; i < length; i++) {
+            int pick = random.nextInt(20);
+            if (pick < 11) {
+                builder.append((char) ((random.nextBoolean() ? 'a' : 'A') + random.nextInt(26)));
+            } else if (pick < 15) {
+                builder.append(' ');
+            } else if (pick < 17) {
+                builder.append(PUNCTUATION.charAt(random.nextInt(PUNCTUATION.length())));
+            } else if (pick < 19) {
+                builder.append((char) ('0' + random.nextInt(10)));
+            } else if (!extra.isEmpty()) {
+                builder.append(extra.charAt(random.nextInt(extra.length())));
+            }
+        }
+        return builder.toString();
+    }
+
+    private static boolean touchesIntendedChanges(String title) {
+        // La puntuación se descarta antes de buscar relleno: "4#k" también es "4k"
+        String lower = title.toLowerCase().replaceAll("[^a-z0-9\\s\\[\\](){}]", "");
+        for (String noise : NOISE) {
+            if (lower.contains(noise)) {
+                return true;
+            }
+        }
+        return lower.matches("(?s).*[\\[\\](){}].*");
+    }
+
+    @Test
+    void asciiMatchesRegexNormalizer() {
+        Random random = new Random(25);
+        int compared = 0;
+        for (int i = 0; i < 20000; i++) {
+            String title = randomAsciiTitle(random, "");
+            if (touchesIntendedChanges(title)) {
+                continue;
+            }
+            compared++;
+            assertEquals(regexNormalize(title), TitleNormalizer.normalize(title), title);
+        }
+        assertTrue(compared > 10000);
+    }
+
+    @Test
+    void asciiNoiseAndBracketsFollowWholeWordRule() {
+        Random random = new Random(250);
+        String[] pieces = {" Official ", " (Video) ", "[HD]", " Lyrics", "letra ", "{MV}", " clip", "Videograma", "audios", "4k"};
+        for (int i = 0; i < 20000; i++) {
+            String title = randomAsciiTitle(random, "()[]{}") + pieces[random.nextInt(pieces.length)]
+                + randomAsciiTitle(random, "()[]{}");
+            assertEquals(wholeWordNormalize(title), TitleNormalizer.normalize(title), title);
+        }
+    }
+
+    @Test
+    void emptyResults() {
+        assertEquals("", TitleNormalizer.normalize(""));
+        assertEquals("", TitleNormalizer.normalize("Official Video"));
+        assertEquals("", TitleNormalizer.normalize("( ) [ ] { }"));
+        assertEquals("", TitleNormalizer.normalize("!?.,- \t\n"));
+        assertEquals("", TitleNormalizer.normalize("\uD83D\uDE00\uD83C\uDFB5"));
+    }
+
+    @Test
+    void nonLatinScriptsAreKept() {
+        assertEquals("кино группа крови", TitleNormalizer.normalize("Кино - Группа крови (Official Audio)"));
+        assertEquals("bts 방탄소년단 dynamite", TitleNormalizer.normalize("BTS (방탄소년단) 'Dynamite' Official MV"));
+        assertEquals("titi me pregunto", TitleNormalizer.normalize("Tití Me Preguntó (Video Oficial)"));
+        assertEquals("unicode e n", TitleNormalizer.normalize("Ünïcödé é ñ"));
+    }
+
+    @Test
+    void lowercasesStripsAccentsAndPunctuation() {
+        assertEquals("cancion de amor", TitleNormalizer.normalize("Canción de Amor!"));
+        assertEquals("dont stop me now", TitleNormalizer.normalize("Don't Stop Me Now"));
+        assertEquals("artista tema", TitleNormalizer.normalize("  Artista   -  Tema  "));
+    }
+
+    @Test
+    void removesNoiseWordsAsWholeWords() {
+        assertEquals("artista tema", TitleNormalizer.normalize("Artista - Tema (Official Video) [HD]"));
+        assertEquals("videograma", TitleNormalizer.normalize("Videograma"));
+        assertEquals("artista tema live", TitleNormalizer.normalize("Artista - Tema (Live)"));
+    }
+
+    @Test
+    void normalizedTitleIsReturnedAsIs() {
+        String normalized = "artista tema";
+        assertSame(normalized, TitleNormalizer.normalize(normalized));
+        assertTrue(TitleNormalizer.isNormalized(normalized));
+    }
+
+    @Test
+    void nullAndBlank() {
+        assertEquals("", TitleNormalizer.normalize((String) null));
+        assertEquals("", TitleNormalizer.normalize("   "));
+        assertEquals(0, TitleNormalizer.extractKeywords("").length);
+    }
+}
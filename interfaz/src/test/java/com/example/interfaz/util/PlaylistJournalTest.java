@@ -0,0 +1,29 @@
+package com.example.interfaz.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PlaylistJournalTest {
+
+    @Test
+    void entryUrlSharesThePlaylistId() {
+        assertEquals("PL123", PlaylistJournal.extractPlaylistId("https://www.youtube.com/playlist?list=PL123"));
+        assertEquals("PL123", PlaylistJournal.extractPlaylistId("https://www.youtube.com/watch?v=dQw4w9WgXcQ&list=PL123&index=7"));
+    }
+
+    @Test
+    void indexComesFromEntryUrls() {
+        assertEquals(7, PlaylistJournal.extractIndex("https://www.youtube.com/watch?v=dQw4w9WgXcQ&list=PL123&index=7"));
+        assertEquals(12, PlaylistJournal.extractIndex("https://www.youtube.com/watch?v=dQw4w9WgXcQ&index=12&list=PL123"));
+    }
+
+    @Test
+    void urlsWithoutPlaylistPositionHaveNoIndex() {
+        // Sin list= la posición no identifica nada en un diario
+        assertEquals(-1, PlaylistJournal.extractIndex("https://www.youtube.com/watch?v=dQw4w9WgXcQ&index=3"));
+        assertEquals(-1, PlaylistJournal.extractIndex("https://www.youtube.com/watch?v=dQw4w9WgXcQ&list=PL123"));
+        assertEquals(-1, PlaylistJournal.extractIndex("https://www.youtube.com/watch?v=dQw4w9WgXcQ&list=PL123&index=3x"));
+        assertEquals(-1, PlaylistJournal.extractIndex(null));
+    }
+}
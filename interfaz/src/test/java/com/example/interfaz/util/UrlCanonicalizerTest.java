@@ -0,0 +1,58 @@
+package com.example.interfaz.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class UrlCanonicalizerTest {
+
+    private static final String ID = "dQw4w9WgXcQ";
+
+    @Test
+    void youtubeVariantsShareVideoKey() {
+        String expected = "yt:" + ID;
+        assertEquals(expected, UrlCanonicalizer.canonicalKey("https://www.youtube.com/watch?v=" + ID));
+        assertEquals(expected, UrlCanonicalizer.canonicalKey("https://youtu.be/" + ID + "?si=abc"));
+        assertEquals(expected, UrlCanonicalizer.canonicalKey("https://m.youtube.com/watch?feature=share&v=" + ID));
+        assertEquals(expected, UrlCanonicalizer.canonicalKey("music.youtube.com/watch?v=" + ID));
+        assertEquals(expected, UrlCanonicalizer.canonicalKey("https://www.youtube.com/shorts/" + ID));
+        assertEquals(expected, UrlCanonicalizer.canonicalKey("https://www.youtube.com/embed/" + ID));
+        assertEquals(expected, UrlCanonicalizer.canonicalKey("  https://www.youtube.com/watch?v=" + ID + "  "));
+    }
+
+    @Test
+    void videoInsidePlaylistIsTheVideo() {
+        assertEquals("yt:" + ID,
+            UrlCanonicalizer.canonicalKey("https://www.youtube.com/watch?v=" + ID + "&list=PL123&index=4"));
+    }
+
+    @Test
+    void playlistWithoutVideoIsPlaylistKey() {
+        assertEquals("ytpl:PL123", UrlCanonicalizer.canonicalKey("https://www.youtube.com/playlist?list=PL123"));
+        assertEquals("ytpl:PL123", UrlCanonicalizer.canonicalKey("https://music.youtube.com/playlist?list=PL123&si=x"));
+    }
+
+    @Test
+    void onlyPlaylistsWithoutVideoArePlaylists() {
+        assertTrue(UrlCanonicalizer.isPlaylist("https://www.youtube.com/playlist?list=PL123"));
+        assertFalse(UrlCanonicalizer.isPlaylist("https://www.youtube.com/watch?v=" + ID + "&list=PL123&index=4"));
+        assertFalse(UrlCanonicalizer.isPlaylist("https://youtu.be/" + ID));
+    }
+
+    @Test
+    void otherUrlsDropTrackingAndSortParameters() {
+        assertEquals("url:example.com/song?a=1&b=2",
+            UrlCanonicalizer.canonicalKey("https://www.Example.com/song/?b=2&utm_source=x&a=1&fbclid=y"));
+        assertNotEquals(UrlCanonicalizer.canonicalKey("https://example.com/a"),
+                        UrlCanonicalizer.canonicalKey("https://example.com/b"));
+    }
+
+    @Test
+    void unparseableInputIsTrimmed() {
+        assertEquals("", UrlCanonicalizer.canonicalKey(null));
+        assertEquals("not a url", UrlCanonicalizer.canonicalKey(" not a url "));
+    }
+}